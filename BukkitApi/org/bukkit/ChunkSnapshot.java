@@ -1,5 +1,6 @@
 package org.bukkit;
 
+import java.util.List;
 import org.bukkit.block.Biome;
 import org.bukkit.block.data.BlockData;
 import org.jetbrains.annotations.NotNull;
@@ -180,8 +181,40 @@ public interface ChunkSnapshot {
      */
     boolean isSectionEmpty(int sy);
 
+    /**
+     * 获取一个段的调色板, 即段中出现的所有方块状态.
+     * <p>
+     * 与{@link #getSectionIndices(int, int[])}一起使用, 可以不经过逐个坐标的调用遍历整个段:
+     * 先对调色板中的每种方块计算一次结果, 再按下标查表.
+     * <pre>
+     * List&lt;BlockData&gt; palette = snapshot.getSectionPalette(sy);
+     * int[] colors = new int[palette.size()];
+     * // compute one color per palette entry ...
+     * int[] indices = new int[4096];
+     * snapshot.getSectionIndices(sy, indices);
+     * </pre>
+     * 调色板可能包含段中已不存在的方块. 返回的方块状态不应被修改.
+     *
+     * @param sy 段的下标, 从最低的段开始为0
+     * @return 不可修改的调色板
+     */
+    @NotNull
+    List<BlockData> getSectionPalette(int sy);
+
+    /**
+     * 把一个段中每个方块在{@link #getSectionPalette(int)}中的下标写入result.
+     * 下标的顺序为{@code (y << 8) | (z << 4) | x}, 其中y为段内的相对高度(0-15).
+     *
+     * @param sy 段的下标, 从最低的段开始为0
+     * @param result 存放结果的数组, 长度至少为4096
+     */
+    void getSectionIndices(int sy, @NotNull int[] result);
+
     /**
      * Tests if this snapshot contains the specified block.
+     * <p>
+     * Implementations should test the palette of each section rather than
+     * every block.
      *
      * @param block block to test
      * @return if the block is contained within
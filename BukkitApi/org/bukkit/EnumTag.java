@@ -0,0 +1,249 @@
+package org.bukkit;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import org.apache.commons.lang.Validate;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link Tag} over enum values, such as {@link Material},
+ * {@link org.bukkit.entity.EntityType} or {@link Fluid}, backed by a bit set
+ * indexed by ordinal.
+ * <p>
+ * {@link #isTagged(Enum)} is a single array read, which makes these tags
+ * suitable for checks in frequently called event handlers:
+ * <pre>
+ * EnumTag&lt;Material&gt; burnable = EnumTag.copyOf(Material.class, Tag.LOGS_THAT_BURN)
+ *         .union(new NamespacedKey(plugin, "burnable"), Tag.PLANKS)
+ *         .difference(new NamespacedKey(plugin, "burnable"), Tag.CRIMSON_STEMS);
+ * </pre>
+ * Tags are immutable. The set operations compute their result once, so a tag
+ * copied from a server tag does not follow later changes to it, for example
+ * when data packs are reloaded.
+ *
+ * @param <E> the type of things grouped by this tag
+ */
+public final class EnumTag<E extends Enum<E> & Keyed> implements Tag<E> {
+
+    private final NamespacedKey key;
+    private final Class<E> type;
+    private final long[] bits;
+    private final Set<E> values;
+
+    private EnumTag(@NotNull NamespacedKey key, @NotNull Class<E> type, @NotNull long[] bits) {
+        this.key = key;
+        this.type = type;
+        this.bits = bits;
+
+        E[] constants = type.getEnumConstants();
+        EnumSet<E> set = EnumSet.noneOf(type);
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                set.add(constants[(i << 6) + Long.numberOfTrailingZeros(word)]);
+                word &= word - 1;
+            }
+        }
+        this.values = Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Creates a tag containing the given values.
+     *
+     * @param key the key of the new tag
+     * @param type the enum type
+     * @param values the values to tag
+     * @param <E> the enum type
+     * @return the new tag
+     */
+    @NotNull
+    public static <E extends Enum<E> & Keyed> EnumTag<E> of(@NotNull NamespacedKey key, @NotNull Class<E> type, @NotNull Collection<? extends E> values) {
+        Validate.notNull(key, "Key cannot be null");
+        Validate.notNull(type, "Type cannot be null");
+        Validate.notNull(values, "Values cannot be null");
+
+        long[] bits = new long[words(type)];
+        for (E value : values) {
+            Validate.notNull(value, "Values cannot contain null");
+            bits[value.ordinal() >>> 6] |= 1L << value.ordinal();
+        }
+        return new EnumTag<E>(key, type, bits);
+    }
+
+    /**
+     * Creates a tag containing the current values of another tag, using the
+     * key of that tag.
+     *
+     * @param type the enum type
+     * @param tag the tag to copy
+     * @param <E> the enum type
+     * @return the copied tag, or the given tag if it already is an
+     * {@link EnumTag}
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E> & Keyed> EnumTag<E> copyOf(@NotNull Class<E> type, @NotNull Tag<E> tag) {
+        Validate.notNull(type, "Type cannot be null");
+        Validate.notNull(tag, "Tag cannot be null");
+
+        if (tag instanceof EnumTag && ((EnumTag<?>) tag).type == type) {
+            return (EnumTag<E>) tag;
+        }
+        return of(tag.getKey(), type, tag.getValues());
+    }
+
+    /**
+     * Creates a tag containing every value tagged by this tag or the other
+     * tag.
+     *
+     * @param key the key of the new tag
+     * @param other the tag to combine with
+     * @return the new tag
+     */
+    @NotNull
+    public EnumTag<E> union(@NotNull NamespacedKey key, @NotNull Tag<E> other) {
+        long[] result = bits.clone();
+        long[] others = bitsOf(other);
+        for (int i = 0; i < result.length; i++) {
+            result[i] |= others[i];
+        }
+        return derive(key, result);
+    }
+
+    /**
+     * Creates a tag containing every value tagged by both this tag and the
+     * other tag.
+     *
+     * @param key the key of the new tag
+     * @param other the tag to combine with
+     * @return the new tag
+     */
+    @NotNull
+    public EnumTag<E> intersection(@NotNull NamespacedKey key, @NotNull Tag<E> other) {
+        long[] result = bits.clone();
+        long[] others = bitsOf(other);
+        for (int i = 0; i < result.length; i++) {
+            result[i] &= others[i];
+        }
+        return derive(key, result);
+    }
+
+    /**
+     * Creates a tag containing every value tagged by this tag but not by the
+     * other tag.
+     *
+     * @param key the key of the new tag
+     * @param other the tag to remove
+     * @return the new tag
+     */
+    @NotNull
+    public EnumTag<E> difference(@NotNull NamespacedKey key, @NotNull Tag<E> other) {
+        long[] result = bits.clone();
+        long[] others = bitsOf(other);
+        for (int i = 0; i < result.length; i++) {
+            result[i] &= ~others[i];
+        }
+        return derive(key, result);
+    }
+
+    /**
+     * Gets the enum type of the values in this tag.
+     *
+     * @return the enum type
+     */
+    @NotNull
+    public Class<E> getType() {
+        return type;
+    }
+
+    /**
+     * Gets the number of tagged values.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Checks whether this tag has no values.
+     *
+     * @return true if no value is tagged
+     */
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    @NotNull
+    @Override
+    public NamespacedKey getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean isTagged(@NotNull E item) {
+        int ordinal = item.ordinal();
+        return (bits[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    @NotNull
+    @Override
+    public Set<E> getValues() {
+        return values;
+    }
+
+    @NotNull
+    private EnumTag<E> derive(@NotNull NamespacedKey key, @NotNull long[] result) {
+        Validate.notNull(key, "Key cannot be null");
+        return new EnumTag<E>(key, type, result);
+    }
+
+    @NotNull
+    private long[] bitsOf(@NotNull Tag<E> other) {
+        Validate.notNull(other, "Tag cannot be null");
+        if (other instanceof EnumTag) {
+            EnumTag<?> tag = (EnumTag<?>) other;
+            Validate.isTrue(tag.type == type, "Tag type mismatch");
+            return tag.bits;
+        }
+
+        long[] result = new long[bits.length];
+        for (E value : other.getValues()) {
+            result[value.ordinal() >>> 6] |= 1L << value.ordinal();
+        }
+        return result;
+    }
+
+    private static int words(@NotNull Class<? extends Enum<?>> type) {
+        return (type.getEnumConstants().length + 63) >>> 6;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 47 * hash + key.hashCode();
+        hash = 47 * hash + type.hashCode();
+        hash = 47 * hash + Arrays.hashCode(bits);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof EnumTag)) {
+            return false;
+        }
+        EnumTag<?> other = (EnumTag<?>) obj;
+        return key.equals(other.key) && type == other.type && Arrays.equals(bits, other.bits);
+    }
+
+    @Override
+    public String toString() {
+        return "EnumTag{key=" + key + ",type=" + type.getSimpleName() + ",size=" + values.size() + '}';
+    }
+}
@@ -356,19 +356,23 @@ public class Location implements Cloneable, ConfigurationSerializable {
      */
     @NotNull
     public Vector getDirection() {
-        Vector vector = new Vector();
+        return getDirection(new Vector());
+    }
 
+    /**
+     * 将本位置所面向的方向的单位向量写入给定的向量, 不创建新的对象.
+     *
+     * @param result 用于存放结果的向量
+     * @return 结果向量
+     */
+    @NotNull
+    public Vector getDirection(@NotNull Vector result) {
         double rotX = this.getYaw();
         double rotY = this.getPitch();
 
-        vector.setY(-Math.sin(Math.toRadians(rotY)));
-
         double xz = Math.cos(Math.toRadians(rotY));
 
-        vector.setX(-xz * Math.sin(Math.toRadians(rotX)));
-        vector.setZ(xz * Math.cos(Math.toRadians(rotX)));
-
-        return vector;
+        return result.setComponents(-xz * Math.sin(Math.toRadians(rotX)), -Math.sin(Math.toRadians(rotY)), xz * Math.cos(Math.toRadians(rotX)));
     }
 
     /**
@@ -705,6 +709,34 @@ public class Location implements Cloneable, ConfigurationSerializable {
         return new Vector(x, y, z);
     }
 
+    /**
+     * 将此位置的坐标写入给定的向量, 不创建新的对象.
+     *
+     * @param result 用于存放结果的向量
+     * @return 结果向量
+     */
+    @NotNull
+    public Vector toVector(@NotNull Vector result) {
+        return result.setComponents(x, y, z);
+    }
+
+    /**
+     * 将此位置的世界, 坐标, 偏航角和俯仰角复制到给定的位置, 不创建新的对象.
+     *
+     * @param result 用于存放结果的位置
+     * @return 结果位置
+     */
+    @NotNull
+    public Location copyTo(@NotNull Location result) {
+        result.world = this.world;
+        result.x = this.x;
+        result.y = this.y;
+        result.z = this.z;
+        result.yaw = this.yaw;
+        result.pitch = this.pitch;
+        return result;
+    }
+
     @Override
     @NotNull
     public Location clone() {
@@ -93,6 +93,7 @@ import org.bukkit.block.data.type.Wall;
 import org.bukkit.block.data.type.WallSign;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.material.MaterialData;
+import org.bukkit.util.EnumLookup;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -5181,6 +5182,8 @@ public enum Material implements Keyed {
      * This is a match lookup; names will be stripped of the "minecraft:"
      * namespace, converted to uppercase, then stripped of special characters in
      * an attempt to format it like the enum.
+     * <p>
+     * 名称在{@link EnumLookup}中查找, 不会创建中间字符串.
      *
      * @param name 用来获取Material对象的名称
      * @param legacyName 传入的名称是否为旧版表示方式 (参考
@@ -5191,15 +5194,13 @@ public enum Material implements Keyed {
     public static Material matchMaterial(@NotNull final String name, boolean legacyName) {
         Validate.notNull(name, "Name cannot be null");
 
-        String filtered = name;
-        if (filtered.startsWith(NamespacedKey.MINECRAFT + ":")) {
-            filtered = filtered.substring((NamespacedKey.MINECRAFT + ":").length());
+        EnumLookup<Material> lookup = EnumLookup.of(Material.class);
+        if (legacyName) {
+            @SuppressWarnings("deprecation")
+            Material match = Bukkit.getUnsafe().fromLegacy(lookup.match(name, LEGACY_PREFIX));
+            return match;
         }
-
-        filtered = filtered.toUpperCase(java.util.Locale.ENGLISH);
-
-        filtered = filtered.replaceAll("\\s+", "_").replaceAll("\\W", "");
-        return getMaterial(filtered, legacyName);
+        return lookup.match(name);
     }
 
     static {
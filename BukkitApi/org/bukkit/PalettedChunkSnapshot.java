@@ -0,0 +1,721 @@
+package org.bukkit;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang.Validate;
+import org.bukkit.block.Biome;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 以调色板压缩保存方块的{@link ChunkSnapshot}.
+ * <p>
+ * 与原版的区块段相同, 每个16x16x16的段只保存其中出现的方块状态, 以及按位打包在long中的调色板下标,
+ * 只有一种方块的段不保存下标, 全为空气的段不占用空间. 亮度全部相同的段只保存一个值.
+ * 启用{@link Builder#setOffHeap(boolean) 堆外存储}时, 所有段的下标保存在一块直接内存中,
+ * 大量快照(例如异步地图渲染的数万个区块)不会增加垃圾回收的负担.
+ * <p>
+ * {@link #contains(BlockData)}只检查每个段的调色板; 构建时会移除未使用的调色板项,
+ * 所以结果是精确的. 使用{@link #getSectionPalette(int)}和{@link #getSectionIndices(int, int[])}
+ * 可以按段批量读取方块, 而不必逐个坐标调用.
+ * <p>
+ * 坐标中的y为世界中的绝对高度, 段的下标从最低的段开始为0. 本类是不可变的, 可以被多个线程同时读取.
+ */
+public final class PalettedChunkSnapshot implements ChunkSnapshot {
+    private static final int SECTION_SIZE = 16 * 16 * 16;
+    private static final int LIGHT_SIZE = SECTION_SIZE / 2;
+    private static final int MIN_BITS = 4;
+
+    private final String worldName;
+    private final int x;
+    private final int z;
+    private final int minHeight;
+    private final int maxHeight;
+    private final long captureFullTime;
+    // null for sections that are entirely air
+    private final Section[] sections;
+    private final LongBuffer data;
+    private final boolean offHeap;
+    private final int[] heights;
+    private final byte[][] skyLight;
+    private final byte[] skyLightUniform;
+    private final byte[][] emittedLight;
+    private final byte[] emittedLightUniform;
+    private final Biome[][] biomes;
+    private final double[][] temperatures;
+
+    private PalettedChunkSnapshot(@NotNull Builder builder) {
+        this.worldName = builder.worldName;
+        this.x = builder.x;
+        this.z = builder.z;
+        this.minHeight = builder.minHeight;
+        this.maxHeight = builder.maxHeight;
+        this.captureFullTime = builder.captureFullTime;
+        this.offHeap = builder.offHeap;
+        int count = builder.palettes.length;
+        this.sections = new Section[count];
+        this.skyLight = new byte[count][];
+        this.skyLightUniform = new byte[count];
+        this.emittedLight = new byte[count][];
+        this.emittedLightUniform = new byte[count];
+        this.biomes = new Biome[count][];
+        this.temperatures = new double[count][];
+
+        int longs = 0;
+        for (int sy = 0; sy < count; sy++) {
+            if (builder.palettes[sy] != null) {
+                Section section = Section.compact(builder.palettes[sy], builder.indices[sy], longs);
+                if (section != null) {
+                    sections[sy] = section;
+                    longs += section.getLongCount();
+                }
+            }
+            skyLight[sy] = compactLight(builder.skyLight[sy], skyLightUniform, sy);
+            emittedLight[sy] = compactLight(builder.emittedLight[sy], emittedLightUniform, sy);
+            Biome[] sectionBiomes = builder.biomes[sy];
+            if (sectionBiomes != null && isUniform(sectionBiomes)) {
+                sectionBiomes = new Biome[] {sectionBiomes[0]};
+            }
+            biomes[sy] = sectionBiomes;
+            temperatures[sy] = builder.temperatures[sy];
+        }
+
+        if (offHeap) {
+            this.data = ByteBuffer.allocateDirect(Math.max(longs, 1) * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        } else {
+            this.data = LongBuffer.wrap(new long[Math.max(longs, 1)]);
+        }
+        for (int sy = 0; sy < count; sy++) {
+            if (sections[sy] != null) {
+                sections[sy].pack(builder.indices[sy], data);
+            }
+        }
+
+        this.heights = new int[256];
+        for (int column = 0; column < 256; column++) {
+            heights[column] = findHighest(column & 15, column >> 4);
+        }
+    }
+
+    /**
+     * 创建一个构建快照的对象. 未设置的段全为空气, 亮度为0, 生物群系为{@link Biome#PLAINS}.
+     *
+     * @param worldName 世界名称
+     * @param x 区块的X坐标
+     * @param z 区块的Z坐标
+     * @param minHeight 世界的最低高度(包含), 必须是16的倍数
+     * @param maxHeight 世界的最高高度(不包含), 必须是16的倍数
+     * @return 构建器
+     */
+    @NotNull
+    public static Builder builder(@NotNull String worldName, int x, int z, int minHeight, int maxHeight) {
+        return new Builder(worldName, x, z, minHeight, maxHeight);
+    }
+
+    /**
+     * 把另一个快照(例如服务器的快照)转换为调色板压缩的快照, 方块通过其
+     * {@link ChunkSnapshot#getSectionPalette(int)}和{@link ChunkSnapshot#getSectionIndices(int, int[])}按段读取.
+     *
+     * @param source 源快照
+     * @param minHeight 世界的最低高度(包含), 必须是16的倍数
+     * @param maxHeight 世界的最高高度(不包含), 必须是16的倍数
+     * @param offHeap 是否把方块下标保存在堆外
+     * @return 新的快照
+     */
+    @NotNull
+    public static PalettedChunkSnapshot copyOf(@NotNull ChunkSnapshot source, int minHeight, int maxHeight, boolean offHeap) {
+        Validate.notNull(source, "Source cannot be null");
+        if (source instanceof PalettedChunkSnapshot && !offHeap) {
+            PalettedChunkSnapshot snapshot = (PalettedChunkSnapshot) source;
+            if (!snapshot.offHeap && snapshot.minHeight == minHeight && snapshot.maxHeight == maxHeight) {
+                return snapshot;
+            }
+        }
+        Builder builder = builder(source.getWorldName(), source.getX(), source.getZ(), minHeight, maxHeight)
+                .setCaptureFullTime(source.getCaptureFullTime())
+                .setOffHeap(offHeap);
+        int[] indices = new int[SECTION_SIZE];
+        byte[] sky = new byte[LIGHT_SIZE];
+        byte[] emitted = new byte[LIGHT_SIZE];
+        Biome[] sectionBiomes = new Biome[64];
+        double[] sectionTemperatures = new double[64];
+        for (int sy = 0; sy < builder.palettes.length; sy++) {
+            if (!source.isSectionEmpty(sy)) {
+                source.getSectionIndices(sy, indices);
+                builder.setSection(sy, source.getSectionPalette(sy), indices);
+            }
+            int baseY = minHeight + (sy << 4);
+            Arrays.fill(sky, (byte) 0);
+            Arrays.fill(emitted, (byte) 0);
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                int bx = i & 15;
+                int by = baseY + (i >> 8);
+                int bz = (i >> 4) & 15;
+                sky[i >> 1] |= source.getBlockSkyLight(bx, by, bz) << ((i & 1) << 2);
+                emitted[i >> 1] |= source.getBlockEmittedLight(bx, by, bz) << ((i & 1) << 2);
+            }
+            builder.setSkyLight(sy, sky);
+            builder.setEmittedLight(sy, emitted);
+            for (int i = 0; i < 64; i++) {
+                int bx = (i & 3) << 2;
+                int by = baseY + ((i >> 4) << 2);
+                int bz = ((i >> 2) & 3) << 2;
+                sectionBiomes[i] = source.getBiome(bx, by, bz);
+                sectionTemperatures[i] = source.getRawBiomeTemperature(bx, by, bz);
+            }
+            builder.setBiomes(sy, sectionBiomes, sectionTemperatures);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int getX() {
+        return x;
+    }
+
+    @Override
+    public int getZ() {
+        return z;
+    }
+
+    @NotNull
+    @Override
+    public String getWorldName() {
+        return worldName;
+    }
+
+    /**
+     * 获取最低高度.
+     *
+     * @return 最低高度(包含)
+     */
+    public int getMinHeight() {
+        return minHeight;
+    }
+
+    /**
+     * 获取最高高度.
+     *
+     * @return 最高高度(不包含)
+     */
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    /**
+     * 获取段的数量.
+     *
+     * @return 段数
+     */
+    public int getSectionCount() {
+        return sections.length;
+    }
+
+    /**
+     * 检查方块下标是否保存在堆外.
+     *
+     * @return 是否保存在堆外
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    @NotNull
+    @Override
+    public Material getBlockType(int x, int y, int z) {
+        checkCoordinates(x, y, z);
+        Section section = sections[(y - minHeight) >> 4];
+        return section == null ? Material.AIR : section.types[section.getId(data, index(x, y, z))];
+    }
+
+    @NotNull
+    @Override
+    public BlockData getBlockData(int x, int y, int z) {
+        checkCoordinates(x, y, z);
+        Section section = sections[(y - minHeight) >> 4];
+        if (section == null) {
+            return Material.AIR.createBlockData();
+        }
+        return section.palette[section.getId(data, index(x, y, z))].clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 本类不保存旧版数据值, 总是返回0.
+     */
+    @Override
+    @Deprecated
+    public int getData(int x, int y, int z) {
+        checkCoordinates(x, y, z);
+        return 0;
+    }
+
+    @Override
+    public int getBlockSkyLight(int x, int y, int z) {
+        checkCoordinates(x, y, z);
+        int sy = (y - minHeight) >> 4;
+        return getLight(skyLight[sy], skyLightUniform[sy], index(x, y, z));
+    }
+
+    @Override
+    public int getBlockEmittedLight(int x, int y, int z) {
+        checkCoordinates(x, y, z);
+        int sy = (y - minHeight) >> 4;
+        return getLight(emittedLight[sy], emittedLightUniform[sy], index(x, y, z));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 若整列都是空气, 返回最低高度减1.
+     */
+    @Override
+    public int getHighestBlockYAt(int x, int z) {
+        Validate.isTrue(x == (x & 15) && z == (z & 15), "Coordinates out of range");
+        return heights[(z << 4) | x];
+    }
+
+    @NotNull
+    @Override
+    @Deprecated
+    public Biome getBiome(int x, int z) {
+        return getBiome(x, Math.max(minHeight, Math.min(0, maxHeight - 1)), z);
+    }
+
+    @NotNull
+    @Override
+    public Biome getBiome(int x, int y, int z) {
+        checkCoordinates(x, y, z);
+        Biome[] sectionBiomes = biomes[(y - minHeight) >> 4];
+        if (sectionBiomes == null) {
+            return Biome.PLAINS;
+        }
+        return sectionBiomes.length == 1 ? sectionBiomes[0] : sectionBiomes[quartIndex(x, y, z)];
+    }
+
+    @Override
+    @Deprecated
+    public double getRawBiomeTemperature(int x, int z) {
+        return getRawBiomeTemperature(x, Math.max(minHeight, Math.min(0, maxHeight - 1)), z);
+    }
+
+    @Override
+    public double getRawBiomeTemperature(int x, int y, int z) {
+        checkCoordinates(x, y, z);
+        double[] sectionTemperatures = temperatures[(y - minHeight) >> 4];
+        return sectionTemperatures == null ? 0 : sectionTemperatures[quartIndex(x, y, z)];
+    }
+
+    @Override
+    public long getCaptureFullTime() {
+        return captureFullTime;
+    }
+
+    @Override
+    public boolean isSectionEmpty(int sy) {
+        Validate.isTrue(sy >= 0 && sy < sections.length, "Section out of range");
+        return sections[sy] == null;
+    }
+
+    @NotNull
+    @Override
+    public List<BlockData> getSectionPalette(int sy) {
+        Validate.isTrue(sy >= 0 && sy < sections.length, "Section out of range");
+        Section section = sections[sy];
+        if (section == null) {
+            return Collections.singletonList(Material.AIR.createBlockData());
+        }
+        return section.paletteView;
+    }
+
+    @Override
+    public void getSectionIndices(int sy, @NotNull int[] result) {
+        Validate.isTrue(sy >= 0 && sy < sections.length, "Section out of range");
+        Validate.notNull(result, "Result cannot be null");
+        Validate.isTrue(result.length >= SECTION_SIZE, "Result must hold 4096 indices");
+        Section section = sections[sy];
+        if (section == null || section.bits == 0) {
+            Arrays.fill(result, 0, SECTION_SIZE, 0);
+            return;
+        }
+        section.unpack(data, result);
+    }
+
+    /**
+     * 获取一个段中每种方块的类型, 顺序与{@link #getSectionPalette(int)}相同.
+     * 对于只关心方块类型的调用者, 这比逐个调用{@link BlockData#getMaterial()}更快.
+     *
+     * @param sy 段的下标, 从最低的段开始为0
+     * @return 不可修改的方块类型列表
+     */
+    @NotNull
+    public List<Material> getSectionTypes(int sy) {
+        Validate.isTrue(sy >= 0 && sy < sections.length, "Section out of range");
+        Section section = sections[sy];
+        return section == null ? Collections.singletonList(Material.AIR) : section.typesView;
+    }
+
+    @Override
+    public boolean contains(@NotNull BlockData block) {
+        Validate.notNull(block, "Block cannot be null");
+        boolean air = block.getMaterial() == Material.AIR;
+        for (Section section : sections) {
+            if (section == null) {
+                if (air && block.equals(Material.AIR.createBlockData())) {
+                    return true;
+                }
+                continue;
+            }
+            for (BlockData entry : section.palette) {
+                if (entry.equals(block)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int findHighest(int x, int z) {
+        for (int sy = sections.length - 1; sy >= 0; sy--) {
+            Section section = sections[sy];
+            if (section == null || section.airOnly) {
+                continue;
+            }
+            for (int y = 15; y >= 0; y--) {
+                if (!section.types[section.getId(data, (y << 8) | (z << 4) | x)].isAir()) {
+                    return minHeight + (sy << 4) + y;
+                }
+            }
+        }
+        return minHeight - 1;
+    }
+
+    private void checkCoordinates(int x, int y, int z) {
+        Validate.isTrue(x == (x & 15) && z == (z & 15) && y >= minHeight && y < maxHeight, "Coordinates out of range");
+    }
+
+    private static int index(int x, int y, int z) {
+        return ((y & 15) << 8) | (z << 4) | x;
+    }
+
+    private static int quartIndex(int x, int y, int z) {
+        return (((y & 15) >> 2) << 4) | ((z >> 2) << 2) | (x >> 2);
+    }
+
+    private static int getLight(@Nullable byte[] light, byte uniform, int index) {
+        if (light == null) {
+            return uniform;
+        }
+        return (light[index >> 1] >> ((index & 1) << 2)) & 15;
+    }
+
+    @Nullable
+    private static byte[] compactLight(@Nullable byte[] light, @NotNull byte[] uniform, int sy) {
+        if (light == null) {
+            return null;
+        }
+        int first = light[0] & 15;
+        byte packed = (byte) (first | (first << 4));
+        for (byte value : light) {
+            if (value != packed) {
+                return light;
+            }
+        }
+        uniform[sy] = (byte) first;
+        return null;
+    }
+
+    private static boolean isUniform(@NotNull Object[] values) {
+        for (Object value : values) {
+            if (value != values[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "PalettedChunkSnapshot{world=" + worldName + ",x=" + x + ",z=" + z + ",sections=" + sections.length
+                + ",longs=" + data.capacity() + ",offHeap=" + offHeap + '}';
+    }
+
+    /**
+     * 一个段的调色板和打包下标的位置. bits为0时整段都是palette[0], 不占用下标.
+     */
+    private static final class Section {
+        private final BlockData[] palette;
+        private final Material[] types;
+        private final List<BlockData> paletteView;
+        private final List<Material> typesView;
+        private final boolean airOnly;
+        private final int bits;
+        private final int valuesPerLong;
+        private final long mask;
+        private final int offset;
+        // Maps builder palette ids to compacted ids, only needed until pack
+        private int[] remap;
+
+        private Section(@NotNull BlockData[] palette, int[] remap, int offset) {
+            this.palette = palette;
+            this.types = new Material[palette.length];
+            boolean air = true;
+            for (int i = 0; i < palette.length; i++) {
+                types[i] = palette[i].getMaterial();
+                air &= types[i].isAir();
+            }
+            this.paletteView = Collections.unmodifiableList(Arrays.asList(palette));
+            this.typesView = Collections.unmodifiableList(Arrays.asList(types));
+            this.airOnly = air;
+            int bits = 0;
+            if (palette.length > 1) {
+                bits = MIN_BITS;
+                while ((1 << bits) < palette.length) {
+                    bits++;
+                }
+            }
+            this.bits = bits;
+            this.valuesPerLong = bits == 0 ? 0 : 64 / bits;
+            this.mask = (1L << bits) - 1;
+            this.offset = offset;
+            this.remap = remap;
+        }
+
+        /**
+         * 移除未使用的调色板项.
+         *
+         * @return 段, 若段中只有空气则为null
+         */
+        @Nullable
+        private static Section compact(@NotNull BlockData[] palette, @NotNull int[] indices, int offset) {
+            int[] remap = new int[palette.length];
+            for (int index : indices) {
+                remap[index] = 1;
+            }
+            int used = 0;
+            for (int i = 0; i < palette.length; i++) {
+                if (remap[i] != 0) {
+                    remap[i] = used++;
+                } else {
+                    remap[i] = -1;
+                }
+            }
+            BlockData[] compacted = new BlockData[used];
+            for (int i = 0; i < palette.length; i++) {
+                if (remap[i] >= 0) {
+                    compacted[remap[i]] = palette[i];
+                }
+            }
+            if (used == 1 && compacted[0].getMaterial() == Material.AIR) {
+                return null;
+            }
+            return new Section(compacted, remap, offset);
+        }
+
+        private int getLongCount() {
+            return bits == 0 ? 0 : (SECTION_SIZE + valuesPerLong - 1) / valuesPerLong;
+        }
+
+        private void pack(@NotNull int[] indices, @NotNull LongBuffer data) {
+            int count = getLongCount();
+            for (int word = 0; word < count; word++) {
+                long value = 0;
+                int base = word * valuesPerLong;
+                int end = Math.min(base + valuesPerLong, SECTION_SIZE);
+                for (int i = base; i < end; i++) {
+                    value |= (long) remap[indices[i]] << ((i - base) * bits);
+                }
+                data.put(offset + word, value);
+            }
+            remap = null;
+        }
+
+        private int getId(@NotNull LongBuffer data, int index) {
+            if (bits == 0) {
+                return 0;
+            }
+            int word = index / valuesPerLong;
+            int shift = (index - word * valuesPerLong) * bits;
+            return (int) ((data.get(offset + word) >>> shift) & mask);
+        }
+
+        private void unpack(@NotNull LongBuffer data, @NotNull int[] result) {
+            int count = getLongCount();
+            int i = 0;
+            for (int word = 0; word < count; word++) {
+                long value = data.get(offset + word);
+                for (int j = 0; j < valuesPerLong && i < SECTION_SIZE; j++, i++) {
+                    result[i] = (int) (value & mask);
+                    value >>>= bits;
+                }
+            }
+        }
+    }
+
+    /**
+     * 构建{@link PalettedChunkSnapshot}的对象. 传入的数组都会被复制.
+     */
+    public static final class Builder {
+        private final String worldName;
+        private final int x;
+        private final int z;
+        private final int minHeight;
+        private final int maxHeight;
+        private long captureFullTime;
+        private boolean offHeap;
+        private final BlockData[][] palettes;
+        private final int[][] indices;
+        private final byte[][] skyLight;
+        private final byte[][] emittedLight;
+        private final Biome[][] biomes;
+        private final double[][] temperatures;
+
+        private Builder(@NotNull String worldName, int x, int z, int minHeight, int maxHeight) {
+            Validate.notNull(worldName, "World name cannot be null");
+            Validate.isTrue(minHeight < maxHeight, "Min height must be lower than max height");
+            Validate.isTrue((minHeight & 15) == 0 && (maxHeight & 15) == 0, "Heights must be multiples of 16");
+            this.worldName = worldName;
+            this.x = x;
+            this.z = z;
+            this.minHeight = minHeight;
+            this.maxHeight = maxHeight;
+            int count = (maxHeight - minHeight) >> 4;
+            this.palettes = new BlockData[count][];
+            this.indices = new int[count][];
+            this.skyLight = new byte[count][];
+            this.emittedLight = new byte[count][];
+            this.biomes = new Biome[count][];
+            this.temperatures = new double[count][];
+        }
+
+        /**
+         * 设置抓取快照时世界的完整时间.
+         *
+         * @param captureFullTime 时间, 以tick表示
+         * @return 本对象
+         */
+        @NotNull
+        public Builder setCaptureFullTime(long captureFullTime) {
+            this.captureFullTime = captureFullTime;
+            return this;
+        }
+
+        /**
+         * 设置是否把方块下标保存在堆外的直接内存中.
+         *
+         * @param offHeap 是否保存在堆外
+         * @return 本对象
+         */
+        @NotNull
+        public Builder setOffHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * 设置一个段的方块.
+         *
+         * @param sy 段的下标, 从最低的段开始为0
+         * @param palette 段中的方块状态
+         * @param indices 每个方块在调色板中的下标, 共4096个, 顺序为{@code (y << 8) | (z << 4) | x}
+         * @return 本对象
+         */
+        @NotNull
+        public Builder setSection(int sy, @NotNull List<BlockData> palette, @NotNull int[] indices) {
+            checkSection(sy);
+            Validate.notNull(palette, "Palette cannot be null");
+            Validate.notNull(indices, "Indices cannot be null");
+            Validate.isTrue(!palette.isEmpty(), "Palette cannot be empty");
+            Validate.isTrue(indices.length >= SECTION_SIZE, "Indices must contain 4096 entries");
+            BlockData[] copy = palette.toArray(new BlockData[0]);
+            for (BlockData entry : copy) {
+                Validate.notNull(entry, "Palette cannot contain null");
+            }
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                Validate.isTrue(indices[i] >= 0 && indices[i] < copy.length, "Palette index out of range");
+            }
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = copy[i].clone();
+            }
+            this.palettes[sy] = copy;
+            this.indices[sy] = Arrays.copyOf(indices, SECTION_SIZE);
+            return this;
+        }
+
+        /**
+         * 设置一个段的天空亮度.
+         *
+         * @param sy 段的下标, 从最低的段开始为0
+         * @param light 2048字节的半字节数组, 与原版格式相同: 下标i的亮度在第i/2个字节中,
+         *     i为偶数时为低4位
+         * @return 本对象
+         */
+        @NotNull
+        public Builder setSkyLight(int sy, @NotNull byte[] light) {
+            checkSection(sy);
+            this.skyLight[sy] = copyLight(light);
+            return this;
+        }
+
+        /**
+         * 设置一个段的方块发光亮度.
+         *
+         * @param sy 段的下标, 从最低的段开始为0
+         * @param light 2048字节的半字节数组, 格式与{@link #setSkyLight(int, byte[])}相同
+         * @return 本对象
+         */
+        @NotNull
+        public Builder setEmittedLight(int sy, @NotNull byte[] light) {
+            checkSection(sy);
+            this.emittedLight[sy] = copyLight(light);
+            return this;
+        }
+
+        /**
+         * 设置一个段中每个4x4x4单元的生物群系和原始温度.
+         *
+         * @param sy 段的下标, 从最低的段开始为0
+         * @param biomes 64个生物群系, 顺序为{@code (y << 4) | (z << 2) | x}, 坐标以4个方块为单位
+         * @param temperatures 64个原始温度, 顺序与biomes相同, 为null时温度为0
+         * @return 本对象
+         */
+        @NotNull
+        public Builder setBiomes(int sy, @NotNull Biome[] biomes, @Nullable double[] temperatures) {
+            checkSection(sy);
+            Validate.notNull(biomes, "Biomes cannot be null");
+            Validate.isTrue(biomes.length == 64, "Biomes must contain 64 entries");
+            Validate.noNullElements(biomes, "Biomes cannot contain null");
+            Validate.isTrue(temperatures == null || temperatures.length == 64, "Temperatures must contain 64 entries");
+            this.biomes[sy] = biomes.clone();
+            this.temperatures[sy] = temperatures == null ? null : temperatures.clone();
+            return this;
+        }
+
+        /**
+         * 构建快照.
+         *
+         * @return 快照
+         */
+        @NotNull
+        public PalettedChunkSnapshot build() {
+            return new PalettedChunkSnapshot(this);
+        }
+
+        private void checkSection(int sy) {
+            Validate.isTrue(sy >= 0 && sy < palettes.length, "Section out of range");
+        }
+
+        @NotNull
+        private static byte[] copyLight(@NotNull byte[] light) {
+            Validate.notNull(light, "Light cannot be null");
+            Validate.isTrue(light.length == LIGHT_SIZE, "Light must contain 2048 bytes");
+            return light.clone();
+        }
+    }
+}
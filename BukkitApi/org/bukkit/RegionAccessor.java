@@ -3,12 +3,14 @@ package org.bukkit;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Predicate;
 import org.bukkit.block.Biome;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
+import org.bukkit.util.BlockDataBuffer;
 import org.bukkit.util.Consumer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -159,6 +161,67 @@ public interface RegionAccessor {
      */
     void setType(int x, int y, int z, @NotNull Material material);
 
+    /**
+     * 把从(xMin, yMin, zMin)(包含)到(xMax, yMax, zMax)(不包含)的长方体范围内的所有方块设为同一个{@link BlockData}.
+     * <p>
+     * 结果与对范围内每个位置调用{@link #setBlockData(int, int, int, BlockData)}相同,
+     * 但方块只解析一次, 且范围只检查一次. 对于{@link org.bukkit.generator.LimitedRegion},
+     * 整个范围必须在{@link org.bukkit.generator.LimitedRegion#isInRegion(int, int, int) 区域内}.
+     *
+     * @param xMin 最小X坐标(包含)
+     * @param yMin 最小Y坐标(包含)
+     * @param zMin 最小Z坐标(包含)
+     * @param xMax 最大X坐标(不包含)
+     * @param yMax 最大Y坐标(不包含)
+     * @param zMax 最大Z坐标(不包含)
+     * @param blockData 要设置的方块
+     */
+    void fill(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, @NotNull BlockData blockData);
+
+    /**
+     * 把缓冲区中的方块写入以(x, y, z)为最小角的长方体范围, 值为{@link BlockDataBuffer#SKIP}的位置保持不变.
+     * <p>
+     * 结果与对缓冲区的每个位置调用{@link #setBlockData(int, int, int, BlockData)}相同,
+     * 但调色板中的每种方块只解析一次. 对于{@link org.bukkit.generator.LimitedRegion},
+     * 整个范围必须在区域内.
+     *
+     * @param x 范围最小角的X坐标
+     * @param y 范围最小角的Y坐标
+     * @param z 范围最小角的Z坐标
+     * @param buffer 要写入的方块
+     */
+    void setBlocks(int x, int y, int z, @NotNull BlockDataBuffer buffer);
+
+    /**
+     * 把以(x, y, z)为最小角, 大小与缓冲区相同的长方体范围内的方块读入缓冲区.
+     * 缓冲区原有的内容和调色板会被清空, 之后每个位置都是有效的调色板下标.
+     * 对于{@link org.bukkit.generator.LimitedRegion}, 整个范围必须在区域内.
+     *
+     * @param x 范围最小角的X坐标
+     * @param y 范围最小角的Y坐标
+     * @param z 范围最小角的Z坐标
+     * @param buffer 存放结果的缓冲区
+     */
+    void getBlocks(int x, int y, int z, @NotNull BlockDataBuffer buffer);
+
+    /**
+     * 把长方体范围内所有满足条件的方块替换为给定的方块, 例如只把石头替换为矿石.
+     * <p>
+     * 条件对每种不同的方块状态只会被求值一次, 所以不应依赖方块的位置或产生副作用.
+     * 对于{@link org.bukkit.generator.LimitedRegion}, 整个范围必须在区域内.
+     *
+     * @param xMin 最小X坐标(包含)
+     * @param yMin 最小Y坐标(包含)
+     * @param zMin 最小Z坐标(包含)
+     * @param xMax 最大X坐标(不包含)
+     * @param yMax 最大Y坐标(不包含)
+     * @param zMax 最大Z坐标(不包含)
+     * @param mask 决定方块是否被替换的条件
+     * @param replacement 替换成的方块
+     * @return 被替换的方块数
+     */
+    int replace(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, @NotNull Predicate<? super BlockData> mask, @NotNull BlockData replacement);
+
     /**
      * Creates a tree at the given {@link Location}
      *
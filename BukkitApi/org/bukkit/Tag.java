@@ -11,6 +11,9 @@ import org.jetbrains.annotations.NotNull;
  * Note that whilst all tags defined within this interface must be present in
  * implementations, their existence is not guaranteed across future versions.
  *
+ * Tags over enum values can be copied into an {@link EnumTag} for constant
+ * time membership checks and to combine them with other tags.
+ *
  * @param <T> the type of things grouped by this tag
  */
 public interface Tag<T extends Keyed> extends Keyed {
@@ -29,6 +29,7 @@ import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.messaging.PluginMessageRecipient;
 import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Consumer;
+import org.bukkit.util.RayTraceBatch;
 import org.bukkit.util.RayTraceResult;
 import org.bukkit.util.Vector;
 import org.jetbrains.annotations.Contract;
@@ -1025,6 +1026,56 @@ public interface World extends RegionAccessor, WorldInfo, PluginMessageRecipient
     @Nullable
     public RayTraceResult rayTrace(@NotNull Location start, @NotNull Vector direction, double maxDistance, @NotNull FluidCollisionMode fluidCollisionMode, boolean ignorePassableBlocks, double raySize, @Nullable Predicate<Entity> filter);
 
+    /**
+     * 对一批射线执行实体射线跟踪, 并将每条射线最近的命中结果写入批次中.
+     * <p>
+     * 与逐条调用{@link #rayTraceEntities(Location, Vector, double, double, Predicate)}相比,
+     * 实现只需为整个批次收集一次候选实体.
+     * <p>
+     * 若{@link RayTraceBatch#isParallel()}为true, 实现可以将批次拆分到多个线程上执行,
+     * 此时过滤器可能会被并发调用.
+     *
+     * @param batch 射线批次, 结果会写入其中
+     * @param raySize 在进行碰撞检查之前, 实体边界框将按此值均匀地放大(或缩小)
+     * @param filter 只考虑满足此过滤器的实体, 或者 <code>null</code> 考虑所有实体
+     * @see #rayTraceEntities(Location, Vector, double, double, Predicate)
+     */
+    public void rayTraceEntities(@NotNull RayTraceBatch batch, double raySize, @Nullable Predicate<Entity> filter);
+
+    /**
+     * 对一批射线执行方块射线跟踪, 并将每条射线最近的命中结果写入批次中.
+     * <p>
+     * 与逐条调用{@link #rayTraceBlocks(Location, Vector, double, FluidCollisionMode, boolean)}相比,
+     * 实现可以在所有射线之间共享区块和方块的查找.
+     * <p>
+     * 这可能会导致区块加载! 若{@link RayTraceBatch#isParallel()}为true,
+     * 实现可以基于世界快照将批次拆分到多个线程上执行.
+     *
+     * @param batch 射线批次, 结果会写入其中
+     * @param fluidCollisionMode 流体碰撞模式
+     * @param ignorePassableBlocks 是否忽略可穿过但可碰撞的方块(例如高草丛、告示牌、液体等)
+     * @see #rayTraceBlocks(Location, Vector, double, FluidCollisionMode, boolean)
+     */
+    public void rayTraceBlocks(@NotNull RayTraceBatch batch, @NotNull FluidCollisionMode fluidCollisionMode, boolean ignorePassableBlocks);
+
+    /**
+     * 对一批射线执行射线跟踪, 检查方块碰撞和实体碰撞, 并将每条射线最近的命中结果写入批次中.
+     * <p>
+     * 实现只需为整个批次收集一次候选实体(参见{@link RayTraceBatch#getBounds(double)}),
+     * 并可以在所有射线之间共享区块和方块的查找. 若{@link RayTraceBatch#isParallel()}为true,
+     * 实现可以基于世界快照将批次拆分到多个线程上执行, 此时过滤器可能会被并发调用.
+     * <p>
+     * 这可能会导致区块加载! 一些实现可能会对最大距离施加人为限制.
+     *
+     * @param batch 射线批次, 结果会写入其中
+     * @param fluidCollisionMode 流体碰撞模式
+     * @param ignorePassableBlocks 是否忽略可穿过但可碰撞的方块(例如高草丛、告示牌、液体等)
+     * @param raySize 在进行碰撞检查之前, 实体边界框将按此值均匀地放大(或缩小)
+     * @param filter 只考虑满足此过滤器的实体, 或者 <code>null</code> 考虑所有实体
+     * @see #rayTrace(Location, Vector, double, FluidCollisionMode, boolean, double, Predicate)
+     */
+    public void rayTrace(@NotNull RayTraceBatch batch, @NotNull FluidCollisionMode fluidCollisionMode, boolean ignorePassableBlocks, double raySize, @Nullable Predicate<Entity> filter);
+
     /**
      * 获取这个世界的默认出生点{@link Location 位置}.
      * <p>
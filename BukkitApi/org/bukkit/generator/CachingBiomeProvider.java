@@ -0,0 +1,343 @@
+package org.bukkit.generator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang.Validate;
+import org.bukkit.block.Biome;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 缓存另一个{@link BiomeProvider}结果的生物群系提供者.
+ * <p>
+ * 服务器以4x4x4方块为单位(即quart坐标)查询生物群系, 而基于噪音的提供者对相邻的列往往要重复计算开销很大的函数;
+ * 装饰和结构放置还会再次查询相同的位置. 本类把世界按水平方向32x32个方块划分为区域块,
+ * 每个区域块以short数组保存其中每个4x4x4单元的生物群系, 第一次查询某个单元时才调用被包装的提供者.
+ * <pre>
+ * public BiomeProvider getDefaultBiomeProvider(WorldInfo worldInfo) {
+ *     return new CachingBiomeProvider(new MyNoiseBiomeProvider(worldInfo.getSeed()));
+ * }
+ * </pre>
+ * 被包装的提供者会在每个单元的最小角(坐标均为4的倍数)处被查询, 同一单元内的所有位置返回同一个生物群系,
+ * 与服务器保存生物群系的精度相同. 因此被包装的提供者必须对同一位置总是返回相同的结果.
+ * <p>
+ * 缓存的区域块数有上限, 超出时按近似LRU(时钟算法)淘汰. 区域块分布在多个各自加锁的段中,
+ * 可以安全地被并行生成区块的多个线程同时使用.
+ */
+public final class CachingBiomeProvider extends BiomeProvider {
+    /**
+     * 默认最多缓存的区域块数.
+     */
+    public static final int DEFAULT_MAX_TILES = 1024;
+
+    // A tile spans 8x8 quart columns, i.e. 32x32 blocks, over the full world height
+    private static final int TILE_SHIFT = 3;
+    private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+    private static final Biome[] BIOMES = Biome.values();
+
+    private final BiomeProvider delegate;
+    private final int maxTiles;
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 包装一个生物群系提供者, 最多缓存{@link #DEFAULT_MAX_TILES}个区域块.
+     *
+     * @param delegate 被包装的提供者
+     */
+    public CachingBiomeProvider(@NotNull BiomeProvider delegate) {
+        this(delegate, DEFAULT_MAX_TILES);
+    }
+
+    /**
+     * 包装一个生物群系提供者.
+     * 高度为384的世界中每个区域块约占12 KiB.
+     *
+     * @param delegate 被包装的提供者
+     * @param maxTiles 最多缓存的区域块数
+     */
+    public CachingBiomeProvider(@NotNull BiomeProvider delegate, int maxTiles) {
+        Validate.notNull(delegate, "Delegate cannot be null");
+        Validate.isTrue(maxTiles > 0, "Max tiles must be positive");
+        this.delegate = delegate;
+        this.maxTiles = maxTiles;
+        int segmentCount = 1;
+        while (segmentCount < 16 && segmentCount * 2 <= maxTiles) {
+            segmentCount <<= 1;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // Spread the remainder so the capacities add up to maxTiles exactly
+            segments[i] = new Segment(maxTiles / segmentCount + (i < maxTiles % segmentCount ? 1 : 0));
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    /**
+     * 获取被包装的提供者.
+     *
+     * @return 被包装的提供者
+     */
+    @NotNull
+    public BiomeProvider getDelegate() {
+        return delegate;
+    }
+
+    @NotNull
+    @Override
+    public Biome getBiome(@NotNull WorldInfo worldInfo, int x, int y, int z) {
+        int quartX = x >> 2;
+        int quartY = y >> 2;
+        int quartZ = z >> 2;
+        int minQuartY = worldInfo.getMinHeight() >> 2;
+        int height = (worldInfo.getMaxHeight() >> 2) - minQuartY;
+        if (quartY < minQuartY || quartY >= minQuartY + height) {
+            // Outside the world height; not worth a tile slot
+            misses.increment();
+            return delegate.getBiome(worldInfo, quartX << 2, quartY << 2, quartZ << 2);
+        }
+
+        long key = ((long) (quartX >> TILE_SHIFT) << 32) | ((quartZ >> TILE_SHIFT) & 0xFFFFFFFFL);
+        Tile tile = segmentFor(key).get(key, worldInfo.getUID(), minQuartY, height, evictions);
+        int index = (((quartY - minQuartY) << TILE_SHIFT | (quartZ & TILE_MASK)) << TILE_SHIFT) | (quartX & TILE_MASK);
+        int cached = tile.biomes[index];
+        if (cached != 0) {
+            hits.increment();
+            return BIOMES[cached - 1];
+        }
+        misses.increment();
+        Biome biome = delegate.getBiome(worldInfo, quartX << 2, quartY << 2, quartZ << 2);
+        // Racing threads store the same value, so the plain write is harmless
+        tile.biomes[index] = (short) (biome.ordinal() + 1);
+        return biome;
+    }
+
+    @NotNull
+    @Override
+    public List<Biome> getBiomes(@NotNull WorldInfo worldInfo) {
+        return delegate.getBiomes(worldInfo);
+    }
+
+    /**
+     * 清空缓存, 例如在被包装的提供者的参数改变之后.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 获取当前缓存的区域块数.
+     *
+     * @return 区域块数
+     */
+    public int getTileCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            count += segment.size();
+        }
+        return count;
+    }
+
+    /**
+     * 获取最多缓存的区域块数.
+     *
+     * @return 区域块数上限
+     */
+    public int getMaxTiles() {
+        return maxTiles;
+    }
+
+    /**
+     * 获取命中缓存的查询次数.
+     *
+     * @return 命中次数
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 获取调用了被包装的提供者的查询次数.
+     *
+     * @return 未命中次数
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 获取被淘汰的区域块数.
+     *
+     * @return 淘汰次数
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * 获取命中率.
+     *
+     * @return 命中次数占所有查询的比例, 从未查询过时为0
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * 将命中, 未命中和淘汰次数清零.
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @NotNull
+    private Segment segmentFor(long key) {
+        // Take the top bits; Segment takes its buckets from the bits below
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 60) & segmentMask];
+    }
+
+    @Override
+    public String toString() {
+        return "CachingBiomeProvider{delegate=" + delegate + ",tiles=" + getTileCount() + '/' + maxTiles
+                + ",hitRate=" + getHitRate() + '}';
+    }
+
+    /**
+     * 一个区域块内每个4x4x4单元的生物群系, 下标为(y * 8 + z) * 8 + x, 值为序数加1, 0表示尚未查询.
+     */
+    private static final class Tile {
+        private final UUID world;
+        private final int minQuartY;
+        private final short[] biomes;
+
+        private Tile(@NotNull UUID world, int minQuartY, int height) {
+            this.world = world;
+            this.minQuartY = minQuartY;
+            this.biomes = new short[height << (TILE_SHIFT * 2)];
+        }
+
+        private boolean matches(@NotNull UUID world, int minQuartY, int height) {
+            return this.world.equals(world) && this.minQuartY == minQuartY && biomes.length == height << (TILE_SHIFT * 2);
+        }
+    }
+
+    /**
+     * 容量固定的区域块表: 以线性探测的开放寻址哈希表把键映射到槽位, 满时用时钟算法淘汰最近未被访问的槽位.
+     */
+    private static final class Segment {
+        private final long[] keys;
+        private final Tile[] tiles;
+        private final boolean[] referenced;
+        // Slot + 1 per bucket, 0 for an empty bucket
+        private final int[] table;
+        private final int tableMask;
+        private int size;
+        private int hand;
+
+        private Segment(int capacity) {
+            this.keys = new long[capacity];
+            this.tiles = new Tile[capacity];
+            this.referenced = new boolean[capacity];
+            int tableSize = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+            this.table = new int[tableSize];
+            this.tableMask = tableSize - 1;
+        }
+
+        @NotNull
+        private synchronized Tile get(long key, @NotNull UUID world, int minQuartY, int height, @NotNull LongAdder evictions) {
+            int bucket = find(key);
+            if (bucket >= 0) {
+                int slot = table[bucket] - 1;
+                Tile tile = tiles[slot];
+                if (tile.matches(world, minQuartY, height)) {
+                    referenced[slot] = true;
+                    return tile;
+                }
+                // Same coordinates in another world; start the tile over
+                tile = new Tile(world, minQuartY, height);
+                tiles[slot] = tile;
+                referenced[slot] = true;
+                return tile;
+            }
+
+            int slot;
+            if (size < keys.length) {
+                slot = size++;
+            } else {
+                // Second chance: skip slots used since the hand last passed them
+                while (referenced[hand]) {
+                    referenced[hand] = false;
+                    hand = hand + 1 == keys.length ? 0 : hand + 1;
+                }
+                slot = hand;
+                hand = hand + 1 == keys.length ? 0 : hand + 1;
+                remove(find(keys[slot]));
+                evictions.increment();
+            }
+            Tile tile = new Tile(world, minQuartY, height);
+            keys[slot] = key;
+            tiles[slot] = tile;
+            referenced[slot] = true;
+            int free = bucket(key);
+            while (table[free] != 0) {
+                free = (free + 1) & tableMask;
+            }
+            table[free] = slot + 1;
+            return tile;
+        }
+
+        private synchronized void clear() {
+            Arrays.fill(table, 0);
+            Arrays.fill(tiles, null);
+            Arrays.fill(referenced, false);
+            size = 0;
+            hand = 0;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private int find(long key) {
+            int bucket = bucket(key);
+            while (table[bucket] != 0) {
+                if (keys[table[bucket] - 1] == key) {
+                    return bucket;
+                }
+                bucket = (bucket + 1) & tableMask;
+            }
+            return -1;
+        }
+
+        private void remove(int bucket) {
+            // Backward-shift deletion keeps every remaining key reachable from its home bucket
+            int hole = bucket;
+            int next = (hole + 1) & tableMask;
+            while (table[next] != 0) {
+                int home = bucket(keys[table[next] - 1]);
+                if (((next - home) & tableMask) >= ((next - hole) & tableMask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+                next = (next + 1) & tableMask;
+            }
+            table[hole] = 0;
+        }
+
+        private int bucket(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & tableMask;
+        }
+    }
+}
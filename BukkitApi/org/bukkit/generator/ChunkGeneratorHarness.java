@@ -0,0 +1,443 @@
+package org.bukkit.generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.apache.commons.lang.Validate;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 在内存中并行运行{@link ChunkGenerator}, 用于验证其线程安全性并测量生成速度.
+ * <p>
+ * {@link ChunkGenerator}的生成方法必须能被多个线程同时调用. 本类在一个{@link ForkJoinPool}中,
+ * 以不依赖任何已加载世界的{@link WorldInfo}和{@link ChunkGenerator.ChunkData}生成一片区域的区块,
+ * 并为每个区块的方块内容计算指纹. 同一个种子在不同线程数下必须得到相同的指纹,
+ * 否则说明生成器存在共享状态的竞争(例如共用的{@link Random}或未同步的缓存):
+ * <pre>
+ * ChunkGeneratorHarness.Report report = new ChunkGeneratorHarness(generator)
+ *     .setSeed(1234L)
+ *     .setRegion(-8, -8, 16, 16)
+ *     .verify(Runtime.getRuntime().availableProcessors(), 3);
+ * if (!report.isDeterministic()) {
+ *     getLogger().warning("Generator is not thread safe: " + report);
+ * }
+ * </pre>
+ * 只有插件自己的{@link ChunkGenerator#generateNoise generateNoise},
+ * {@link ChunkGenerator#generateSurface generateSurface}, {@link ChunkGenerator#generateBedrock generateBedrock}
+ * 和{@link ChunkGenerator#generateCaves generateCaves}会被调用; 由{@code shouldGenerate*}交给原版的步骤无法在此运行.
+ * 若生成器设置了{@link org.bukkit.block.data.BlockData}类型的方块, 计算指纹需要服务器已经启动.
+ *
+ * @see ChunkGenerator
+ */
+public final class ChunkGeneratorHarness {
+    private final ChunkGenerator generator;
+    private String worldName = "harness";
+    private World.Environment environment = World.Environment.NORMAL;
+    private long seed;
+    private int minHeight = -64;
+    private int maxHeight = 320;
+    private int minChunkX = 0;
+    private int minChunkZ = 0;
+    private int width = 8;
+    private int depth = 8;
+
+    /**
+     * 为给定的生成器创建测试工具. 默认在种子为0, 高度为-64到320的主世界中生成(0, 0)开始的8x8个区块.
+     *
+     * @param generator 区块生成器
+     */
+    public ChunkGeneratorHarness(@NotNull ChunkGenerator generator) {
+        Validate.notNull(generator, "Generator cannot be null");
+        this.generator = generator;
+    }
+
+    /**
+     * 设置世界名称.
+     *
+     * @param worldName 世界名称
+     * @return 本对象
+     */
+    @NotNull
+    public ChunkGeneratorHarness setWorldName(@NotNull String worldName) {
+        Validate.notNull(worldName, "World name cannot be null");
+        this.worldName = worldName;
+        return this;
+    }
+
+    /**
+     * 设置世界环境.
+     *
+     * @param environment 世界环境
+     * @return 本对象
+     */
+    @NotNull
+    public ChunkGeneratorHarness setEnvironment(@NotNull World.Environment environment) {
+        Validate.notNull(environment, "Environment cannot be null");
+        this.environment = environment;
+        return this;
+    }
+
+    /**
+     * 设置世界种子.
+     *
+     * @param seed 种子
+     * @return 本对象
+     */
+    @NotNull
+    public ChunkGeneratorHarness setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * 设置世界的高度范围.
+     *
+     * @param minHeight 最低高度(包含), 必须是16的倍数
+     * @param maxHeight 最高高度(不包含), 必须是16的倍数
+     * @return 本对象
+     */
+    @NotNull
+    public ChunkGeneratorHarness setHeight(int minHeight, int maxHeight) {
+        Validate.isTrue(minHeight < maxHeight, "Min height must be lower than max height");
+        Validate.isTrue((minHeight & 15) == 0 && (maxHeight & 15) == 0, "Heights must be multiples of 16");
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+        return this;
+    }
+
+    /**
+     * 设置要生成的区块范围.
+     *
+     * @param minChunkX 起始区块的X坐标
+     * @param minChunkZ 起始区块的Z坐标
+     * @param width X方向的区块数
+     * @param depth Z方向的区块数
+     * @return 本对象
+     */
+    @NotNull
+    public ChunkGeneratorHarness setRegion(int minChunkX, int minChunkZ, int width, int depth) {
+        Validate.isTrue(width > 0 && depth > 0, "Region must contain at least one chunk");
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.width = width;
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * 用给定数量的线程生成整个区域一次.
+     *
+     * @param threads 线程数
+     * @return 运行结果
+     */
+    @NotNull
+    public Run run(int threads) {
+        Validate.isTrue(threads > 0, "Threads must be positive");
+        WorldInfo worldInfo = new MemoryWorldInfo(worldName, environment, seed, minHeight, maxHeight);
+        BiomeProvider biomeProvider = generator.getDefaultBiomeProvider(worldInfo);
+        int count = width * depth;
+        long[] fingerprints = new long[count];
+        Map<Long, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<Long, Throwable>());
+
+        // Visit chunks in a shuffled order when parallel, so order dependent state shows up as a mismatch
+        List<Integer> order = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; i++) {
+            order.add(i);
+        }
+        if (threads > 1) {
+            Collections.shuffle(order, new Random(seed ^ threads));
+        }
+
+        long elapsed;
+        if (threads == 1) {
+            long start = System.nanoTime();
+            for (int index : order) {
+                generate(worldInfo, biomeProvider, index, fingerprints, failures);
+            }
+            elapsed = System.nanoTime() - start;
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(count);
+                long start = System.nanoTime();
+                for (int index : order) {
+                    tasks.add(pool.submit(() -> generate(worldInfo, biomeProvider, index, fingerprints, failures)));
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+                elapsed = System.nanoTime() - start;
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return new Run(threads, elapsed, minChunkX, minChunkZ, width, depth, fingerprints, failures);
+    }
+
+    /**
+     * 先用单线程生成参考结果, 再用给定数量的线程重复生成若干次, 比较每个区块的指纹.
+     *
+     * @param threads 并行运行的线程数
+     * @param rounds 并行运行的次数
+     * @return 验证报告
+     */
+    @NotNull
+    public Report verify(int threads, int rounds) {
+        Validate.isTrue(rounds > 0, "Rounds must be positive");
+        Run reference = run(1);
+        List<Run> runs = new ArrayList<Run>(rounds);
+        for (int i = 0; i < rounds; i++) {
+            runs.add(run(threads));
+        }
+        return new Report(reference, runs);
+    }
+
+    private void generate(@NotNull WorldInfo worldInfo, BiomeProvider biomeProvider, int index, @NotNull long[] fingerprints, @NotNull Map<Long, Throwable> failures) {
+        int chunkX = minChunkX + index % width;
+        int chunkZ = minChunkZ + index / width;
+        PalettedChunkData chunkData = new PalettedChunkData(worldInfo, biomeProvider, chunkX, chunkZ);
+        long chunkSeed = seed ^ (chunkX * 341873128712L + chunkZ * 132897987541L);
+        try {
+            generator.generateNoise(worldInfo, new Random(chunkSeed), chunkX, chunkZ, chunkData);
+            generator.generateSurface(worldInfo, new Random(chunkSeed), chunkX, chunkZ, chunkData);
+            generator.generateBedrock(worldInfo, new Random(chunkSeed), chunkX, chunkZ, chunkData);
+            generator.generateCaves(worldInfo, new Random(chunkSeed), chunkX, chunkZ, chunkData);
+            fingerprints[index] = chunkData.fingerprint();
+        } catch (Throwable throwable) {
+            failures.put(getChunkKey(chunkX, chunkZ), throwable);
+        }
+    }
+
+    /**
+     * 将区块坐标打包为一个long.
+     *
+     * @param chunkX 区块的X坐标
+     * @param chunkZ 区块的Z坐标
+     * @return 区块键, 低32位为X坐标, 高32位为Z坐标
+     */
+    public static long getChunkKey(int chunkX, int chunkZ) {
+        return (chunkX & 0xffffffffL) | ((chunkZ & 0xffffffffL) << 32);
+    }
+
+    /**
+     * 一次生成的结果.
+     */
+    public static final class Run {
+        private final int threads;
+        private final long elapsedNanos;
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int width;
+        private final int depth;
+        private final long[] fingerprints;
+        private final Map<Long, Throwable> failures;
+
+        private Run(int threads, long elapsedNanos, int minChunkX, int minChunkZ, int width, int depth, @NotNull long[] fingerprints, @NotNull Map<Long, Throwable> failures) {
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.minChunkX = minChunkX;
+            this.minChunkZ = minChunkZ;
+            this.width = width;
+            this.depth = depth;
+            this.fingerprints = fingerprints;
+            this.failures = Collections.unmodifiableMap(new LinkedHashMap<Long, Throwable>(failures));
+        }
+
+        /**
+         * 获取使用的线程数.
+         *
+         * @return 线程数
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * 获取生成的区块数.
+         *
+         * @return 区块数
+         */
+        public int getChunkCount() {
+            return fingerprints.length;
+        }
+
+        /**
+         * 获取生成整个区域所用的时间, 包括计算指纹的时间.
+         *
+         * @return 时间/纳秒
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * 获取每秒生成的区块数.
+         *
+         * @return 每秒区块数
+         */
+        public double getChunksPerSecond() {
+            return fingerprints.length / (Math.max(1L, elapsedNanos) / 1.0E9D);
+        }
+
+        /**
+         * 获取每个处理器核心每秒生成的区块数. 核心数为线程数与可用处理器数中较小的一个.
+         *
+         * @return 每核心每秒区块数
+         */
+        public double getChunksPerSecondPerCore() {
+            return getChunksPerSecond() / Math.min(threads, Runtime.getRuntime().availableProcessors());
+        }
+
+        /**
+         * 获取区块方块内容的指纹.
+         *
+         * @param chunkX 区块的X坐标
+         * @param chunkZ 区块的Z坐标
+         * @return 指纹, 生成失败的区块为0
+         * @throws IllegalArgumentException 如果区块不在生成范围内
+         */
+        public long getFingerprint(int chunkX, int chunkZ) {
+            int dx = chunkX - minChunkX;
+            int dz = chunkZ - minChunkZ;
+            Validate.isTrue(dx >= 0 && dx < width && dz >= 0 && dz < depth, "Chunk is outside of the generated region");
+            return fingerprints[dz * width + dx];
+        }
+
+        /**
+         * 获取生成时抛出了异常的区块.
+         *
+         * @return 以{@link #getChunkKey(int, int)}为键的异常
+         */
+        @NotNull
+        public Map<Long, Throwable> getFailures() {
+            return failures;
+        }
+
+        /**
+         * 获取与另一次生成结果指纹不同的区块.
+         *
+         * @param other 另一次生成的结果
+         * @return 以{@link #getChunkKey(int, int)}表示的区块
+         */
+        @NotNull
+        public Set<Long> getMismatches(@NotNull Run other) {
+            Validate.notNull(other, "Other run cannot be null");
+            Validate.isTrue(other.minChunkX == minChunkX && other.minChunkZ == minChunkZ && other.width == width && other.depth == depth, "Runs cover different regions");
+            Set<Long> result = new LinkedHashSet<Long>();
+            for (int i = 0; i < fingerprints.length; i++) {
+                if (fingerprints[i] != other.fingerprints[i]) {
+                    result.add(getChunkKey(minChunkX + i % width, minChunkZ + i / width));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Run{threads=" + threads + ",chunks=" + fingerprints.length + ",elapsedMillis=" + elapsedNanos / 1000000L
+                    + ",chunksPerSecond=" + String.format("%.1f", getChunksPerSecond())
+                    + ",chunksPerSecondPerCore=" + String.format("%.1f", getChunksPerSecondPerCore())
+                    + ",failures=" + failures.size() + '}';
+        }
+    }
+
+    /**
+     * 并行生成的验证报告.
+     */
+    public static final class Report {
+        private final Run reference;
+        private final List<Run> runs;
+        private final Set<Long> mismatches = new LinkedHashSet<Long>();
+        private final Map<Long, Throwable> failures = new LinkedHashMap<Long, Throwable>();
+
+        private Report(@NotNull Run reference, @NotNull List<Run> runs) {
+            this.reference = reference;
+            this.runs = Collections.unmodifiableList(runs);
+            failures.putAll(reference.getFailures());
+            for (Run run : runs) {
+                mismatches.addAll(run.getMismatches(reference));
+                for (Map.Entry<Long, Throwable> entry : run.getFailures().entrySet()) {
+                    if (!failures.containsKey(entry.getKey())) {
+                        failures.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+
+        /**
+         * 获取单线程的参考结果.
+         *
+         * @return 参考结果
+         */
+        @NotNull
+        public Run getReference() {
+            return reference;
+        }
+
+        /**
+         * 获取各次并行生成的结果.
+         *
+         * @return 并行生成的结果
+         */
+        @NotNull
+        public List<Run> getRuns() {
+            return runs;
+        }
+
+        /**
+         * 获取在任意一次并行生成中与参考结果不同的区块.
+         *
+         * @return 以{@link #getChunkKey(int, int)}表示的区块
+         */
+        @NotNull
+        public Set<Long> getMismatches() {
+            return Collections.unmodifiableSet(mismatches);
+        }
+
+        /**
+         * 获取在任意一次生成中抛出了异常的区块, 每个区块只保留第一个异常.
+         *
+         * @return 以{@link #getChunkKey(int, int)}为键的异常
+         */
+        @NotNull
+        public Map<Long, Throwable> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * 检查所有生成都没有抛出异常, 且并行生成的结果与参考结果完全相同.
+         *
+         * @return 生成器是否表现为线程安全
+         */
+        public boolean isDeterministic() {
+            return mismatches.isEmpty() && failures.isEmpty();
+        }
+
+        /**
+         * 获取最快的一次并行生成相对于单线程生成的加速比.
+         *
+         * @return 加速比
+         */
+        public double getSpeedup() {
+            long best = Long.MAX_VALUE;
+            for (Run run : runs) {
+                best = Math.min(best, run.getElapsedNanos());
+            }
+            return (double) reference.getElapsedNanos() / Math.max(1L, best);
+        }
+
+        @Override
+        public String toString() {
+            return "Report{deterministic=" + isDeterministic() + ",mismatches=" + mismatches.size() + ",failures=" + failures.size()
+                    + ",speedup=" + String.format("%.2f", getSpeedup()) + ",reference=" + reference + ",runs=" + runs + '}';
+        }
+    }
+}
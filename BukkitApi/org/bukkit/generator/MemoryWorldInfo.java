@@ -0,0 +1,60 @@
+package org.bukkit.generator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 不对应任何已加载世界的{@link WorldInfo}, 供{@link ChunkGeneratorHarness}使用.
+ */
+final class MemoryWorldInfo implements WorldInfo {
+    private final String name;
+    private final UUID uid;
+    private final World.Environment environment;
+    private final long seed;
+    private final int minHeight;
+    private final int maxHeight;
+
+    MemoryWorldInfo(@NotNull String name, @NotNull World.Environment environment, long seed, int minHeight, int maxHeight) {
+        this.name = name;
+        this.uid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        this.environment = environment;
+        this.seed = seed;
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @NotNull
+    @Override
+    public UUID getUID() {
+        return uid;
+    }
+
+    @NotNull
+    @Override
+    public World.Environment getEnvironment() {
+        return environment;
+    }
+
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public int getMinHeight() {
+        return minHeight;
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+}
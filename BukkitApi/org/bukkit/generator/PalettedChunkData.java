@@ -0,0 +1,582 @@
+package org.bukkit.generator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.material.MaterialData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 以调色板压缩存储方块的{@link ChunkGenerator.ChunkData}, 可在服务器之外使用, 例如生成器的单元测试和预生成工具.
+ * <p>
+ * 与原版相同, 区块按高度分为16x16x16的段, 每段有自己的调色板, 方块以调色板下标按位打包在long数组中,
+ * 下标不跨越两个long. 全为空气的段不占用内存, 只有一种方块的段只保存这个方块;
+ * 覆盖整段的{@link #setRegion setRegion}直接替换整段而不逐个写入方块.
+ * 一个只有几种方块的段占用约2 KiB, 而每个方块一个引用的三维数组需要16 KiB以上.
+ * <p>
+ * 方块按调用者传入的对象({@link Material}, {@link BlockData}或{@link MaterialData})原样保存,
+ * 只有在需要转换时(例如对以{@link Material}设置的方块调用{@link #getBlockData(int, int, int)})才会访问服务器.
+ * 与服务器的实现一样, 超出区块范围的写入会被忽略. 本类不是线程安全的.
+ */
+public final class PalettedChunkData implements ChunkGenerator.ChunkData {
+    private static final int SECTION_SIZE = 16 * 16 * 16;
+    // Smallest index width once a section holds more than one block type, as in vanilla
+    private static final int MIN_BITS = 4;
+    // Palettes up to this size are searched linearly; larger ones keep a reverse lookup map
+    private static final int LINEAR_PALETTE_SIZE = 16;
+
+    private final WorldInfo worldInfo;
+    private final BiomeProvider biomeProvider;
+    private final int chunkX;
+    private final int chunkZ;
+    private final int minHeight;
+    private final int maxHeight;
+    // null for sections that are entirely air
+    private final Section[] sections;
+
+    /**
+     * 创建一个不关联世界的空区块, 其所有生物群系都是{@link Biome#PLAINS}.
+     *
+     * @param minHeight 最低高度(包含), 必须是16的倍数
+     * @param maxHeight 最高高度(不包含), 必须是16的倍数
+     */
+    public PalettedChunkData(int minHeight, int maxHeight) {
+        this(null, null, 0, 0, minHeight, maxHeight);
+    }
+
+    /**
+     * 为给定世界中的一个区块创建空区块数据, 高度范围取自世界信息.
+     *
+     * @param worldInfo 世界信息
+     * @param biomeProvider 提供生物群系的对象, 为null时所有生物群系都是{@link Biome#PLAINS}
+     * @param chunkX 区块的X坐标
+     * @param chunkZ 区块的Z坐标
+     */
+    public PalettedChunkData(@NotNull WorldInfo worldInfo, @Nullable BiomeProvider biomeProvider, int chunkX, int chunkZ) {
+        this(worldInfo, biomeProvider, chunkX, chunkZ, checkWorldInfo(worldInfo).getMinHeight(), worldInfo.getMaxHeight());
+    }
+
+    private PalettedChunkData(@Nullable WorldInfo worldInfo, @Nullable BiomeProvider biomeProvider, int chunkX, int chunkZ, int minHeight, int maxHeight) {
+        Validate.isTrue(minHeight < maxHeight, "Min height must be lower than max height");
+        Validate.isTrue((minHeight & 15) == 0 && (maxHeight & 15) == 0, "Heights must be multiples of 16");
+        this.worldInfo = worldInfo;
+        this.biomeProvider = worldInfo == null ? null : biomeProvider;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+        this.sections = new Section[(maxHeight - minHeight) >> 4];
+    }
+
+    @NotNull
+    private static WorldInfo checkWorldInfo(@Nullable WorldInfo worldInfo) {
+        Validate.notNull(worldInfo, "World info cannot be null");
+        return worldInfo;
+    }
+
+    @Override
+    public int getMinHeight() {
+        return minHeight;
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    @NotNull
+    @Override
+    public Biome getBiome(int x, int y, int z) {
+        if (biomeProvider == null) {
+            return Biome.PLAINS;
+        }
+        return biomeProvider.getBiome(worldInfo, (chunkX << 4) + x, y, (chunkZ << 4) + z);
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, @NotNull Material material) {
+        set(x, y, z, material == Material.AIR ? null : material);
+    }
+
+    @Override
+    @Deprecated
+    public void setBlock(int x, int y, int z, @NotNull MaterialData material) {
+        set(x, y, z, material);
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, @NotNull BlockData blockData) {
+        set(x, y, z, blockData);
+    }
+
+    @Override
+    public void setRegion(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, @NotNull Material material) {
+        setRegion(xMin, yMin, zMin, xMax, yMax, zMax, (Object) (material == Material.AIR ? null : material));
+    }
+
+    @Override
+    @Deprecated
+    public void setRegion(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, @NotNull MaterialData material) {
+        setRegion(xMin, yMin, zMin, xMax, yMax, zMax, (Object) material);
+    }
+
+    @Override
+    public void setRegion(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, @NotNull BlockData blockData) {
+        setRegion(xMin, yMin, zMin, xMax, yMax, zMax, (Object) blockData);
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("deprecation")
+    public Material getType(int x, int y, int z) {
+        Object block = get(x, y, z);
+        if (block instanceof Material) {
+            return (Material) block;
+        } else if (block instanceof BlockData) {
+            return ((BlockData) block).getMaterial();
+        } else if (block instanceof MaterialData) {
+            return ((MaterialData) block).getItemType();
+        }
+        return Material.AIR;
+    }
+
+    @NotNull
+    @Override
+    @Deprecated
+    public MaterialData getTypeAndData(int x, int y, int z) {
+        Object block = get(x, y, z);
+        if (block instanceof MaterialData) {
+            return (MaterialData) block;
+        }
+        return getType(x, y, z).getNewData(getData(x, y, z));
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("deprecation")
+    public BlockData getBlockData(int x, int y, int z) {
+        Object block = get(x, y, z);
+        if (block instanceof BlockData) {
+            return (BlockData) block;
+        } else if (block instanceof MaterialData) {
+            MaterialData data = (MaterialData) block;
+            return Bukkit.getUnsafe().fromLegacy(data.getItemType(), data.getData());
+        }
+        return getType(x, y, z).createBlockData();
+    }
+
+    @Override
+    @Deprecated
+    public byte getData(int x, int y, int z) {
+        Object block = get(x, y, z);
+        return block instanceof MaterialData ? ((MaterialData) block).getData() : 0;
+    }
+
+    /**
+     * 获取段的数量, 即区块高度除以16.
+     *
+     * @return 段数
+     */
+    public int getSectionCount() {
+        return sections.length;
+    }
+
+    /**
+     * 检查一个段是否全为空气.
+     *
+     * @param section 段的下标, 从最低的段开始为0
+     * @return 是否全为空气
+     */
+    public boolean isSectionEmpty(int section) {
+        Validate.isTrue(section >= 0 && section < sections.length, "Section out of range");
+        Section current = sections[section];
+        if (current != null && current.isEmpty()) {
+            // Writes of air may have emptied the section; drop it so later reads take the fast path
+            sections[section] = null;
+            current = null;
+        }
+        return current == null;
+    }
+
+    /**
+     * 获取一个段中不同方块的数量(包括空气), 其中可能包括已不再使用的调色板项.
+     *
+     * @param section 段的下标, 从最低的段开始为0
+     * @return 调色板的大小, 空段为1
+     */
+    public int getPaletteSize(int section) {
+        Validate.isTrue(section >= 0 && section < sections.length, "Section out of range");
+        Section current = sections[section];
+        return current == null ? 1 : current.paletteSize;
+    }
+
+    /**
+     * 用另一个区块的内容替换这个区块的全部方块. 两个区块的高度范围必须相同, 段会被直接复制而不逐个写入方块.
+     *
+     * @param source 源区块
+     */
+    public void copyFrom(@NotNull PalettedChunkData source) {
+        Validate.notNull(source, "Source cannot be null");
+        Validate.isTrue(source.minHeight == minHeight && source.maxHeight == maxHeight, "Chunks must have the same height range");
+        if (source == this) {
+            return;
+        }
+        for (int i = 0; i < sections.length; i++) {
+            Section section = source.sections[i];
+            sections[i] = section == null ? null : section.copy();
+        }
+    }
+
+    /**
+     * 把这个区块的全部方块写入另一个{@link ChunkGenerator.ChunkData}, 例如生成器收到的服务器区块数据.
+     * <p>
+     * 目标为{@link PalettedChunkData}且高度范围相同时等同于{@code target.copyFrom(this)}.
+     * 否则只写入两者高度范围的重叠部分: 空段和只有一种方块的段用一次{@link #setRegion setRegion}写入,
+     * 其余的段逐个写入方块, 并且连续相同的方块合并为一次调用.
+     *
+     * @param target 目标区块
+     */
+    public void copyTo(@NotNull ChunkGenerator.ChunkData target) {
+        Validate.notNull(target, "Target cannot be null");
+        if (target instanceof PalettedChunkData) {
+            PalettedChunkData other = (PalettedChunkData) target;
+            if (other.minHeight == minHeight && other.maxHeight == maxHeight) {
+                other.copyFrom(this);
+                return;
+            }
+        }
+        int yMin = Math.max(minHeight, target.getMinHeight());
+        int yMax = Math.min(maxHeight, target.getMaxHeight());
+        for (int i = 0; i < sections.length; i++) {
+            int baseY = minHeight + (i << 4);
+            int fromY = Math.max(baseY, yMin);
+            int toY = Math.min(baseY + 16, yMax);
+            if (fromY >= toY) {
+                continue;
+            }
+            Section section = sections[i];
+            if (section == null || section.bits == 0) {
+                setRegion(target, 0, fromY, 0, 16, toY, 16, section == null ? null : section.palette[0]);
+                continue;
+            }
+            for (int y = fromY; y < toY; y++) {
+                for (int z = 0; z < 16; z++) {
+                    int row = ((y - baseY) << 8) | (z << 4);
+                    // Emit runs of equal blocks along x as a single region
+                    int start = 0;
+                    int id = section.getId(row);
+                    for (int x = 1; x <= 16; x++) {
+                        int next = x < 16 ? section.getId(row | x) : -1;
+                        if (next != id) {
+                            setRegion(target, start, y, z, x, y + 1, z + 1, section.palette[id]);
+                            start = x;
+                            id = next;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void setRegion(@NotNull ChunkGenerator.ChunkData target, int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, @Nullable Object block) {
+        if (block == null) {
+            target.setRegion(xMin, yMin, zMin, xMax, yMax, zMax, Material.AIR);
+        } else if (block instanceof Material) {
+            target.setRegion(xMin, yMin, zMin, xMax, yMax, zMax, (Material) block);
+        } else if (block instanceof BlockData) {
+            target.setRegion(xMin, yMin, zMin, xMax, yMax, zMax, (BlockData) block);
+        } else {
+            target.setRegion(xMin, yMin, zMin, xMax, yMax, zMax, (MaterialData) block);
+        }
+    }
+
+    /**
+     * 计算所有方块内容的64位指纹, 内容相同的区块指纹相同.
+     *
+     * @return 指纹
+     */
+    long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        for (Section section : sections) {
+            if (section == null) {
+                for (int i = 0; i < SECTION_SIZE; i++) {
+                    hash *= 0x100000001b3L;
+                }
+                continue;
+            }
+            long[] keys = new long[section.paletteSize];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = section.palette[i] == null ? 0 : key(section.palette[i]);
+            }
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                hash = (hash ^ keys[section.getId(i)]) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long key(@NotNull Object block) {
+        if (block instanceof Material) {
+            return ((Material) block).name().hashCode();
+        } else if (block instanceof BlockData) {
+            return ((long) ((BlockData) block).getAsString().hashCode() << 32) | 1L;
+        }
+        MaterialData data = (MaterialData) block;
+        return ((long) data.getItemType().name().hashCode() << 8) ^ data.getData() ^ (1L << 62);
+    }
+
+    @Nullable
+    private Object get(int x, int y, int z) {
+        if (x != (x & 0xf) || y < minHeight || y >= maxHeight || z != (z & 0xf)) {
+            return null;
+        }
+        Section section = sections[(y - minHeight) >> 4];
+        if (section == null) {
+            return null;
+        }
+        return section.palette[section.getId(index(x, y, z))];
+    }
+
+    private void set(int x, int y, int z, @Nullable Object block) {
+        if (x != (x & 0xf) || y < minHeight || y >= maxHeight || z != (z & 0xf)) {
+            return;
+        }
+        int sectionIndex = (y - minHeight) >> 4;
+        Section section = sections[sectionIndex];
+        if (section == null) {
+            if (block == null) {
+                return;
+            }
+            section = new Section(null);
+            sections[sectionIndex] = section;
+        }
+        section.set(index(x, y, z), section.idFor(block));
+    }
+
+    private void setRegion(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, @Nullable Object block) {
+        // Clamp to the chunk like the server implementation; max coordinates are exclusive
+        xMin = Math.max(xMin, 0);
+        yMin = Math.max(yMin, minHeight);
+        zMin = Math.max(zMin, 0);
+        xMax = Math.min(xMax, 16);
+        yMax = Math.min(yMax, maxHeight);
+        zMax = Math.min(zMax, 16);
+        if (xMin >= xMax || yMin >= yMax || zMin >= zMax) {
+            return;
+        }
+        boolean fullLayer = xMin == 0 && zMin == 0 && xMax == 16 && zMax == 16;
+        for (int sectionIndex = (yMin - minHeight) >> 4; sectionIndex <= (yMax - 1 - minHeight) >> 4; sectionIndex++) {
+            int baseY = minHeight + (sectionIndex << 4);
+            int fromY = Math.max(yMin, baseY) - baseY;
+            int toY = Math.min(yMax, baseY + 16) - baseY;
+            Section section = sections[sectionIndex];
+            if (fullLayer && fromY == 0 && toY == 16) {
+                sections[sectionIndex] = block == null ? null : new Section(block);
+                continue;
+            }
+            if (section == null) {
+                if (block == null) {
+                    continue;
+                }
+                section = new Section(null);
+                sections[sectionIndex] = section;
+            }
+            // Resolve the palette entry once; it stays valid for the whole fill
+            int id = section.idFor(block);
+            if (section.bits == 0) {
+                continue;
+            }
+            for (int y = fromY; y < toY; y++) {
+                for (int z = zMin; z < zMax; z++) {
+                    int row = (y << 8) | (z << 4);
+                    for (int x = xMin; x < xMax; x++) {
+                        section.set(row | x, id);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int index(int x, int y, int z) {
+        return ((y & 0xf) << 8) | (z << 4) | x;
+    }
+
+    /**
+     * 一个16x16x16的段. bits为0时整段都是palette[0], 不分配下标数组.
+     */
+    private static final class Section {
+        private Object[] palette;
+        private int paletteSize;
+        private Map<Object, Integer> lookup;
+        private int bits;
+        private int valuesPerLong;
+        private long mask;
+        private long[] data;
+
+        private Section(@Nullable Object block) {
+            this.palette = new Object[] {block};
+            this.paletteSize = 1;
+        }
+
+        @NotNull
+        private Section copy() {
+            Section copy = new Section(palette[0]);
+            copy.palette = palette.clone();
+            copy.paletteSize = paletteSize;
+            copy.lookup = lookup == null ? null : new HashMap<Object, Integer>(lookup);
+            copy.bits = bits;
+            copy.valuesPerLong = valuesPerLong;
+            copy.mask = mask;
+            copy.data = data == null ? null : data.clone();
+            return copy;
+        }
+
+        private boolean isEmpty() {
+            if (bits == 0) {
+                return palette[0] == null;
+            }
+            if (palette[0] == null) {
+                // All-zero indices can only point at the air entry
+                boolean zero = true;
+                for (long word : data) {
+                    if (word != 0) {
+                        zero = false;
+                        break;
+                    }
+                }
+                if (zero) {
+                    return true;
+                }
+            }
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                if (palette[getId(i)] != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int getId(int index) {
+            if (bits == 0) {
+                return 0;
+            }
+            int word = index / valuesPerLong;
+            int shift = (index - word * valuesPerLong) * bits;
+            return (int) ((data[word] >>> shift) & mask);
+        }
+
+        private void set(int index, int id) {
+            if (bits == 0) {
+                // idFor only returns 0 while the section holds a single block type
+                return;
+            }
+            int word = index / valuesPerLong;
+            int shift = (index - word * valuesPerLong) * bits;
+            data[word] = (data[word] & ~(mask << shift)) | ((long) id << shift);
+        }
+
+        private int idFor(@Nullable Object block) {
+            int id = find(block);
+            if (id >= 0) {
+                return id;
+            }
+            if (paletteSize >= (bits == 0 ? 1 : 1 << bits) && !compact()) {
+                resize(Math.max(MIN_BITS, bits + 1));
+            }
+            if (paletteSize == palette.length) {
+                palette = Arrays.copyOf(palette, Math.min(palette.length * 2, 1 << bits));
+            }
+            id = paletteSize++;
+            palette[id] = block;
+            if (lookup != null) {
+                lookup.put(block, id);
+            } else if (paletteSize > LINEAR_PALETTE_SIZE) {
+                lookup = new HashMap<Object, Integer>(paletteSize * 2);
+                for (int i = 0; i < paletteSize; i++) {
+                    lookup.put(palette[i], i);
+                }
+            }
+            return id;
+        }
+
+        private int find(@Nullable Object block) {
+            if (lookup != null) {
+                Integer id = lookup.get(block);
+                return id == null ? -1 : id;
+            }
+            for (int i = 0; i < paletteSize; i++) {
+                Object entry = palette[i];
+                if (entry == block || (entry != null && entry.equals(block))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 移除不再使用的调色板项.
+         *
+         * @return 是否腾出了空间
+         */
+        private boolean compact() {
+            if (bits == 0) {
+                return false;
+            }
+            int[] remap = new int[paletteSize];
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                remap[getId(i)] = 1;
+            }
+            int used = 0;
+            for (int i = 0; i < paletteSize; i++) {
+                used += remap[i];
+            }
+            if (used == paletteSize) {
+                return false;
+            }
+            Object[] compacted = new Object[palette.length];
+            int next = 0;
+            for (int i = 0; i < paletteSize; i++) {
+                if (remap[i] != 0) {
+                    compacted[next] = palette[i];
+                    remap[i] = next++;
+                }
+            }
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                set(i, remap[getId(i)]);
+            }
+            palette = compacted;
+            paletteSize = next;
+            lookup = null;
+            if (paletteSize > LINEAR_PALETTE_SIZE) {
+                lookup = new HashMap<Object, Integer>(paletteSize * 2);
+                for (int i = 0; i < paletteSize; i++) {
+                    lookup.put(palette[i], i);
+                }
+            }
+            return true;
+        }
+
+        private void resize(int newBits) {
+            int newValuesPerLong = 64 / newBits;
+            long[] newData = new long[(SECTION_SIZE + newValuesPerLong - 1) / newValuesPerLong];
+            if (bits != 0) {
+                for (int i = 0; i < SECTION_SIZE; i++) {
+                    int word = i / newValuesPerLong;
+                    newData[word] |= (long) getId(i) << ((i - word * newValuesPerLong) * newBits);
+                }
+            }
+            bits = newBits;
+            valuesPerLong = newValuesPerLong;
+            mask = (1L << newBits) - 1;
+            data = newData;
+        }
+    }
+}
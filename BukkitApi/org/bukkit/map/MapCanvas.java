@@ -101,4 +101,18 @@ public interface MapCanvas {
      */
     public void drawText(int x, int y, @NotNull MapFont font, @NotNull String text);
 
+    /**
+     * 获取本次渲染中画布被修改的区域.
+     * <p>
+     * {@link #setPixel(int, int, byte)}, {@link #drawImage(int, int, Image)}和{@link #drawText(int, int, MapFont, String)}
+     * 只记录值确实改变了的像素, 所以每次都画出相同内容的渲染器得到的是空区域.
+     * 服务器在每次{@link MapRenderer#render(MapView, MapCanvas, org.bukkit.entity.Player)}前清空这个区域,
+     * 并把结果合并到每个观看者待发送的区域中; 所有图层的区域都为空时不会向观看者发送任何数据.
+     * 渲染器不应修改返回的区域.
+     *
+     * @return 被修改的区域
+     */
+    @NotNull
+    public MapDirtyRegion getDirtyRegion();
+
 }
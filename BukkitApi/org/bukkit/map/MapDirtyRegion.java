@@ -0,0 +1,302 @@
+package org.bukkit.map;
+
+import org.apache.commons.lang.Validate;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 128×128地图上被修改过的矩形区域.
+ * <p>
+ * 原版的地图数据包每次只能发送一个矩形区域的像素, 所以只需要记录所有修改的外接矩形.
+ * {@link MapCanvas#getDirtyRegion()}记录一次渲染中画布实际被改变的像素,
+ * 服务器为每个观看者各保存一个区域并{@link #add(MapDirtyRegion) 合并}每次渲染的结果,
+ * 发送后{@link #clear() 清空}. 没有改变任何像素的渲染不会产生需要发送的数据.
+ * <p>
+ * 像素数组的布局与画布相同, 下标为{@code y * 128 + x}. 本类不是线程安全的.
+ */
+public final class MapDirtyRegion {
+    /**
+     * 地图的边长.
+     */
+    public static final int SIZE = 128;
+
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    /**
+     * 创建一个空区域.
+     */
+    public MapDirtyRegion() {
+        clear();
+    }
+
+    /**
+     * 复制另一个区域.
+     *
+     * @param other 要复制的区域
+     */
+    public MapDirtyRegion(@NotNull MapDirtyRegion other) {
+        set(other);
+    }
+
+    /**
+     * 标记一个像素被修改, 超出地图的坐标会被忽略.
+     *
+     * @param x x坐标, 从0到127
+     * @param y y坐标, 从0到127
+     */
+    public void add(int x, int y) {
+        if (x < 0 || y < 0 || x >= SIZE || y >= SIZE) {
+            return;
+        }
+        if (x < minX) minX = x;
+        if (y < minY) minY = y;
+        if (x >= maxX) maxX = x + 1;
+        if (y >= maxY) maxY = y + 1;
+    }
+
+    /**
+     * 标记一个矩形区域被修改, 区域会被裁剪到地图范围内.
+     *
+     * @param x 矩形左上角的x坐标
+     * @param y 矩形左上角的y坐标
+     * @param width 矩形的宽度
+     * @param height 矩形的高度
+     */
+    public void add(int x, int y, int width, int height) {
+        int x2 = Math.min(x + width, SIZE);
+        int y2 = Math.min(y + height, SIZE);
+        x = Math.max(x, 0);
+        y = Math.max(y, 0);
+        if (x >= x2 || y >= y2) {
+            return;
+        }
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x2);
+        maxY = Math.max(maxY, y2);
+    }
+
+    /**
+     * 把另一个区域合并到这个区域.
+     *
+     * @param other 要合并的区域
+     */
+    public void add(@NotNull MapDirtyRegion other) {
+        Validate.notNull(other, "Region cannot be null");
+        if (other.isDirty()) {
+            add(other.minX, other.minY, other.getWidth(), other.getHeight());
+        }
+    }
+
+    /**
+     * 标记整张地图被修改.
+     */
+    public void addAll() {
+        minX = 0;
+        minY = 0;
+        maxX = SIZE;
+        maxY = SIZE;
+    }
+
+    /**
+     * 把这个区域设为与另一个区域相同.
+     *
+     * @param other 另一个区域
+     */
+    public void set(@NotNull MapDirtyRegion other) {
+        Validate.notNull(other, "Region cannot be null");
+        minX = other.minX;
+        minY = other.minY;
+        maxX = other.maxX;
+        maxY = other.maxY;
+    }
+
+    /**
+     * 清空这个区域.
+     */
+    public void clear() {
+        minX = SIZE;
+        minY = SIZE;
+        maxX = 0;
+        maxY = 0;
+    }
+
+    /**
+     * 检查是否有像素被修改.
+     *
+     * @return 区域是否非空
+     */
+    public boolean isDirty() {
+        return minX < maxX;
+    }
+
+    /**
+     * 获取区域左上角的x坐标.
+     *
+     * @return 最小x坐标, 区域为空时为128
+     */
+    public int getX() {
+        return minX;
+    }
+
+    /**
+     * 获取区域左上角的y坐标.
+     *
+     * @return 最小y坐标, 区域为空时为128
+     */
+    public int getY() {
+        return minY;
+    }
+
+    /**
+     * 获取区域的宽度.
+     *
+     * @return 宽度, 区域为空时为0
+     */
+    public int getWidth() {
+        return isDirty() ? maxX - minX : 0;
+    }
+
+    /**
+     * 获取区域的高度.
+     *
+     * @return 高度, 区域为空时为0
+     */
+    public int getHeight() {
+        return isDirty() ? maxY - minY : 0;
+    }
+
+    /**
+     * 获取区域包含的像素数, 即{@link #extract(byte[], byte[])}写入的字节数.
+     *
+     * @return 像素数
+     */
+    public int getArea() {
+        return getWidth() * getHeight();
+    }
+
+    /**
+     * 比较两帧地图, 把所有值不同的像素加入这个区域.
+     *
+     * @param previous 上一帧的像素
+     * @param current 当前帧的像素
+     * @return 是否有像素不同
+     */
+    public boolean addChanges(@NotNull byte[] previous, @NotNull byte[] current) {
+        checkFrame(previous);
+        checkFrame(current);
+        // Find the first and last changed rows, then narrow the columns only within them
+        int top = 0;
+        while (top < SIZE && !rowDiffers(previous, current, top)) {
+            top++;
+        }
+        if (top == SIZE) {
+            return false;
+        }
+        int bottom = SIZE - 1;
+        while (!rowDiffers(previous, current, bottom)) {
+            bottom--;
+        }
+        int left = SIZE;
+        int right = 0;
+        for (int y = top; y <= bottom; y++) {
+            int row = y * SIZE;
+            for (int x = 0; x < left; x++) {
+                if (previous[row + x] != current[row + x]) {
+                    left = x;
+                    break;
+                }
+            }
+            for (int x = SIZE - 1; x >= right; x--) {
+                if (previous[row + x] != current[row + x]) {
+                    right = x + 1;
+                    break;
+                }
+            }
+        }
+        add(left, top, right - left, bottom - top + 1);
+        return true;
+    }
+
+    /**
+     * 把一帧中这个区域内的像素按行复制到result, 下标为{@code (y - getY()) * getWidth() + (x - getX())},
+     * 与原版地图数据包的格式相同.
+     *
+     * @param frame 128×128的像素
+     * @param result 存放结果的数组, 长度至少为{@link #getArea()}
+     * @return 写入的字节数
+     */
+    public int extract(@NotNull byte[] frame, @NotNull byte[] result) {
+        checkFrame(frame);
+        Validate.notNull(result, "Result cannot be null");
+        int width = getWidth();
+        int height = getHeight();
+        Validate.isTrue(result.length >= width * height, "Result is shorter than the region");
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(frame, (minY + row) * SIZE + minX, result, row * width, width);
+        }
+        return width * height;
+    }
+
+    /**
+     * 把按{@link #extract(byte[], byte[])}格式存放的像素写回一帧中这个区域内.
+     *
+     * @param patch 区域内的像素
+     * @param frame 128×128的像素
+     */
+    public void apply(@NotNull byte[] patch, @NotNull byte[] frame) {
+        Validate.notNull(patch, "Patch cannot be null");
+        checkFrame(frame);
+        int width = getWidth();
+        int height = getHeight();
+        Validate.isTrue(patch.length >= width * height, "Patch is shorter than the region");
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(patch, row * width, frame, (minY + row) * SIZE + minX, width);
+        }
+    }
+
+    private static boolean rowDiffers(@NotNull byte[] previous, @NotNull byte[] current, int y) {
+        int row = y * SIZE;
+        for (int x = 0; x < SIZE; x++) {
+            if (previous[row + x] != current[row + x]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void checkFrame(@NotNull byte[] frame) {
+        Validate.notNull(frame, "Frame cannot be null");
+        Validate.isTrue(frame.length == SIZE * SIZE, "Frame must contain 128 * 128 pixels");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof MapDirtyRegion)) {
+            return false;
+        }
+        MapDirtyRegion other = (MapDirtyRegion) obj;
+        if (!isDirty() || !other.isDirty()) {
+            return isDirty() == other.isDirty();
+        }
+        return minX == other.minX && minY == other.minY && maxX == other.maxX && maxY == other.maxY;
+    }
+
+    @Override
+    public int hashCode() {
+        if (!isDirty()) {
+            return 0;
+        }
+        return ((minX * 31 + minY) * 31 + maxX) * 31 + maxY;
+    }
+
+    @Override
+    public String toString() {
+        return "MapDirtyRegion{x=" + minX + ",y=" + minY + ",width=" + getWidth() + ",height=" + getHeight() + '}';
+    }
+}
@@ -0,0 +1,229 @@
+package org.bukkit.map;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.commons.lang.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 有容量上限的地图帧缓存, 为{@link MapRenderer#isCached() 可缓存的}渲染器保存每个玩家最近渲染的画面.
+ * <p>
+ * 每帧都带有渲染开始时{@link MapRenderer#getVersion()}返回的版本. 渲染器被{@link MapRenderer#invalidate() 标记失效}时,
+ * 缓存会记下失效时的版本, 此前开始渲染的帧既不会再命中, 也不会在渲染结束后被{@link #put(UUID, long, byte[])}重新放入.
+ * 只对一个玩家失效时, 其他玩家的帧不受影响; 与帧一样, 最多记录最近{@link #getMaxFrames()}个玩家的失效版本.
+ * 静态(非上下文相关)渲染器的所有玩家共用同一帧, 以{@link #SHARED}为键.
+ * <p>
+ * 缓存的帧数超过上限时移除最久未使用的帧, 每帧占用16 KiB. 本类是线程安全的.
+ */
+public final class MapFrameCache {
+    /**
+     * 非上下文相关的渲染器所有玩家共用的帧使用的键.
+     */
+    public static final UUID SHARED = new UUID(0L, 0L);
+
+    private final int maxFrames;
+    private final LinkedHashMap<UUID, Frame> frames;
+    // Frames rendered with a version below these were invalidated, for all keys and per key
+    private final LinkedHashMap<UUID, Long> floors;
+    private long floor = Long.MIN_VALUE;
+    private long hits;
+    private long misses;
+
+    /**
+     * 创建一个帧缓存.
+     *
+     * @param maxFrames 最多缓存的帧数
+     */
+    public MapFrameCache(int maxFrames) {
+        Validate.isTrue(maxFrames > 0, "Max frames must be positive");
+        this.maxFrames = maxFrames;
+        this.frames = new LinkedHashMap<UUID, Frame>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Frame> eldest) {
+                return size() > MapFrameCache.this.maxFrames;
+            }
+        };
+        this.floors = new LinkedHashMap<UUID, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Long> eldest) {
+                return size() > MapFrameCache.this.maxFrames;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的帧.
+     *
+     * @param key 玩家的UUID, 或{@link #SHARED}
+     * @param version 渲染器当前的版本
+     * @return 128×128像素的副本, 若没有缓存或缓存的帧已失效则为null
+     */
+    @Nullable
+    public synchronized byte[] get(@NotNull UUID key, long version) {
+        Validate.notNull(key, "Key cannot be null");
+        Frame frame = frames.get(key);
+        if (frame == null || !isCurrent(key, frame.version, version)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return frame.pixels.clone();
+    }
+
+    /**
+     * 把缓存的帧复制到result中.
+     *
+     * @param key 玩家的UUID, 或{@link #SHARED}
+     * @param version 渲染器当前的版本
+     * @param result 存放128×128像素的数组
+     * @return 是否命中缓存, 未命中时result不会被修改
+     */
+    public synchronized boolean copy(@NotNull UUID key, long version, @NotNull byte[] result) {
+        Validate.notNull(key, "Key cannot be null");
+        checkFrame(result);
+        Frame frame = frames.get(key);
+        if (frame == null || !isCurrent(key, frame.version, version)) {
+            misses++;
+            return false;
+        }
+        hits++;
+        System.arraycopy(frame.pixels, 0, result, 0, result.length);
+        return true;
+    }
+
+    /**
+     * 缓存一帧, 像素会被复制. 若这一帧在失效之前开始渲染, 则不会被缓存.
+     *
+     * @param key 玩家的UUID, 或{@link #SHARED}
+     * @param version 开始渲染这一帧时渲染器的版本
+     * @param pixels 128×128的像素
+     */
+    public synchronized void put(@NotNull UUID key, long version, @NotNull byte[] pixels) {
+        Validate.notNull(key, "Key cannot be null");
+        checkFrame(pixels);
+        if (version < floor(key)) {
+            return;
+        }
+        Frame frame = frames.get(key);
+        if (frame == null) {
+            frames.put(key, new Frame(version, pixels.clone()));
+        } else {
+            // Reuse the buffer of a stale frame instead of allocating another 16 KiB
+            frame.version = version;
+            System.arraycopy(pixels, 0, frame.pixels, 0, pixels.length);
+        }
+    }
+
+    /**
+     * 移除一个玩家的帧及其失效版本, 通常在玩家退出, 不再为其渲染时调用.
+     *
+     * @param key 玩家的UUID, 或{@link #SHARED}
+     */
+    public synchronized void invalidate(@NotNull UUID key) {
+        Validate.notNull(key, "Key cannot be null");
+        frames.remove(key);
+        floors.remove(key);
+    }
+
+    /**
+     * 使一个玩家在指定版本之前开始渲染的帧失效, 包括仍在渲染中的帧.
+     *
+     * @param key 玩家的UUID, 或{@link #SHARED}
+     * @param version 失效后渲染器的版本
+     */
+    public synchronized void invalidate(@NotNull UUID key, long version) {
+        Validate.notNull(key, "Key cannot be null");
+        frames.remove(key);
+        if (version > floor(key)) {
+            floors.put(key, version);
+        }
+    }
+
+    /**
+     * 移除所有帧.
+     */
+    public synchronized void clear() {
+        frames.clear();
+    }
+
+    /**
+     * 使所有在指定版本之前开始渲染的帧失效, 包括仍在渲染中的帧.
+     *
+     * @param version 失效后渲染器的版本
+     */
+    public synchronized void clear(long version) {
+        frames.clear();
+        if (version > floor) {
+            floor = version;
+            // Per key floors at or below the shared one no longer matter
+            for (Iterator<Long> it = floors.values().iterator(); it.hasNext();) {
+                if (it.next() <= floor) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取缓存的帧数.
+     *
+     * @return 帧数
+     */
+    public synchronized int size() {
+        return frames.size();
+    }
+
+    /**
+     * 获取最多缓存的帧数.
+     *
+     * @return 帧数上限
+     */
+    public int getMaxFrames() {
+        return maxFrames;
+    }
+
+    /**
+     * 获取命中缓存的次数.
+     *
+     * @return 命中次数
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * 获取未命中缓存的次数.
+     *
+     * @return 未命中次数
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private long floor(@NotNull UUID key) {
+        Long keyFloor = floors.get(key);
+        return keyFloor == null ? floor : Math.max(floor, keyFloor);
+    }
+
+    private boolean isCurrent(@NotNull UUID key, long frameVersion, long version) {
+        return frameVersion >= floor(key) && frameVersion <= version;
+    }
+
+    private static void checkFrame(@NotNull byte[] pixels) {
+        Validate.notNull(pixels, "Pixels cannot be null");
+        Validate.isTrue(pixels.length == MapDirtyRegion.SIZE * MapDirtyRegion.SIZE, "Frame must contain 128 * 128 pixels");
+    }
+
+    private static final class Frame {
+        private long version;
+        private final byte[] pixels;
+
+        private Frame(long version, @NotNull byte[] pixels) {
+            this.version = version;
+            this.pixels = pixels;
+        }
+    }
+}
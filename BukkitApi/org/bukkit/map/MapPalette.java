@@ -4,6 +4,8 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import org.apache.commons.lang.Validate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -22,17 +24,56 @@ public final class MapPalette {
         return new Color(r, g, b);
     }
 
-    private static double getDistance(@NotNull Color c1, @NotNull Color c2) {
-        double rmean = (c1.getRed() + c2.getRed()) / 2.0;
-        double r = c1.getRed() - c2.getRed();
-        double g = c1.getGreen() - c2.getGreen();
-        int b = c1.getBlue() - c2.getBlue();
+    private static double getDistance(int red1, int green1, int blue1, int red2, int green2, int blue2) {
+        double rmean = (red1 + red2) / 2.0;
+        double r = red1 - red2;
+        double g = green1 - green2;
+        int b = blue1 - blue2;
         double weightR = 2 + rmean / 256.0;
         double weightG = 4.0;
         double weightB = 2 + (255 - rmean) / 256.0;
         return weightR * r * r + weightG * g * g + weightB * b * b;
     }
 
+    private static int findClosest(int red, int green, int blue) {
+        int index = 0;
+        double best = -1;
+
+        for (int i = 4; i < colors.length; i++) {
+            double distance = getDistance(red, green, blue, reds[i], greens[i], blues[i]);
+            if (distance < best || best == -1) {
+                best = distance;
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Matches an opaque 24-bit RGB color, memoizing the result in a lookup
+     * table covering every RGB value.
+     */
+    private static byte matchOpaque(int rgb) {
+        byte[] cache = matchCache;
+        if (cache == null) {
+            synchronized (MapPalette.class) {
+                cache = matchCache;
+                if (cache == null) {
+                    cache = new byte[1 << 24];
+                    matchCache = cache;
+                }
+            }
+        }
+        rgb &= 0xFFFFFF;
+        byte index = cache[rgb];
+        if (index == 0) {
+            // Racing threads compute the same value, so the unsynchronized store is harmless
+            index = (byte) findClosest(rgb >> 16, (rgb >> 8) & 0xFF, rgb & 0xFF);
+            cache[rgb] = index;
+        }
+        return index;
+    }
+
     @NotNull
     static final Color[] colors = {
         c(0, 0, 0), c(0, 0, 0), c(0, 0, 0), c(0, 0, 0),
@@ -99,6 +140,23 @@ public final class MapPalette {
         c(89, 117, 105), c(109, 144, 129), c(127, 167, 150), c(67, 88, 79)
     };
 
+    private static final int[] reds = new int[colors.length];
+    private static final int[] greens = new int[colors.length];
+    private static final int[] blues = new int[colors.length];
+
+    static {
+        for (int i = 0; i < colors.length; i++) {
+            reds[i] = colors[i].getRed();
+            greens[i] = colors[i].getGreen();
+            blues[i] = colors[i].getBlue();
+        }
+    }
+
+    // Exact matchColor results per RGB value, allocated on first use (16 MiB).
+    // Zero marks an entry not computed yet, as opaque colors never match the
+    // transparent entries.
+    private static volatile byte[] matchCache;
+
     // Interface
     /**
      * @deprecated Magic value
@@ -205,12 +263,145 @@ public final class MapPalette {
         temp.getRGB(0, 0, temp.getWidth(), temp.getHeight(), pixels, 0, temp.getWidth());
 
         byte[] result = new byte[temp.getWidth() * temp.getHeight()];
-        for (int i = 0; i < pixels.length; i++) {
-            result[i] = matchColor(new Color(pixels[i], true));
+        argbToBytes(pixels, result);
+        return result;
+    }
+
+    /**
+     * Convert an Image to a byte[] using the palette, optionally spreading the
+     * quantization error over neighbouring pixels with Floyd-Steinberg
+     * dithering.
+     *
+     * @param image The image to convert.
+     * @param dither Whether to dither the image.
+     * @return A byte[] containing the pixels of the image.
+     * @deprecated Magic value
+     */
+    @Deprecated
+    @NotNull
+    public static byte[] imageToBytes(@NotNull Image image, boolean dither) {
+        if (!dither) {
+            return imageToBytes(image);
         }
+        BufferedImage temp = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = temp.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+
+        int[] pixels = new int[temp.getWidth() * temp.getHeight()];
+        temp.getRGB(0, 0, temp.getWidth(), temp.getHeight(), pixels, 0, temp.getWidth());
+
+        byte[] result = new byte[pixels.length];
+        argbToBytesDithered(pixels, temp.getWidth(), result);
         return result;
     }
 
+    /**
+     * Convert packed ARGB pixels, as returned by
+     * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}, to
+     * palette indices without allocating. Pixels with an alpha below 128
+     * become {@link #TRANSPARENT}.
+     * <p>
+     * The result for each pixel is identical to {@link #matchColor(Color)}.
+     * Matches are memoized in a lookup table over all RGB values, so repeated
+     * frames with similar colors convert at the cost of an array read.
+     *
+     * @param pixels The ARGB pixels to convert.
+     * @param result The array to store the palette indices in, at least as
+     *     long as pixels.
+     * @deprecated Magic value
+     */
+    @Deprecated
+    public static void argbToBytes(@NotNull int[] pixels, @NotNull byte[] result) {
+        Validate.notNull(pixels, "Pixels cannot be null");
+        Validate.notNull(result, "Result cannot be null");
+        Validate.isTrue(result.length >= pixels.length, "Result is shorter than pixels");
+        for (int i = 0; i < pixels.length; i++) {
+            result[i] = matchARGB(pixels[i]);
+        }
+    }
+
+    /**
+     * Convert packed ARGB pixels to palette indices with Floyd-Steinberg
+     * dithering. The quantization error of every pixel is spread over its
+     * right and lower neighbours, which preserves gradients that the limited
+     * palette would otherwise band. Pixels with an alpha below 128 become
+     * {@link #TRANSPARENT} and do not spread any error.
+     *
+     * @param pixels The ARGB pixels to convert, row by row.
+     * @param width The width of a row.
+     * @param result The array to store the palette indices in, at least as
+     *     long as pixels.
+     * @deprecated Magic value
+     */
+    @Deprecated
+    public static void argbToBytesDithered(@NotNull int[] pixels, int width, @NotNull byte[] result) {
+        Validate.notNull(pixels, "Pixels cannot be null");
+        Validate.notNull(result, "Result cannot be null");
+        Validate.isTrue(width > 0 && pixels.length % width == 0, "Pixels must contain whole rows");
+        Validate.isTrue(result.length >= pixels.length, "Result is shorter than pixels");
+
+        // Error carried into the current and the next row, three channels per pixel with one pixel of padding on each side
+        int[] current = new int[(width + 2) * 3];
+        int[] next = new int[(width + 2) * 3];
+        for (int row = 0; row < pixels.length; row += width) {
+            for (int x = 0; x < width; x++) {
+                int argb = pixels[row + x];
+                if ((argb >>> 24) < 128) {
+                    result[row + x] = TRANSPARENT;
+                    continue;
+                }
+                int e = (x + 1) * 3;
+                int red = clamp(((argb >> 16) & 0xFF) + current[e] / 16);
+                int green = clamp(((argb >> 8) & 0xFF) + current[e + 1] / 16);
+                int blue = clamp((argb & 0xFF) + current[e + 2] / 16);
+                byte index = matchOpaque((red << 16) | (green << 8) | blue);
+                result[row + x] = index;
+
+                int i = index & 0xFF;
+                int errorRed = red - reds[i];
+                int errorGreen = green - greens[i];
+                int errorBlue = blue - blues[i];
+                // Weights 7/16 right, 3/16 lower left, 5/16 below, 1/16 lower right; divided when the error is read
+                current[e + 3] += errorRed * 7;
+                current[e + 4] += errorGreen * 7;
+                current[e + 5] += errorBlue * 7;
+                next[e - 3] += errorRed * 3;
+                next[e - 2] += errorGreen * 3;
+                next[e - 1] += errorBlue * 3;
+                next[e] += errorRed * 5;
+                next[e + 1] += errorGreen * 5;
+                next[e + 2] += errorBlue * 5;
+                next[e + 3] += errorRed;
+                next[e + 4] += errorGreen;
+                next[e + 5] += errorBlue;
+            }
+            int[] swap = current;
+            current = next;
+            next = swap;
+            Arrays.fill(next, 0);
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    /**
+     * Get the index of the closest matching color in the palette to the given
+     * packed ARGB color. Colors with an alpha below 128 match
+     * {@link #TRANSPARENT}.
+     *
+     * @param argb The ARGB color to match.
+     * @return The index in the palette.
+     * @deprecated Magic value
+     */
+    @Deprecated
+    public static byte matchARGB(int argb) {
+        if ((argb >>> 24) < 128) return 0;
+        return matchOpaque(argb);
+    }
+
     /**
      * Get the index of the closest matching color in the palette to the given
      * color.
@@ -238,19 +429,8 @@ public final class MapPalette {
     public static byte matchColor(@NotNull Color color) {
         if (color.getAlpha() < 128) return 0;
 
-        int index = 0;
-        double best = -1;
-
-        for (int i = 4; i < colors.length; i++) {
-            double distance = getDistance(color, colors[i]);
-            if (distance < best || best == -1) {
-                best = distance;
-                index = i;
-            }
-        }
-
         // Minecraft has 143 colors, some of which have negative byte representations
-        return (byte) (index < 128 ? index : -129 + (index - 127));
+        return matchOpaque(color.getRGB());
     }
 
     /**
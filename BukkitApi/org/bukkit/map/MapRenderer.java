@@ -1,14 +1,24 @@
 package org.bukkit.map;
 
+import org.apache.commons.lang.Validate;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Represents a renderer for a map.
  */
 public abstract class MapRenderer {
 
+    /**
+     * The number of frames a cached renderer keeps by default, 1 MiB of
+     * pixels.
+     */
+    public static final int DEFAULT_CACHED_FRAMES = 64;
+
     private boolean contextual;
+    private final MapFrameCache frameCache;
+    private volatile long version;
 
     /**
      * Initialize the map renderer base to be non-contextual. See {@link
@@ -26,6 +36,36 @@ public abstract class MapRenderer {
      */
     public MapRenderer(boolean contextual) {
         this.contextual = contextual;
+        this.frameCache = null;
+    }
+
+    /**
+     * Initialize the map renderer base with the given contextual and caching
+     * status, keeping up to {@link #DEFAULT_CACHED_FRAMES} frames.
+     *
+     * @param contextual Whether the renderer is contextual. See {@link
+     *     #isContextual()}.
+     * @param cached Whether rendered frames are cached. See {@link
+     *     #isCached()}.
+     */
+    public MapRenderer(boolean contextual, boolean cached) {
+        this(contextual, cached ? DEFAULT_CACHED_FRAMES : 0);
+    }
+
+    /**
+     * Initialize the map renderer base with the given contextual status,
+     * caching up to the given number of frames. Each frame takes 16 KiB.
+     *
+     * @param contextual Whether the renderer is contextual. See {@link
+     *     #isContextual()}.
+     * @param maxCachedFrames The maximum number of cached frames, or 0 to
+     *     disable caching. A renderer that is not contextual only ever needs
+     *     one.
+     */
+    public MapRenderer(boolean contextual, int maxCachedFrames) {
+        Validate.isTrue(maxCachedFrames >= 0, "Max cached frames cannot be negative");
+        this.contextual = contextual;
+        this.frameCache = maxCachedFrames == 0 ? null : new MapFrameCache(contextual ? maxCachedFrames : 1);
     }
 
     /**
@@ -38,6 +78,86 @@ public abstract class MapRenderer {
         return contextual;
     }
 
+    /**
+     * Get whether the output of this renderer is cached, i.e. only depends on
+     * state that is reported through {@link #invalidate()} and {@link
+     * #invalidate(Player)}. The server renders a cached renderer again only
+     * when {@link MapFrameCache#get(java.util.UUID, long)} or {@link
+     * MapFrameCache#copy(java.util.UUID, long, byte[])} with the current
+     * {@link #getVersion()} misses for the player; otherwise the frame is
+     * reused and {@link #render(MapView, MapCanvas, Player)} is not called.
+     * Since {@link #invalidate(Player)} also changes the version, a frame
+     * that is older than the current version may still be valid.
+     * <p>
+     * A cached renderer that is not contextual is static: it is rendered
+     * once and shared by all players until invalidated.
+     *
+     * @return True if cached, false otherwise.
+     */
+    public final boolean isCached() {
+        return frameCache != null;
+    }
+
+    /**
+     * Get the frame cache of this renderer. Frames are keyed by player UUID,
+     * or by {@link MapFrameCache#SHARED} if the renderer is not contextual.
+     *
+     * @return The frame cache, or null if the renderer is not cached.
+     */
+    @Nullable
+    public final MapFrameCache getFrameCache() {
+        return frameCache;
+    }
+
+    /**
+     * Get the version of this renderer's output, which changes every time
+     * {@link #invalidate()} or {@link #invalidate(Player)} is called. A frame
+     * whose rendering started before an invalidation that applies to it is
+     * never reused.
+     *
+     * @return The current version.
+     */
+    public final long getVersion() {
+        return version;
+    }
+
+    /**
+     * Mark the output of this renderer as changed for all players, so cached
+     * frames are rendered again.
+     */
+    public final void invalidate() {
+        long invalidated;
+        synchronized (this) {
+            invalidated = ++version;
+        }
+        if (frameCache != null) {
+            frameCache.clear(invalidated);
+        }
+    }
+
+    /**
+     * Mark the output of this renderer as changed for one player. For a
+     * renderer that is not contextual this is the same as {@link
+     * #invalidate()}.
+     *
+     * @param player The player whose frame changed.
+     */
+    public final void invalidate(@NotNull Player player) {
+        Validate.notNull(player, "Player cannot be null");
+        if (!contextual) {
+            invalidate();
+            return;
+        }
+        long invalidated;
+        synchronized (this) {
+            invalidated = ++version;
+        }
+        if (frameCache != null) {
+            // Frames of other players stay valid, only renders for this player that started earlier are discarded
+            frameCache.invalidate(player.getUniqueId(), invalidated);
+        }
+    }
+
     /**
      * Initialize this MapRenderer for the given map.
      *
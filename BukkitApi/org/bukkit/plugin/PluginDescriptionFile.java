@@ -266,6 +266,18 @@ public final class PluginDescriptionFile {
         loadMap(asMap(YAML.get().load(reader)));
     }
 
+    /**
+     * 从已经解析的plugin.yml键值表中读取PluginDescriptionFile, 跳过YAML解析.
+     *
+     * @param map 解析后的plugin.yml键值表
+     * @throws InvalidDescriptionException 如果PluginDescriptionFile是无效的
+     * @deprecated 内部使用
+     */
+    @Deprecated
+    public PluginDescriptionFile(@NotNull final Map<?, ?> map) throws InvalidDescriptionException {
+        loadMap(map);
+    }
+
     /**
      * 构造一个新的PluginDescriptionFile.
      * <p>
@@ -1,5 +1,7 @@
 package org.bukkit.plugin.java;
 
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -13,6 +15,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -53,7 +56,11 @@ public final class JavaPluginLoader implements PluginLoader {
     final Server server;
     private final Pattern[] fileFilters = new Pattern[]{Pattern.compile("\\.jar$")};
     private final List<PluginClassLoader> loaders = new CopyOnWriteArrayList<PluginClassLoader>();
+    // Class name -> owning loader, built from jar entries so cross-plugin misses never touch a loader
+    private final Map<String, PluginClassLoader> classIndex = new ConcurrentHashMap<String, PluginClassLoader>();
     private final LibraryLoader libraryLoader;
+    private final PluginMetadataCache metadataCache;
+    private boolean metadataCachePruned;
     public static final CustomTimingsHandler pluginParentTimer = new CustomTimingsHandler("** Plugins"); // Spigot
 
     /**
@@ -76,6 +83,7 @@ public final class JavaPluginLoader implements PluginLoader {
             server.getLogger().warning("Could not initialize LibraryLoader (missing dependencies?)");
         }
         this.libraryLoader = libraryLoader;
+        this.metadataCache = new PluginMetadataCache(new File("cache", "plugins"), server.getLogger());
     }
 
     @Override
@@ -142,16 +150,32 @@ public final class JavaPluginLoader implements PluginLoader {
 
         server.getUnsafe().checkSupported(description);
 
+        // The plugin manager reads every description, and so hashes every jar, before the first load
+        if (!metadataCachePruned) {
+            metadataCachePruned = true;
+            metadataCache.prune();
+        }
+
+        final PluginMetadataCache.Entry metadata = metadataCache.get(file);
+        ClassLoader libraries = null;
         final PluginClassLoader loader;
         try {
-            loader = new PluginClassLoader(this, getClass().getClassLoader(), description, dataFolder, file, (libraryLoader != null) ? libraryLoader.createLoader(description) : null);
+            libraries = (libraryLoader != null) ? libraryLoader.createLoader(description) : null;
+            loader = new PluginClassLoader(this, getClass().getClassLoader(), description, dataFolder, file, libraries, metadata);
         } catch (InvalidPluginException ex) {
+            if (libraryLoader != null) {
+                libraryLoader.releaseLoader(libraries);
+            }
             throw ex;
         } catch (Throwable ex) {
+            if (libraryLoader != null) {
+                libraryLoader.releaseLoader(libraries);
+            }
             throw new InvalidPluginException(ex);
         }
 
-        loaders.add(loader);
+        addLoader(loader);
+        metadataCache.save(metadata);
 
         return loader.plugin;
     }
@@ -161,6 +185,13 @@ public final class JavaPluginLoader implements PluginLoader {
     public PluginDescriptionFile getPluginDescription(@NotNull File file) throws InvalidDescriptionException {
         Validate.notNull(file, "File cannot be null");
 
+        PluginMetadataCache.Entry metadata = metadataCache.get(file);
+        if (metadata != null && metadata.getDescription() != null) {
+            @SuppressWarnings("deprecation")
+            PluginDescriptionFile description = new PluginDescriptionFile(metadata.getDescription());
+            return prefetchLibraries(description);
+        }
+
         JarFile jar = null;
         InputStream stream = null;
 
@@ -174,7 +205,20 @@ public final class JavaPluginLoader implements PluginLoader {
 
             stream = jar.getInputStream(entry);
 
-            return new PluginDescriptionFile(stream);
+            if (metadata == null) {
+                return prefetchLibraries(new PluginDescriptionFile(stream));
+            }
+
+            // Parsed once into plain data that is both cached and read, so a cache hit yields the same description
+            byte[] yaml = ByteStreams.toByteArray(stream);
+            Map<?, ?> map = PluginMetadataCache.parseDescription(yaml);
+            if (map == null) {
+                return prefetchLibraries(new PluginDescriptionFile(new ByteArrayInputStream(yaml)));
+            }
+            @SuppressWarnings("deprecation")
+            PluginDescriptionFile description = new PluginDescriptionFile(map);
+            metadata.setDescription(map);
+            return prefetchLibraries(description);
 
         } catch (IOException ex) {
             throw new InvalidDescriptionException(ex);
@@ -196,6 +240,20 @@ public final class JavaPluginLoader implements PluginLoader {
         }
     }
 
+    /**
+     * 描述文件在所有插件加载之前就会被读取, 借此提前在后台解析依赖库.
+     *
+     * @param description 插件描述文件
+     * @return 同一个描述文件
+     */
+    @NotNull
+    private PluginDescriptionFile prefetchLibraries(@NotNull PluginDescriptionFile description) {
+        if (libraryLoader != null) {
+            libraryLoader.prefetch(description);
+        }
+        return description;
+    }
+
     @Override
     @NotNull
     public Pattern[] getPluginFileFilters() {
@@ -204,15 +262,45 @@ public final class JavaPluginLoader implements PluginLoader {
 
     @Nullable
     Class<?> getClassByName(final String name, boolean resolve, PluginDescriptionFile description) {
-        for (PluginClassLoader loader : loaders) {
-            try {
-                return loader.loadClass0(name, resolve, false, ((SimplePluginManager) server.getPluginManager()).isTransitiveDepend(description, loader.plugin.getDescription()));
-            } catch (ClassNotFoundException cnfe) {
-            }
+        PluginClassLoader loader = classIndex.get(name);
+        if (loader == null) {
+            return null;
+        }
+
+        try {
+            return loader.loadClass0(name, resolve, false, ((SimplePluginManager) server.getPluginManager()).isTransitiveDepend(description, loader.plugin.getDescription()));
+        } catch (ClassNotFoundException cnfe) {
         }
         return null;
     }
 
+    private void addLoader(@NotNull PluginClassLoader loader) {
+        loaders.add(loader);
+
+        // First registered loader wins, matching the old iteration order over loaders
+        for (String name : loader.getClassNames()) {
+            classIndex.putIfAbsent(name, loader);
+        }
+    }
+
+    private void removeLoader(@NotNull PluginClassLoader loader) {
+        loaders.remove(loader);
+
+        for (String name : loader.getClassNames()) {
+            if (!classIndex.remove(name, loader)) {
+                continue;
+            }
+
+            // Hand the name over to the next loader that also ships it, if any
+            for (PluginClassLoader other : loaders) {
+                if (other.getClassNames().contains(name)) {
+                    classIndex.putIfAbsent(name, other);
+                    break;
+                }
+            }
+        }
+    }
+
     void setClass(@NotNull final String name, @NotNull final Class<?> clazz) {
         if (ConfigurationSerializable.class.isAssignableFrom(clazz)) {
             Class<? extends ConfigurationSerializable> serializable = clazz.asSubclass(ConfigurationSerializable.class);
@@ -235,22 +323,32 @@ public final class JavaPluginLoader implements PluginLoader {
 
         boolean useTimings = server.getPluginManager().useTimings();
         Map<Class<? extends Event>, Set<RegisteredListener>> ret = new HashMap<Class<? extends Event>, Set<RegisteredListener>>();
-        Set<Method> methods;
-        try {
-            Method[] publicMethods = listener.getClass().getMethods();
-            Method[] privateMethods = listener.getClass().getDeclaredMethods();
-            methods = new HashSet<Method>(publicMethods.length + privateMethods.length, 1.0f);
-            for (Method method : publicMethods) {
-                methods.add(method);
-            }
-            for (Method method : privateMethods) {
-                methods.add(method);
+        PluginMetadataCache.Entry metadata = null;
+        if (listener.getClass().getClassLoader() instanceof PluginClassLoader) {
+            metadata = ((PluginClassLoader) listener.getClass().getClassLoader()).metadata;
+        }
+
+        Set<Method> methods = (metadata != null) ? metadata.getHandlers(listener.getClass()) : null;
+        final boolean cached = methods != null;
+        if (!cached) {
+            try {
+                Method[] publicMethods = listener.getClass().getMethods();
+                Method[] privateMethods = listener.getClass().getDeclaredMethods();
+                methods = new HashSet<Method>(publicMethods.length + privateMethods.length, 1.0f);
+                for (Method method : publicMethods) {
+                    methods.add(method);
+                }
+                for (Method method : privateMethods) {
+                    methods.add(method);
+                }
+            } catch (NoClassDefFoundError e) {
+                plugin.getLogger().severe("Plugin " + plugin.getDescription().getFullName() + " has failed to register events for " + listener.getClass() + " because " + e.getMessage() + " does not exist.");
+                return ret;
             }
-        } catch (NoClassDefFoundError e) {
-            plugin.getLogger().severe("Plugin " + plugin.getDescription().getFullName() + " has failed to register events for " + listener.getClass() + " because " + e.getMessage() + " does not exist.");
-            return ret;
         }
 
+        Set<Method> handlers = new HashSet<Method>();
+        boolean invalid = false;
         for (final Method method : methods) {
             final EventHandler eh = method.getAnnotation(EventHandler.class);
             if (eh == null) continue;
@@ -262,8 +360,10 @@ public final class JavaPluginLoader implements PluginLoader {
             final Class<?> checkClass;
             if (method.getParameterTypes().length != 1 || !Event.class.isAssignableFrom(checkClass = method.getParameterTypes()[0])) {
                 plugin.getLogger().severe(plugin.getDescription().getFullName() + " attempted to register an invalid EventHandler method signature \"" + method.toGenericString() + "\" in " + listener.getClass());
+                invalid = true;
                 continue;
             }
+            handlers.add(method);
             final Class<? extends Event> eventClass = checkClass.asSubclass(Event.class);
             method.setAccessible(true);
             Set<RegisteredListener> eventSet = ret.get(eventClass);
@@ -321,6 +421,11 @@ public final class JavaPluginLoader implements PluginLoader {
                 eventSet.add(new RegisteredListener(listener, executor, eh.priority(), plugin, eh.ignoreCancelled()));
             }
         }
+
+        // Listeners with invalid handlers are rescanned each boot so the error keeps being reported
+        if (metadata != null && !cached && !invalid) {
+            metadata.setHandlers(listener.getClass(), handlers);
+        }
         return ret;
     }
 
@@ -336,7 +441,7 @@ public final class JavaPluginLoader implements PluginLoader {
             PluginClassLoader pluginLoader = (PluginClassLoader) jPlugin.getClassLoader();
 
             if (!loaders.contains(pluginLoader)) {
-                loaders.add(pluginLoader);
+                addLoader(pluginLoader);
                 server.getLogger().log(Level.WARNING, "Enabled plugin with unregistered PluginClassLoader " + plugin.getDescription().getFullName());
             }
 
@@ -346,6 +451,9 @@ public final class JavaPluginLoader implements PluginLoader {
                 server.getLogger().log(Level.SEVERE, "Error occurred while enabling " + plugin.getDescription().getFullName() + " (Is it up to date?)", ex);
             }
 
+            // Most listeners are registered in onEnable
+            metadataCache.save(pluginLoader.metadata);
+
             // Perhaps abort here, rather than continue going, but as it stands,
             // an abort is not possible the way it's currently written
             server.getPluginManager().callEvent(new PluginEnableEvent(plugin));
@@ -373,7 +481,8 @@ public final class JavaPluginLoader implements PluginLoader {
 
             if (cloader instanceof PluginClassLoader) {
                 PluginClassLoader loader = (PluginClassLoader) cloader;
-                loaders.remove(loader);
+                removeLoader(loader);
+                metadataCache.save(loader.metadata);
 
                 Collection<Class<?>> classes = loader.getClasses();
 
@@ -386,6 +495,10 @@ public final class JavaPluginLoader implements PluginLoader {
                 } catch (IOException ex) {
                     //
                 }
+
+                if (libraryLoader != null) {
+                    libraryLoader.releaseLoader(loader.libraryLoader);
+                }
             }
         }
     }
@@ -1,13 +1,26 @@
 // CHECKSTYLE:OFF
 package org.bukkit.plugin.java;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
@@ -19,6 +32,7 @@ import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.collection.CollectRequest;
 import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
 import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
 import org.eclipse.aether.impl.DefaultServiceLocator;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.RemoteRepository;
@@ -33,6 +47,7 @@ import org.eclipse.aether.transfer.AbstractTransferListener;
 import org.eclipse.aether.transfer.TransferCancelledException;
 import org.eclipse.aether.transfer.TransferEvent;
 import org.eclipse.aether.transport.http.HttpTransporterFactory;
+import org.eclipse.aether.version.VersionConstraint;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -43,10 +58,21 @@ class LibraryLoader
     private final RepositorySystem repository;
     private final DefaultRepositorySystemSession session;
     private final List<RemoteRepository> repositories;
+    // Content addressed copies of every resolved jar, named by SHA-256
+    private final File store = new File( "libraries", ".store" );
+    // Declared library list -> resolved store entries, lets an already populated store work offline.
+    // Only written for fixed release versions, which never change once published
+    private final File index = new File( "libraries", ".index" );
+    private final ExecutorService executor;
+    private final Map<List<String>, Future<List<StoredLibrary>>> resolutions = new ConcurrentHashMap<>();
+    // Guarded by itself, entries are released once the last plugin using them is disabled
+    private final Map<List<String>, SharedLoader> loaders = new HashMap<>();
 
     public LibraryLoader(@NotNull Logger logger)
     {
         this.logger = logger;
+        this.executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( 4, Runtime.getRuntime().availableProcessors() ) ),
+                new ThreadFactoryBuilder().setNameFormat( "Library Resolver #%d" ).setDaemon( true ).build() );
 
         DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
         locator.addService( RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class );
@@ -70,6 +96,20 @@ class LibraryLoader
         this.repositories = repository.newResolutionRepositories( session, Arrays.asList( new RemoteRepository.Builder( "central", "default", "https://repo.maven.apache.org/maven2" ).build() ) );
     }
 
+    /**
+     * 在后台开始解析插件声明的依赖库, 使多个插件的解析可以并行进行.
+     * 之后的 {@link #createLoader(PluginDescriptionFile)} 会等待其结果.
+     *
+     * @param desc 插件描述文件
+     */
+    public void prefetch(@NotNull PluginDescriptionFile desc)
+    {
+        if ( !desc.getLibraries().isEmpty() )
+        {
+            resolve( desc );
+        }
+    }
+
     @Nullable
     public ClassLoader createLoader(@NotNull PluginDescriptionFile desc)
     {
@@ -82,47 +122,289 @@ class LibraryLoader
             desc.getName(), desc.getLibraries().size()
         } );
 
+        List<StoredLibrary> libraries;
+        try
+        {
+            libraries = resolve( desc ).get();
+        } catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted resolving libraries", ex );
+        } catch ( ExecutionException ex )
+        {
+            throw new RuntimeException( "Error resolving libraries", ex.getCause() );
+        }
+
+        List<String> hashes = new ArrayList<>();
+        List<URL> jarFiles = new ArrayList<>();
+        for ( StoredLibrary library : libraries )
+        {
+            URL url;
+            try
+            {
+                url = library.file.toURI().toURL();
+            } catch ( MalformedURLException ex )
+            {
+                throw new AssertionError( ex );
+            }
+
+            hashes.add( library.hash );
+            jarFiles.add( url );
+            logger.log( Level.INFO, "[{0}] Loaded library {1}", new Object[]
+            {
+                desc.getName(), library.coordinates
+            } );
+        }
+
+        // Plugins with an identical resolved classpath share one loader, and therefore one copy of each class
+        synchronized ( loaders )
+        {
+            SharedLoader shared = loaders.get( hashes );
+            if ( shared == null )
+            {
+                shared = new SharedLoader( hashes, new URLClassLoader( jarFiles.toArray( new URL[ jarFiles.size() ] ), getClass().getClassLoader() ) );
+                loaders.put( hashes, shared );
+            }
+            shared.users++;
+            return shared.loader;
+        }
+    }
+
+    /**
+     * 释放由 {@link #createLoader(PluginDescriptionFile)} 返回的类加载器.
+     * 最后一个使用它的插件被禁用后, 类加载器会被关闭, 其中的类可以被回收.
+     *
+     * @param loader 类加载器, 为null时不做任何事
+     */
+    public void releaseLoader(@Nullable ClassLoader loader)
+    {
+        if ( loader == null )
+        {
+            return;
+        }
+
+        SharedLoader released = null;
+        synchronized ( loaders )
+        {
+            for ( SharedLoader shared : loaders.values() )
+            {
+                if ( shared.loader == loader )
+                {
+                    if ( --shared.users == 0 )
+                    {
+                        loaders.remove( shared.key );
+                        released = shared;
+                    }
+                    break;
+                }
+            }
+        }
+
+        if ( released != null )
+        {
+            try
+            {
+                released.loader.close();
+            } catch ( IOException ex )
+            {
+                logger.log( Level.FINE, "Could not close library loader", ex );
+            }
+        }
+    }
+
+    @NotNull
+    private Future<List<StoredLibrary>> resolve(@NotNull PluginDescriptionFile desc)
+    {
+        List<String> libraries = new ArrayList<>( desc.getLibraries() );
+        Future<List<StoredLibrary>> future = resolutions.computeIfAbsent( libraries, (key) -> executor.submit( () -> resolve( key ) ) );
+
+        if ( future.isDone() )
+        {
+            try
+            {
+                future.get();
+            } catch ( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+            } catch ( ExecutionException ex )
+            {
+                // Retry a failed resolution, e.g. once the network is back
+                resolutions.remove( libraries, future );
+                future = resolutions.computeIfAbsent( libraries, (key) -> executor.submit( () -> resolve( key ) ) );
+            }
+        }
+
+        return future;
+    }
+
+    @NotNull
+    private List<StoredLibrary> resolve(@NotNull List<String> libraries) throws DependencyResolutionException, IOException
+    {
         List<Dependency> dependencies = new ArrayList<>();
-        for ( String library : desc.getLibraries() )
+        boolean fixed = true;
+        for ( String library : libraries )
         {
             Artifact artifact = new DefaultArtifact( library );
             Dependency dependency = new Dependency( artifact, null );
 
             dependencies.add( dependency );
+            fixed &= isFixed( artifact.getBaseVersion() );
         }
 
-        DependencyResult result;
-        try
+        // Ranges, snapshots and LATEST / RELEASE may change upstream, only fixed releases are indexed
+        File indexFile = new File( index, Hashing.sha256().hashString( String.join( "\n", libraries ), StandardCharsets.UTF_8 ) + ".txt" );
+        if ( fixed )
         {
-            result = repository.resolveDependencies( session, new DependencyRequest( new CollectRequest( (Dependency) null, dependencies, repositories ), null ) );
-        } catch ( DependencyResolutionException ex )
-        {
-            throw new RuntimeException( "Error resolving libraries", ex );
+            List<StoredLibrary> indexed = readIndex( indexFile );
+            if ( indexed != null )
+            {
+                return indexed;
+            }
         }
 
-        List<URL> jarFiles = new ArrayList<>();
+        DependencyResult result = repository.resolveDependencies( session, new DependencyRequest( new CollectRequest( (Dependency) null, dependencies, repositories ), null ) );
+
+        List<StoredLibrary> stored = new ArrayList<>();
         for ( ArtifactResult artifact : result.getArtifactResults() )
         {
-            File file = artifact.getArtifact().getFile();
+            stored.add( store( artifact.getArtifact().toString(), artifact.getArtifact().getFile() ) );
+        }
 
-            URL url;
+        if ( fixed && isFixed( result.getRoot() ) )
+        {
+            writeIndex( indexFile, stored );
+        }
+        return stored;
+    }
+
+    private static boolean isFixed(@NotNull String version)
+    {
+        return !version.isEmpty() && !version.endsWith( "SNAPSHOT" ) && !version.equals( "LATEST" ) && !version.equals( "RELEASE" )
+                && version.indexOf( '[' ) < 0 && version.indexOf( '(' ) < 0 && version.indexOf( ',' ) < 0;
+    }
+
+    private static boolean isFixed(@NotNull DependencyNode node)
+    {
+        // Transitive dependencies may declare ranges or snapshots too
+        VersionConstraint constraint = node.getVersionConstraint();
+        if ( constraint != null && ( constraint.getRange() != null || ( constraint.getVersion() != null && !isFixed( constraint.getVersion().toString() ) ) ) )
+        {
+            return false;
+        }
+        if ( node.getArtifact() != null && node.getArtifact().isSnapshot() )
+        {
+            return false;
+        }
+
+        for ( DependencyNode child : node.getChildren() )
+        {
+            if ( !isFixed( child ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private StoredLibrary store(@NotNull String coordinates, @NotNull File file) throws IOException
+    {
+        String hash = Files.asByteSource( file ).hash( Hashing.sha256() ).toString();
+        File target = new File( store, hash + ".jar" );
+
+        if ( !target.isFile() )
+        {
+            store.mkdirs();
+            File temp = File.createTempFile( hash, ".tmp", store );
             try
             {
-                url = file.toURI().toURL();
-            } catch ( MalformedURLException ex )
+                Files.copy( file, temp );
+                java.nio.file.Files.move( temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            } finally
             {
-                throw new AssertionError( ex );
+                temp.delete();
             }
+        }
 
-            jarFiles.add( url );
-            logger.log( Level.INFO, "[{0}] Loaded library {1}", new Object[]
+        return new StoredLibrary( coordinates, hash, target );
+    }
+
+    @Nullable
+    private List<StoredLibrary> readIndex(@NotNull File indexFile) throws IOException
+    {
+        if ( !indexFile.isFile() )
+        {
+            return null;
+        }
+
+        List<StoredLibrary> libraries = new ArrayList<>();
+        for ( String line : Files.readLines( indexFile, StandardCharsets.UTF_8 ) )
+        {
+            if ( line.isEmpty() )
             {
-                desc.getName(), file
-            } );
+                continue;
+            }
+
+            String[] split = line.split( " ", 2 );
+            File file = new File( store, split[0] + ".jar" );
+            if ( split.length != 2 || !file.isFile() )
+            {
+                // Store was pruned by hand, resolve again
+                return null;
+            }
+
+            libraries.add( new StoredLibrary( split[1], split[0], file ) );
+        }
+
+        return libraries;
+    }
+
+    private void writeIndex(@NotNull File indexFile, @NotNull List<StoredLibrary> libraries) throws IOException
+    {
+        StringBuilder builder = new StringBuilder();
+        for ( StoredLibrary library : libraries )
+        {
+            builder.append( library.hash ).append( ' ' ).append( library.coordinates ).append( '\n' );
         }
 
-        URLClassLoader loader = new URLClassLoader( jarFiles.toArray( new URL[ jarFiles.size() ] ), getClass().getClassLoader() );
+        index.mkdirs();
+        File temp = File.createTempFile( indexFile.getName(), ".tmp", index );
+        try
+        {
+            Files.asCharSink( temp, StandardCharsets.UTF_8 ).write( builder );
+            java.nio.file.Files.move( temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } finally
+        {
+            temp.delete();
+        }
+    }
 
-        return loader;
+    private static final class SharedLoader
+    {
+
+        private final List<String> key;
+        private final URLClassLoader loader;
+        private int users;
+
+        private SharedLoader(@NotNull List<String> key, @NotNull URLClassLoader loader)
+        {
+            this.key = key;
+            this.loader = loader;
+        }
+    }
+
+    private static final class StoredLibrary
+    {
+
+        private final String coordinates;
+        private final String hash;
+        private final File file;
+
+        private StoredLibrary(@NotNull String coordinates, @NotNull String hash, @NotNull File file)
+        {
+            this.coordinates = coordinates;
+            this.hash = hash;
+            this.file = file;
+        }
     }
 }
@@ -12,6 +12,7 @@ import java.security.CodeSource;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -38,7 +39,9 @@ final class PluginClassLoader extends URLClassLoader {
     private final JarFile jar;
     private final Manifest manifest;
     private final URL url;
-    private final ClassLoader libraryLoader;
+    final ClassLoader libraryLoader;
+    private final Set<String> classNames;
+    final PluginMetadataCache.Entry metadata;
     final JavaPlugin plugin;
     private JavaPlugin pluginInit;
     private IllegalStateException pluginState;
@@ -48,7 +51,7 @@ final class PluginClassLoader extends URLClassLoader {
         ClassLoader.registerAsParallelCapable();
     }
 
-    PluginClassLoader(@NotNull final JavaPluginLoader loader, @Nullable final ClassLoader parent, @NotNull final PluginDescriptionFile description, @NotNull final File dataFolder, @NotNull final File file, @Nullable ClassLoader libraryLoader) throws IOException, InvalidPluginException, MalformedURLException {
+    PluginClassLoader(@NotNull final JavaPluginLoader loader, @Nullable final ClassLoader parent, @NotNull final PluginDescriptionFile description, @NotNull final File dataFolder, @NotNull final File file, @Nullable ClassLoader libraryLoader, @Nullable PluginMetadataCache.Entry metadata) throws IOException, InvalidPluginException, MalformedURLException {
         super(new URL[] {file.toURI().toURL()}, parent);
         Validate.notNull(loader, "Loader cannot be null");
 
@@ -60,6 +63,17 @@ final class PluginClassLoader extends URLClassLoader {
         this.manifest = jar.getManifest();
         this.url = file.toURI().toURL();
         this.libraryLoader = libraryLoader;
+        this.metadata = metadata;
+
+        Set<String> cachedNames = (metadata != null) ? metadata.getClassNames() : null;
+        if (cachedNames != null) {
+            this.classNames = cachedNames;
+        } else {
+            this.classNames = indexClasses(jar);
+            if (metadata != null) {
+                metadata.setClassNames(classNames);
+            }
+        }
 
         try {
             Class<?> jarClass;
@@ -140,6 +154,37 @@ final class PluginClassLoader extends URLClassLoader {
         throw new ClassNotFoundException(name);
     }
 
+    /**
+     * 从jar的条目中收集本加载器能够定义的所有类名.
+     *
+     * @param jar 插件jar
+     * @return 类的二进制名称集合
+     */
+    @NotNull
+    private static Set<String> indexClasses(@NotNull JarFile jar) {
+        Set<String> names = new HashSet<String>();
+        Enumeration<JarEntry> entries = jar.entries();
+
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String path = entry.getName();
+
+            if (entry.isDirectory() || !path.endsWith(".class") || path.startsWith("META-INF/")) {
+                continue;
+            }
+
+            String name = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+            // Mirrors the exclusion in findClass, these can never be defined by a plugin
+            if (name.startsWith("org.bukkit.") || name.startsWith("net.minecraft.") || name.equals("module-info")) {
+                continue;
+            }
+
+            names.add(name);
+        }
+
+        return Collections.unmodifiableSet(names);
+    }
+
     @Override
     protected Class<?> findClass(String name) throws ClassNotFoundException {
         if (name.startsWith("org.bukkit.") || name.startsWith("net.minecraft.")) {
@@ -211,6 +256,16 @@ final class PluginClassLoader extends URLClassLoader {
         return classes.values();
     }
 
+    /**
+     * 获取插件jar中包含的全部类名, 在打开jar时建立.
+     *
+     * @return 不可变的类名集合
+     */
+    @NotNull
+    Set<String> getClassNames() {
+        return classNames;
+    }
+
     synchronized void initialize(@NotNull JavaPlugin javaPlugin) {
         Validate.notNull(javaPlugin, "Initializing plugin cannot be null");
         Validate.isTrue(javaPlugin.getClass().getClassLoader() == this, "Cannot initialize plugin outside of this class loader");
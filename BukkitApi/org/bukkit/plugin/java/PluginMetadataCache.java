@@ -0,0 +1,552 @@
+package org.bukkit.plugin.java;
+
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.lang.Validate;
+import org.bukkit.plugin.PluginAwareness;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.AbstractConstruct;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.Tag;
+
+/**
+ * 插件元数据的磁盘缓存, 以jar文件的SHA-256为键.
+ * <p>
+ * 每个条目保存已解析的plugin.yml, jar中的类名索引以及每个监听器类的
+ * {@link org.bukkit.event.EventHandler}方法. 未改动的插件在启动时因此可以跳过
+ * YAML解析和对监听器的完整反射扫描.
+ * <p>
+ * 监听器继承自其他插件jar中的类时, 其事件处理方法还与那些jar的哈希值绑定,
+ * 依赖的插件更新后会重新扫描.
+ */
+final class PluginMetadataCache {
+    private static final int FORMAT = 0x424D4302; // "BMC" + version 2
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_INTEGER = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_LIST = 6;
+    private static final byte TYPE_MAP = 7;
+    private static final byte TYPE_AWARENESS = 8;
+    private static final ThreadLocal<Yaml> YAML = new ThreadLocal<Yaml>() {
+        @Override
+        @NotNull
+        protected Yaml initialValue() {
+            return new Yaml(new SafeConstructor() {
+                {
+                    // Only the known awareness flags, any other tag is left to PluginDescriptionFile
+                    for (final PluginAwareness.Flags flag : PluginAwareness.Flags.values()) {
+                        yamlConstructors.put(new Tag("!@" + flag.name()), new AbstractConstruct() {
+                            @NotNull
+                            @Override
+                            public PluginAwareness.Flags construct(@NotNull final Node node) {
+                                return flag;
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    };
+
+    private final File directory;
+    private final Logger logger;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    PluginMetadataCache(@NotNull File directory, @NotNull Logger logger) {
+        Validate.notNull(directory, "Directory cannot be null");
+        Validate.notNull(logger, "Logger cannot be null");
+
+        this.directory = directory;
+        this.logger = logger;
+    }
+
+    /**
+     * 获取指定jar的缓存条目, 必要时从磁盘读取.
+     * <p>
+     * 若jar自上次读取后发生了变化, 将返回对应新哈希值的条目.
+     *
+     * @param jar 插件jar
+     * @return 缓存条目, 若无法计算jar的哈希值则为null
+     */
+    @Nullable
+    Entry get(@NotNull File jar) {
+        String key = jar.getAbsolutePath();
+        long length = jar.length();
+        long lastModified = jar.lastModified();
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+            return entry;
+        }
+
+        String hash;
+        try {
+            hash = Files.asByteSource(jar).hash(Hashing.sha256()).toString();
+        } catch (IOException ex) {
+            return null;
+        }
+
+        entry = new Entry(new File(directory, hash + ".bin"), hash, length, lastModified);
+        if (entry.file.isFile()) {
+            try {
+                read(entry);
+            } catch (IOException ex) {
+                logger.log(Level.FINE, "Discarding unreadable plugin metadata cache " + entry.file, ex);
+                entry = new Entry(entry.file, hash, length, lastModified);
+            }
+        }
+
+        entries.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * 删除不属于任何已读取jar的缓存文件, 即已被更新或移除的插件留下的条目.
+     * <p>
+     * 应在插件目录中所有jar都经过{@link #get(File)}之后调用.
+     */
+    void prune() {
+        Set<String> live = new HashSet<String>();
+        for (Entry entry : entries.values()) {
+            live.add(entry.file.getName());
+        }
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(".bin") && !live.contains(file.getName()) && !file.delete()) {
+                logger.log(Level.FINE, "Could not delete stale plugin metadata cache " + file);
+            }
+        }
+    }
+
+    /**
+     * 若条目自上次保存后有变动, 则将其写回磁盘.
+     *
+     * @param entry 缓存条目, 为null时不做任何事
+     */
+    void save(@Nullable Entry entry) {
+        if (entry == null || !entry.dirty) {
+            return;
+        }
+
+        synchronized (entry) {
+            if (!entry.dirty) {
+                return;
+            }
+            entry.dirty = false;
+
+            File temp = new File(directory, entry.hash + ".tmp");
+            try {
+                directory.mkdirs();
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    write(entry, out);
+                }
+                java.nio.file.Files.move(temp.toPath(), entry.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Could not save plugin metadata cache " + entry.file, ex);
+                temp.delete();
+            }
+        }
+    }
+
+    private void read(@NotNull Entry entry) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry.file)))) {
+            if (in.readInt() != FORMAT || !entry.hash.equals(readString(in))) {
+                throw new IOException("Unknown cache format");
+            }
+
+            if (in.readBoolean()) {
+                Object description = readValue(in);
+                if (!(description instanceof Map)) {
+                    throw new IOException("Description is not a map");
+                }
+                entry.description = (Map<?, ?>) description;
+            }
+
+            if (in.readBoolean()) {
+                int size = in.readInt();
+                Set<String> classNames = new HashSet<String>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    classNames.add(readString(in));
+                }
+                entry.classNames = Collections.unmodifiableSet(classNames);
+            }
+
+            int listeners = in.readInt();
+            for (int i = 0; i < listeners; i++) {
+                String listener = readString(in);
+                String dependencies = readString(in);
+                int size = in.readInt();
+                List<HandlerMethod> handlers = new ArrayList<HandlerMethod>(size);
+                for (int j = 0; j < size; j++) {
+                    handlers.add(new HandlerMethod(readString(in), readString(in), readString(in)));
+                }
+                entry.handlers.put(listener, new ListenerHandlers(dependencies, Collections.unmodifiableList(handlers)));
+            }
+        }
+    }
+
+    private void write(@NotNull Entry entry, @NotNull DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT);
+        writeString(out, entry.hash);
+
+        Map<?, ?> description = entry.description;
+        out.writeBoolean(description != null);
+        if (description != null) {
+            writeValue(out, description);
+        }
+
+        Set<String> classNames = entry.classNames;
+        out.writeBoolean(classNames != null);
+        if (classNames != null) {
+            out.writeInt(classNames.size());
+            for (String name : classNames) {
+                writeString(out, name);
+            }
+        }
+
+        Map<String, ListenerHandlers> handlers = new LinkedHashMap<String, ListenerHandlers>(entry.handlers);
+        out.writeInt(handlers.size());
+        for (Map.Entry<String, ListenerHandlers> listener : handlers.entrySet()) {
+            writeString(out, listener.getKey());
+            writeString(out, listener.getValue().dependencies);
+            out.writeInt(listener.getValue().methods.size());
+            for (HandlerMethod handler : listener.getValue().methods) {
+                writeString(out, handler.owner);
+                writeString(out, handler.name);
+                writeString(out, handler.event);
+            }
+        }
+    }
+
+    /**
+     * 将plugin.yml解析为可以缓存的键值表, 之后由{@link org.bukkit.plugin.PluginDescriptionFile#PluginDescriptionFile(Map)}读取.
+     *
+     * @param yaml plugin.yml的内容
+     * @return 键值表, 若解析失败或含有无法缓存的值则为null
+     */
+    @Nullable
+    static Map<?, ?> parseDescription(@NotNull byte[] yaml) {
+        Object loaded;
+        try {
+            loaded = YAML.get().load(new ByteArrayInputStream(yaml));
+        } catch (YAMLException ex) {
+            return null;
+        }
+        return (loaded instanceof Map && isCacheable(loaded)) ? (Map<?, ?>) loaded : null;
+    }
+
+    /**
+     * 检查plugin.yml中的值是否能够被缓存.
+     * SnakeYAML可能产生的其他类型(日期, 二进制, 集合等)不会被缓存.
+     *
+     * @param value 值
+     * @return 是否可以缓存
+     */
+    static boolean isCacheable(@Nullable Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Double || value instanceof PluginAwareness.Flags) {
+            return true;
+        }
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (!isCacheable(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> element : ((Map<?, ?>) value).entrySet()) {
+                if (!isCacheable(element.getKey()) || !isCacheable(element.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static void writeValue(@NotNull DataOutputStream out, @Nullable Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof List) {
+            out.writeByte(TYPE_LIST);
+            out.writeInt(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            out.writeByte(TYPE_MAP);
+            out.writeInt(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> element : ((Map<?, ?>) value).entrySet()) {
+                writeValue(out, element.getKey());
+                writeValue(out, element.getValue());
+            }
+        } else if (value instanceof PluginAwareness.Flags) {
+            out.writeByte(TYPE_AWARENESS);
+            writeString(out, ((PluginAwareness.Flags) value).name());
+        } else {
+            throw new IOException("Cannot cache value of " + value.getClass());
+        }
+    }
+
+    @Nullable
+    private static Object readValue(@NotNull DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_LIST:
+                int listSize = in.readInt();
+                List<Object> list = new ArrayList<Object>(listSize);
+                for (int i = 0; i < listSize; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case TYPE_MAP:
+                int mapSize = in.readInt();
+                Map<Object, Object> map = new LinkedHashMap<Object, Object>(mapSize * 2);
+                for (int i = 0; i < mapSize; i++) {
+                    map.put(readValue(in), readValue(in));
+                }
+                return map;
+            case TYPE_AWARENESS:
+                try {
+                    return PluginAwareness.Flags.valueOf(readString(in));
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException(ex);
+                }
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static void writeString(@NotNull DataOutputStream out, @NotNull String value) throws IOException {
+        // writeUTF is limited to 64k, which a long description could exceed
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    private static String readString(@NotNull DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 单个插件jar的缓存元数据.
+     */
+    static final class Entry {
+        private final File file;
+        private final String hash;
+        private final long length;
+        private final long lastModified;
+        private volatile Map<?, ?> description;
+        private volatile Set<String> classNames;
+        private final Map<String, ListenerHandlers> handlers = new ConcurrentHashMap<String, ListenerHandlers>();
+        private volatile boolean dirty;
+
+        private Entry(@NotNull File file, @NotNull String hash, long length, long lastModified) {
+            this.file = file;
+            this.hash = hash;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return 缓存的plugin.yml键值表, 未缓存时为null
+         */
+        @Nullable
+        Map<?, ?> getDescription() {
+            return description;
+        }
+
+        void setDescription(@Nullable Map<?, ?> description) {
+            if (description != null && isCacheable(description)) {
+                this.description = description;
+                dirty = true;
+            }
+        }
+
+        /**
+         * @return 缓存的jar类名索引, 未缓存时为null
+         */
+        @Nullable
+        Set<String> getClassNames() {
+            return classNames;
+        }
+
+        void setClassNames(@NotNull Set<String> classNames) {
+            this.classNames = classNames;
+            dirty = true;
+        }
+
+        /**
+         * 获取监听器类中缓存的事件处理方法.
+         *
+         * @param listener 监听器类
+         * @return 事件处理方法, 未缓存, 依赖的jar已改变或任一方法无法解析时为null
+         */
+        @Nullable
+        Set<Method> getHandlers(@NotNull Class<?> listener) {
+            ListenerHandlers cached = handlers.get(listener.getName());
+            if (cached == null || !cached.dependencies.equals(dependencies(listener))) {
+                return null;
+            }
+
+            ClassLoader loader = listener.getClassLoader();
+            Set<Method> methods = new HashSet<Method>(cached.methods.size() * 2);
+            try {
+                for (HandlerMethod handler : cached.methods) {
+                    Class<?> owner = Class.forName(handler.owner, false, loader);
+                    Class<?> event = Class.forName(handler.event, false, loader);
+                    methods.add(owner.getDeclaredMethod(handler.name, event));
+                }
+            } catch (ClassNotFoundException ex) {
+                return null;
+            } catch (NoSuchMethodException ex) {
+                return null;
+            } catch (LinkageError ex) {
+                return null;
+            }
+            return methods;
+        }
+
+        void setHandlers(@NotNull Class<?> listener, @NotNull Collection<Method> methods) {
+            String dependencies = dependencies(listener);
+            if (dependencies == null) {
+                return;
+            }
+
+            List<HandlerMethod> list = new ArrayList<HandlerMethod>(methods.size());
+            for (Method method : methods) {
+                list.add(new HandlerMethod(method.getDeclaringClass().getName(), method.getName(), method.getParameterTypes()[0].getName()));
+            }
+            handlers.put(listener.getName(), new ListenerHandlers(dependencies, Collections.unmodifiableList(list)));
+            dirty = true;
+        }
+    }
+
+    /**
+     * 计算监听器继承的类和接口所在的其他插件jar的哈希值.
+     *
+     * @param listener 监听器类
+     * @return 以逗号分隔的有序哈希值, 若某个jar的哈希值未知则为null
+     */
+    @Nullable
+    private static String dependencies(@NotNull Class<?> listener) {
+        ClassLoader own = listener.getClassLoader();
+        Set<String> hashes = new TreeSet<String>();
+        Set<Class<?>> seen = new HashSet<Class<?>>();
+        Deque<Class<?>> pending = new ArrayDeque<Class<?>>();
+        pending.add(listener);
+        while (!pending.isEmpty()) {
+            Class<?> type = pending.poll();
+            if (!seen.add(type)) {
+                continue;
+            }
+
+            ClassLoader loader = type.getClassLoader();
+            if (loader != own && loader instanceof PluginClassLoader) {
+                Entry metadata = ((PluginClassLoader) loader).metadata;
+                if (metadata == null) {
+                    return null;
+                }
+                hashes.add(metadata.hash);
+            }
+            if (type.getSuperclass() != null) {
+                pending.add(type.getSuperclass());
+            }
+            Collections.addAll(pending, type.getInterfaces());
+        }
+        return Joiner.on(',').join(hashes);
+    }
+
+    private static final class ListenerHandlers {
+        private final String dependencies;
+        private final List<HandlerMethod> methods;
+
+        private ListenerHandlers(@NotNull String dependencies, @NotNull List<HandlerMethod> methods) {
+            this.dependencies = dependencies;
+            this.methods = methods;
+        }
+    }
+
+    private static final class HandlerMethod {
+        private final String owner;
+        private final String name;
+        private final String event;
+
+        private HandlerMethod(@NotNull String owner, @NotNull String name, @NotNull String event) {
+            this.owner = owner;
+            this.name = name;
+            this.event = event;
+        }
+    }
+}
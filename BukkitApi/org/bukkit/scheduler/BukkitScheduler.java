@@ -2,8 +2,11 @@ package org.bukkit.scheduler;
 
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
@@ -184,6 +187,55 @@ public interface BukkitScheduler {
     @NotNull
     public <T> Future<T> callSyncMethod(@NotNull Plugin plugin, @NotNull Callable<T> task);
 
+    /**
+     * 由服务器主线程计算一个值, 并以{@link CompletableFuture}的形式返回结果.
+     * <p>
+     * 与{@link #callSyncMethod(Plugin, Callable)}不同, 调用者可以用thenApply等方法串联后续操作,
+     * 无需阻塞线程等待结果. 这个操作会经由{@link #getMainThreadExecutor(Plugin)}执行.
+     * 若插件在操作执行前被禁用, future将以{@link org.bukkit.plugin.IllegalPluginAccessException}异常完成.
+     *
+     * @param <T> 结果的类型
+     * @param plugin 创建这个任务的插件(拥有者)
+     * @param supplier 在主线程上执行的操作
+     * @return 在主线程上完成的future
+     * @throws org.bukkit.plugin.IllegalPluginAccessException 如果插件未启用
+     */
+    @NotNull
+    public <T> CompletableFuture<T> supplySync(@NotNull Plugin plugin, @NotNull Supplier<T> supplier);
+
+    /**
+     * 异步计算一个值, 并以{@link CompletableFuture}的形式返回结果.
+     * <p>
+     * <b>异步任务不能访问任何Bukkit里的API.应着重保证异步任务的线程安全.</b>
+     * <p>
+     * 这个操作与{@link #runTaskAsynchronously(Plugin, Runnable)}一样作为该插件的异步任务执行.
+     * 需要回到主线程继续处理结果时, 可以使用
+     * {@link CompletableFuture#thenApplyAsync(java.util.function.Function, Executor)}
+     * 并传入{@link #getMainThreadExecutor(Plugin)}.
+     *
+     * @param <T> 结果的类型
+     * @param plugin 创建这个任务的插件(拥有者)
+     * @param supplier 异步执行的操作
+     * @return 在异步线程上完成的future
+     * @throws org.bukkit.plugin.IllegalPluginAccessException 如果插件未启用
+     */
+    @NotNull
+    public <T> CompletableFuture<T> supplyAsync(@NotNull Plugin plugin, @NotNull Supplier<T> supplier);
+
+    /**
+     * 获取在服务器主线程上执行操作的{@link Executor}.
+     * <p>
+     * 提交的操作不会立刻执行, 而是和其他所有插件提交的操作一起, 在每tick中集中执行一次,
+     * 因此大量的后续操作不会各自占用一个调度任务. 在执行时插件已被禁用的操作将被丢弃,
+     * 其中实现了{@link java.util.concurrent.Future}的操作(例如{@link java.util.concurrent.FutureTask})会被取消.
+     * 用thenApplyAsync等方法串联到这个执行器上的阶段无法从外部完成, 插件应在禁用时自行取消它们等待的future.
+     *
+     * @param plugin 拥有这些操作的插件
+     * @return 插件的主线程执行器
+     */
+    @NotNull
+    public Executor getMainThreadExecutor(@NotNull Plugin plugin);
+
     /**
      * 从执行器中取消执行一个任务.
      * <p>
@@ -0,0 +1,185 @@
+package org.bukkit.scheduler;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.commons.lang.Validate;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 将一个大型集合的处理分摊到多个tick中执行的任务.
+ * <p>
+ * 每次运行时会处理元素, 直到用完每tick的时间预算, 剩下的元素在下一次运行时继续处理.
+ * 若测得的tick间隔超过50毫秒(服务器已经过载), 本tick的预算会按比例缩减.
+ * 全部元素处理完毕后任务会自动取消, 并完成{@link #getCompletion()}.
+ * <p>
+ * 例如, 每tick最多花费2毫秒处理所有已加载的区块:
+ * <pre>
+ * new SlicedTask&lt;Chunk&gt;(chunks.iterator(), chunk -&gt; process(chunk), 2_000_000L)
+ *     .start(plugin)
+ *     .thenRun(() -&gt; getLogger().info("Done"));
+ * </pre>
+ *
+ * @param <T> 元素类型
+ */
+public class SlicedTask<T> extends BukkitRunnable {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // Never shrink below this fraction of the configured budget, so a lagging server still makes progress
+    private static final int MIN_BUDGET_DIVISOR = 10;
+
+    private final Iterator<? extends T> source;
+    private final Consumer<? super T> action;
+    private final long budgetNanos;
+    private final long expected;
+    private final CompletableFuture<Long> completion = new CompletableFuture<Long>();
+    private volatile long processed;
+    private long lastRun;
+    private int stride = 1;
+
+    /**
+     * 创建一个分片任务.
+     *
+     * @param source 要处理的元素
+     * @param action 对每个元素执行的操作
+     * @param budgetNanos 每tick的时间预算/纳秒
+     */
+    public SlicedTask(@NotNull Iterator<? extends T> source, @NotNull Consumer<? super T> action, long budgetNanos) {
+        this(source, action, budgetNanos, -1L);
+    }
+
+    /**
+     * 创建一个分片任务.
+     * <p>
+     * 若spliterator具有{@link Spliterator#SIZED}特征, 则可以通过{@link #getProgress()}获取进度.
+     *
+     * @param source 要处理的元素
+     * @param action 对每个元素执行的操作
+     * @param budgetNanos 每tick的时间预算/纳秒
+     */
+    public SlicedTask(@NotNull Spliterator<? extends T> source, @NotNull Consumer<? super T> action, long budgetNanos) {
+        this(Spliterators.iterator(source), action, budgetNanos, source.getExactSizeIfKnown());
+    }
+
+    private SlicedTask(@NotNull Iterator<? extends T> source, @NotNull Consumer<? super T> action, long budgetNanos, long expected) {
+        Validate.notNull(source, "Source cannot be null");
+        Validate.notNull(action, "Action cannot be null");
+        Validate.isTrue(budgetNanos > 0, "Budget must be positive");
+
+        this.source = source;
+        this.action = action;
+        this.budgetNanos = budgetNanos;
+        this.expected = expected;
+    }
+
+    /**
+     * 让这个任务从下一tick开始在主线程上每tick运行一次.
+     *
+     * @param plugin 创建任务的插件
+     * @return 与{@link #getCompletion()}相同的future
+     * @throws IllegalArgumentException 如果plugin为null
+     * @throws IllegalStateException 如果这个任务已经被执行/准备执行
+     */
+    @NotNull
+    public CompletableFuture<Long> start(@NotNull Plugin plugin) throws IllegalArgumentException, IllegalStateException {
+        runTaskTimer(plugin, 0L, 1L);
+        return completion;
+    }
+
+    /**
+     * 获取在全部元素处理完毕时完成的future, 其值为处理的元素总数.
+     * <p>
+     * 若对元素执行的操作抛出了异常, future会以该异常完成; 若任务被取消, future也会被取消.
+     *
+     * @return 完成时的future
+     */
+    @NotNull
+    public CompletableFuture<Long> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * 获取已处理的元素数.
+     *
+     * @return 已处理的元素数
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * 获取处理进度.
+     *
+     * @return 0到1之间的进度, 若元素总数未知则为-1
+     */
+    public double getProgress() {
+        if (completion.isDone()) {
+            return 1.0D;
+        }
+        if (expected < 0) {
+            return -1.0D;
+        }
+        return expected == 0 ? 1.0D : Math.min(1.0D, (double) processed / expected);
+    }
+
+    @Override
+    public synchronized void cancel() throws IllegalStateException {
+        super.cancel();
+        completion.cancel(false);
+    }
+
+    @Override
+    public void run() {
+        if (completion.isDone()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long budget = budgetNanos;
+        if (lastRun != 0) {
+            long interval = start - lastRun;
+            if (interval > TICK_NANOS) {
+                budget = Math.max(budgetNanos / MIN_BUDGET_DIVISOR, (long) (budgetNanos * ((double) TICK_NANOS / interval)));
+            }
+        }
+        lastRun = start;
+
+        long deadline = start + budget;
+        long mark = start;
+        long count = processed;
+        try {
+            while (source.hasNext()) {
+                // Reading the clock per element would dominate cheap actions, so check every stride elements
+                for (int i = 0; i < stride && source.hasNext(); i++) {
+                    action.accept(source.next());
+                    count++;
+                }
+
+                long now = System.nanoTime();
+                long strideNanos = now - mark;
+                mark = now;
+                if (strideNanos < budget / 32 && stride < (1 << 16)) {
+                    stride <<= 1;
+                } else if (strideNanos > budget / 8 && stride > 1) {
+                    stride >>= 1;
+                }
+                if (now - deadline >= 0) {
+                    processed = count;
+                    return;
+                }
+            }
+        } catch (Throwable throwable) {
+            processed = count;
+            super.cancel();
+            completion.completeExceptionally(throwable);
+            return;
+        }
+
+        processed = count;
+        super.cancel();
+        completion.complete(count);
+    }
+}
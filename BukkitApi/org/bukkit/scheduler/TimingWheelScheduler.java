@@ -0,0 +1,824 @@
+package org.bukkit.scheduler;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import org.apache.commons.lang.Validate;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 基于分层时间轮的{@link BukkitScheduler}参考实现.
+ * <p>
+ * 时间轮共有若干层, 每层64个槽位, 每个槽位是一个任务的双向链表. 安排和取消任务
+ * 都是O(1)操作, 每tick推进时间轮的开销只与到期的任务数有关, 与等待中的任务总数无关.
+ * 每个插件的任务另有索引, 因此{@link #cancelTasks(Plugin)}只需访问该插件自己的任务.
+ * <p>
+ * 服务器需要在主线程上每tick调用一次{@link #mainThreadHeartbeat(long)}.
+ * 同步任务在该调用中执行, 异步任务则交给构造时提供的{@link Executor}.
+ * <p>
+ * 在Java 21及以上版本中, 可以让每个异步任务运行在各自的虚拟线程上, 并限制每个插件
+ * 同时运行的异步任务数, 例如:
+ * <pre>
+ * new TimingWheelScheduler(TimingWheelScheduler.newVirtualThreadExecutor(), 64);
+ * </pre>
+ */
+public class TimingWheelScheduler implements BukkitScheduler {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    // Enough levels to place any long deadline
+    private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+    private static final Comparator<TimingWheelTask> DUE_ORDER = new Comparator<TimingWheelTask>() {
+        @Override
+        public int compare(TimingWheelTask first, TimingWheelTask second) {
+            int compare = Long.compare(first.deadline, second.deadline);
+            return compare != 0 ? compare : Integer.compare(first.getTaskId(), second.getTaskId());
+        }
+    };
+
+    private final Object lock = new Object();
+    private final TimingWheelTask[][] wheel = new TimingWheelTask[LEVELS][SLOTS];
+    private final Map<Integer, TimingWheelTask> tasks = new HashMap<Integer, TimingWheelTask>();
+    private final Map<Plugin, Set<TimingWheelTask>> pluginTasks = new HashMap<Plugin, Set<TimingWheelTask>>();
+    private final List<TimingWheelTask> due = new ArrayList<TimingWheelTask>();
+    // A set rather than a map by id, overlapping runs of a repeating task are separate workers
+    private final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+    private final Map<Plugin, AsyncLimiter> limiters = new ConcurrentHashMap<Plugin, AsyncLimiter>();
+    private final Map<Plugin, MainThreadExecutor> mainThreadExecutors = new ConcurrentHashMap<Plugin, MainThreadExecutor>();
+    private final Queue<Continuation> continuations = new ConcurrentLinkedQueue<Continuation>();
+    private final AtomicInteger queuedContinuations = new AtomicInteger();
+    private final Executor asyncExecutor;
+    private final int asyncLimit;
+    private int nextId = 1;
+    private long currentTick;
+    private volatile TimingWheelTask currentTask;
+
+    /**
+     * 创建一个使用可缓存线程池执行异步任务的调度器.
+     */
+    public TimingWheelScheduler() {
+        this(Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("Bukkit Scheduler Thread - %d").setDaemon(true).build()));
+    }
+
+    /**
+     * 创建一个调度器.
+     *
+     * @param asyncExecutor 执行异步任务的执行器
+     */
+    public TimingWheelScheduler(@NotNull Executor asyncExecutor) {
+        this(asyncExecutor, 0);
+    }
+
+    /**
+     * 创建一个调度器, 并限制每个插件同时运行的异步任务数.
+     * <p>
+     * 超出限制的异步任务会在该插件自己的队列中等待, 不会占用线程,
+     * 也不会出现在{@link #getActiveWorkers()}中.
+     *
+     * @param asyncExecutor 执行异步任务的执行器
+     * @param asyncLimitPerPlugin 每个插件同时运行的异步任务上限, 0表示不限制
+     */
+    public TimingWheelScheduler(@NotNull Executor asyncExecutor, int asyncLimitPerPlugin) {
+        Validate.notNull(asyncExecutor, "Executor cannot be null");
+        Validate.isTrue(asyncLimitPerPlugin >= 0, "Async limit cannot be negative");
+        this.asyncExecutor = asyncExecutor;
+        this.asyncLimit = asyncLimitPerPlugin;
+    }
+
+    /**
+     * 创建一个为每个任务启动一个新虚拟线程的执行器.
+     * <p>
+     * 在异步任务中进行阻塞的JDBC或HTTP调用时, 虚拟线程不会占用操作系统线程.
+     * 虚拟线程上的任务同样可以使用{@link #callSyncMethod(Plugin, Callable)}并等待其结果.
+     *
+     * @return 虚拟线程执行器
+     * @throws UnsupportedOperationException 如果当前Java版本不支持虚拟线程
+     */
+    @NotNull
+    public static ExecutorService newVirtualThreadExecutor() {
+        // Looked up reflectively so the API still targets older Java versions
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "Bukkit Scheduler Virtual Thread - ", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (NoSuchMethodException ex) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer", ex);
+        } catch (ClassNotFoundException ex) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer", ex);
+        } catch (IllegalAccessException ex) {
+            throw new UnsupportedOperationException("Virtual threads are not accessible", ex);
+        } catch (InvocationTargetException ex) {
+            throw new UnsupportedOperationException("Virtual threads are not available", ex.getCause());
+        }
+    }
+
+    /**
+     * 将时间轮推进到指定的tick, 并执行期间到期的任务.
+     * <p>
+     * 必须在主线程上调用. 若与上次调用之间跳过了若干tick, 这些tick中到期的任务会在本次一并执行.
+     * 到期的任务执行完毕后, 会集中执行一次通过{@link #getMainThreadExecutor(Plugin)}提交的操作.
+     *
+     * @param currentTick 当前服务器tick
+     */
+    public void mainThreadHeartbeat(long currentTick) {
+        List<TimingWheelTask> run = null;
+        synchronized (lock) {
+            while (this.currentTick < currentTick) {
+                advance(++this.currentTick);
+            }
+            if (!due.isEmpty()) {
+                run = new ArrayList<TimingWheelTask>(due);
+                due.clear();
+            }
+        }
+
+        if (run != null) {
+            Collections.sort(run, DUE_ORDER);
+            for (TimingWheelTask task : run) {
+                if (task.isCancelled()) {
+                    continue;
+                }
+                if (task.isSync()) {
+                    runSync(task);
+                } else {
+                    runAsync(task);
+                }
+            }
+        }
+
+        drainContinuations();
+    }
+
+    private void drainContinuations() {
+        // Only what was queued before the drain started, continuations queued by these run next tick
+        for (int remaining = queuedContinuations.get(); remaining > 0; remaining--) {
+            Continuation continuation = continuations.poll();
+            if (continuation == null) {
+                break;
+            }
+            queuedContinuations.decrementAndGet();
+
+            if (!continuation.plugin.isEnabled()) {
+                continuation.discard();
+                continue;
+            }
+            try {
+                continuation.command.run();
+            } catch (Throwable throwable) {
+                continuation.plugin.getLogger().log(Level.WARNING, String.format("Main thread continuation for %s generated an exception", continuation.plugin.getDescription().getFullName()), throwable);
+            }
+        }
+    }
+
+    /**
+     * 获取时间轮当前所在的tick.
+     *
+     * @return 最近一次{@link #mainThreadHeartbeat(long)}推进到的tick
+     */
+    public long getCurrentTick() {
+        synchronized (lock) {
+            return currentTick;
+        }
+    }
+
+    private void runSync(@NotNull TimingWheelTask task) {
+        currentTask = task;
+        try {
+            task.run();
+        } catch (Throwable throwable) {
+            task.getOwner().getLogger().log(Level.WARNING, String.format("Task #%s for %s generated an exception", task.getTaskId(), task.getOwner().getDescription().getFullName()), throwable);
+        } finally {
+            currentTask = null;
+        }
+        reschedule(task);
+    }
+
+    private void runAsync(@NotNull final TimingWheelTask task) {
+        // Repeating async tasks keep their cadence regardless of how long a run takes
+        if (task.isRepeating()) {
+            reschedule(task);
+        }
+
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                // The task may have been cancelled while it waited in the plugin's backlog, the limiter still releases the permit
+                if (task.isCancelled()) {
+                    return;
+                }
+                Worker worker = new Worker(task, Thread.currentThread());
+                workers.add(worker);
+                try {
+                    task.run();
+                } catch (Throwable throwable) {
+                    task.getOwner().getLogger().log(Level.WARNING, String.format("Plugin %s generated an exception while executing task %s", task.getOwner().getDescription().getFullName(), task.getTaskId()), throwable);
+                } finally {
+                    workers.remove(worker);
+                    if (!task.isRepeating()) {
+                        synchronized (lock) {
+                            remove(task);
+                        }
+                    }
+                }
+            }
+        };
+
+        if (asyncLimit == 0) {
+            asyncExecutor.execute(runnable);
+            return;
+        }
+
+        // Queued under the map's per-key lock, so a limiter is never retired while a run is being added to it
+        AsyncLimiter limiter = limiters.compute(task.getOwner(), (owner, existing) -> {
+            AsyncLimiter result = (existing != null) ? existing : new AsyncLimiter(owner);
+            result.backlog.add(runnable);
+            return result;
+        });
+        limiter.drain();
+    }
+
+    private void reschedule(@NotNull TimingWheelTask task) {
+        synchronized (lock) {
+            if (task.isRepeating() && !task.isCancelled()) {
+                task.deadline = currentTick + task.getPeriod();
+                insert(task);
+            } else {
+                remove(task);
+            }
+        }
+    }
+
+    private void advance(long tick) {
+        // Cascade every level whose lower slots have all wrapped around on this tick, highest first
+        int cascade = 0;
+        while (cascade + 1 < LEVELS && (tick & ((1L << ((cascade + 1) * SLOT_BITS)) - 1)) == 0) {
+            cascade++;
+        }
+        for (int level = cascade; level > 0; level--) {
+            int slot = (int) (tick >>> (level * SLOT_BITS)) & SLOT_MASK;
+            TimingWheelTask task = wheel[level][slot];
+            wheel[level][slot] = null;
+            while (task != null) {
+                TimingWheelTask next = task.next;
+                task.prev = task.next = null;
+                task.level = -1;
+                insert(task);
+                task = next;
+            }
+        }
+
+        int slot = (int) tick & SLOT_MASK;
+        TimingWheelTask task = wheel[0][slot];
+        wheel[0][slot] = null;
+        while (task != null) {
+            TimingWheelTask next = task.next;
+            task.prev = task.next = null;
+            task.level = -1;
+            due.add(task);
+            task = next;
+        }
+    }
+
+    private void insert(@NotNull TimingWheelTask task) {
+        long deadline = task.deadline;
+        if (deadline <= currentTick) {
+            due.add(task);
+            return;
+        }
+
+        // The level is picked by the highest bit in which the deadline differs from now
+        int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(deadline ^ currentTick)) / SLOT_BITS;
+        int slot = (int) (deadline >>> (level * SLOT_BITS)) & SLOT_MASK;
+        TimingWheelTask head = wheel[level][slot];
+        task.level = level;
+        task.slot = slot;
+        task.prev = null;
+        task.next = head;
+        if (head != null) {
+            head.prev = task;
+        }
+        wheel[level][slot] = task;
+    }
+
+    private void unlink(@NotNull TimingWheelTask task) {
+        if (task.level < 0) {
+            return;
+        }
+
+        if (task.prev != null) {
+            task.prev.next = task.next;
+        } else {
+            wheel[task.level][task.slot] = task.next;
+        }
+        if (task.next != null) {
+            task.next.prev = task.prev;
+        }
+        task.prev = task.next = null;
+        task.level = -1;
+    }
+
+    private void remove(@NotNull TimingWheelTask task) {
+        unlink(task);
+        tasks.remove(task.getTaskId(), task);
+        Set<TimingWheelTask> owned = pluginTasks.get(task.getOwner());
+        if (owned != null && owned.remove(task) && owned.isEmpty()) {
+            pluginTasks.remove(task.getOwner());
+        }
+    }
+
+    @NotNull
+    private TimingWheelTask schedule(@NotNull Plugin plugin, @NotNull Consumer<BukkitTask> task, boolean sync, long delay, long period) {
+        Validate.notNull(plugin, "Plugin cannot be null");
+        Validate.notNull(task, "Task cannot be null");
+        if (!plugin.isEnabled()) {
+            throw new IllegalPluginAccessException("Plugin attempted to register task while disabled");
+        }
+
+        // Like CraftScheduler, a zero period repeats every tick and any negative period runs once
+        if (period == 0L) {
+            period = 1L;
+        } else if (period < TimingWheelTask.NO_REPEATING) {
+            period = TimingWheelTask.NO_REPEATING;
+        }
+
+        synchronized (lock) {
+            TimingWheelTask scheduled = new TimingWheelTask(this, nextId(), plugin, task, sync, period);
+            // Even a zero delay runs on the next heartbeat, never the one currently running
+            long ticks = Math.max(1L, delay);
+            scheduled.deadline = (currentTick > Long.MAX_VALUE - ticks) ? Long.MAX_VALUE : currentTick + ticks;
+
+            tasks.put(scheduled.getTaskId(), scheduled);
+            Set<TimingWheelTask> owned = pluginTasks.get(plugin);
+            if (owned == null) {
+                owned = new HashSet<TimingWheelTask>();
+                pluginTasks.put(plugin, owned);
+            }
+            owned.add(scheduled);
+            insert(scheduled);
+            return scheduled;
+        }
+    }
+
+    private int nextId() {
+        int id;
+        do {
+            id = nextId++;
+            if (nextId <= 0) {
+                nextId = 1;
+            }
+        } while (tasks.containsKey(id));
+        return id;
+    }
+
+    @NotNull
+    private static Consumer<BukkitTask> wrap(@NotNull final Runnable task) {
+        Validate.notNull(task, "Task cannot be null");
+        return new Consumer<BukkitTask>() {
+            @Override
+            public void accept(BukkitTask bukkitTask) {
+                task.run();
+            }
+        };
+    }
+
+    @Override
+    public int scheduleSyncDelayedTask(@NotNull Plugin plugin, @NotNull Runnable task, long delay) {
+        return scheduleSyncRepeatingTask(plugin, task, delay, TimingWheelTask.NO_REPEATING);
+    }
+
+    @Deprecated
+    @Override
+    public int scheduleSyncDelayedTask(@NotNull Plugin plugin, @NotNull BukkitRunnable task, long delay) {
+        throw new UnsupportedOperationException("Use BukkitRunnable#runTaskLater(Plugin, long)");
+    }
+
+    @Override
+    public int scheduleSyncDelayedTask(@NotNull Plugin plugin, @NotNull Runnable task) {
+        return scheduleSyncDelayedTask(plugin, task, 0L);
+    }
+
+    @Deprecated
+    @Override
+    public int scheduleSyncDelayedTask(@NotNull Plugin plugin, @NotNull BukkitRunnable task) {
+        throw new UnsupportedOperationException("Use BukkitRunnable#runTask(Plugin)");
+    }
+
+    @Override
+    public int scheduleSyncRepeatingTask(@NotNull Plugin plugin, @NotNull Runnable task, long delay, long period) {
+        return runTaskTimer(plugin, task, delay, period).getTaskId();
+    }
+
+    @Deprecated
+    @Override
+    public int scheduleSyncRepeatingTask(@NotNull Plugin plugin, @NotNull BukkitRunnable task, long delay, long period) {
+        throw new UnsupportedOperationException("Use BukkitRunnable#runTaskTimer(Plugin, long, long)");
+    }
+
+    @Deprecated
+    @Override
+    public int scheduleAsyncDelayedTask(@NotNull Plugin plugin, @NotNull Runnable task, long delay) {
+        return scheduleAsyncRepeatingTask(plugin, task, delay, TimingWheelTask.NO_REPEATING);
+    }
+
+    @Deprecated
+    @Override
+    public int scheduleAsyncDelayedTask(@NotNull Plugin plugin, @NotNull Runnable task) {
+        return scheduleAsyncDelayedTask(plugin, task, 0L);
+    }
+
+    @Deprecated
+    @Override
+    public int scheduleAsyncRepeatingTask(@NotNull Plugin plugin, @NotNull Runnable task, long delay, long period) {
+        return runTaskTimerAsynchronously(plugin, task, delay, period).getTaskId();
+    }
+
+    @NotNull
+    @Override
+    public <T> Future<T> callSyncMethod(@NotNull Plugin plugin, @NotNull Callable<T> task) {
+        Validate.notNull(task, "Task cannot be null");
+        FutureTask<T> future = new FutureTask<T>(task);
+        runTask(plugin, future);
+        return future;
+    }
+
+    @NotNull
+    @Override
+    public <T> CompletableFuture<T> supplySync(@NotNull Plugin plugin, @NotNull final Supplier<T> supplier) {
+        Validate.notNull(plugin, "Plugin cannot be null");
+        Validate.notNull(supplier, "Supplier cannot be null");
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        enqueue(plugin, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                }
+            }
+        }, future);
+        return future;
+    }
+
+    @NotNull
+    @Override
+    public <T> CompletableFuture<T> supplyAsync(@NotNull final Plugin plugin, @NotNull Supplier<T> supplier) {
+        Validate.notNull(plugin, "Plugin cannot be null");
+        Validate.notNull(supplier, "Supplier cannot be null");
+        return CompletableFuture.supplyAsync(supplier, new Executor() {
+            @Override
+            public void execute(@NotNull Runnable command) {
+                runTaskAsynchronously(plugin, command);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public Executor getMainThreadExecutor(@NotNull Plugin plugin) {
+        Validate.notNull(plugin, "Plugin cannot be null");
+        MainThreadExecutor executor = mainThreadExecutors.get(plugin);
+        if (executor == null) {
+            executor = new MainThreadExecutor(plugin);
+            MainThreadExecutor existing = mainThreadExecutors.putIfAbsent(plugin, executor);
+            if (existing != null) {
+                executor = existing;
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public void cancelTask(int taskId) {
+        synchronized (lock) {
+            TimingWheelTask task = tasks.get(taskId);
+            if (task != null) {
+                task.setCancelled();
+                remove(task);
+            }
+        }
+    }
+
+    @Override
+    public void cancelTasks(@NotNull Plugin plugin) {
+        Validate.notNull(plugin, "Plugin cannot be null");
+        synchronized (lock) {
+            Set<TimingWheelTask> owned = pluginTasks.remove(plugin);
+            if (owned != null) {
+                for (TimingWheelTask task : owned) {
+                    task.setCancelled();
+                    unlink(task);
+                    tasks.remove(task.getTaskId(), task);
+                }
+            }
+        }
+
+        // Queued runs belong to the tasks just cancelled. A limiter with runs in flight is kept so its permits
+        // still count, and retires itself once the last one finishes
+        limiters.computeIfPresent(plugin, (owner, limiter) -> {
+            limiter.backlog.clear();
+            return limiter.isIdle() ? null : limiter;
+        });
+    }
+
+    @Override
+    public boolean isCurrentlyRunning(int taskId) {
+        TimingWheelTask running = currentTask;
+        if (running != null && running.getTaskId() == taskId) {
+            return true;
+        }
+        for (Worker worker : workers) {
+            if (worker.getTaskId() == taskId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isQueued(int taskId) {
+        synchronized (lock) {
+            TimingWheelTask task = tasks.get(taskId);
+            return task != null && !task.isCancelled();
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<BukkitWorker> getActiveWorkers() {
+        return new ArrayList<BukkitWorker>(workers);
+    }
+
+    @NotNull
+    @Override
+    public List<BukkitTask> getPendingTasks() {
+        synchronized (lock) {
+            return new ArrayList<BukkitTask>(tasks.values());
+        }
+    }
+
+    @NotNull
+    @Override
+    public BukkitTask runTask(@NotNull Plugin plugin, @NotNull Runnable task) throws IllegalArgumentException {
+        return runTaskLater(plugin, task, 0L);
+    }
+
+    @Override
+    public void runTask(@NotNull Plugin plugin, @NotNull Consumer<BukkitTask> task) throws IllegalArgumentException {
+        runTaskLater(plugin, task, 0L);
+    }
+
+    @Deprecated
+    @NotNull
+    @Override
+    public BukkitTask runTask(@NotNull Plugin plugin, @NotNull BukkitRunnable task) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("Use BukkitRunnable#runTask(Plugin)");
+    }
+
+    @NotNull
+    @Override
+    public BukkitTask runTaskAsynchronously(@NotNull Plugin plugin, @NotNull Runnable task) throws IllegalArgumentException {
+        return runTaskLaterAsynchronously(plugin, task, 0L);
+    }
+
+    @Override
+    public void runTaskAsynchronously(@NotNull Plugin plugin, @NotNull Consumer<BukkitTask> task) throws IllegalArgumentException {
+        runTaskLaterAsynchronously(plugin, task, 0L);
+    }
+
+    @Deprecated
+    @NotNull
+    @Override
+    public BukkitTask runTaskAsynchronously(@NotNull Plugin plugin, @NotNull BukkitRunnable task) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("Use BukkitRunnable#runTaskAsynchronously(Plugin)");
+    }
+
+    @NotNull
+    @Override
+    public BukkitTask runTaskLater(@NotNull Plugin plugin, @NotNull Runnable task, long delay) throws IllegalArgumentException {
+        return runTaskTimer(plugin, task, delay, TimingWheelTask.NO_REPEATING);
+    }
+
+    @Override
+    public void runTaskLater(@NotNull Plugin plugin, @NotNull Consumer<BukkitTask> task, long delay) throws IllegalArgumentException {
+        runTaskTimer(plugin, task, delay, TimingWheelTask.NO_REPEATING);
+    }
+
+    @Deprecated
+    @NotNull
+    @Override
+    public BukkitTask runTaskLater(@NotNull Plugin plugin, @NotNull BukkitRunnable task, long delay) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("Use BukkitRunnable#runTaskLater(Plugin, long)");
+    }
+
+    @NotNull
+    @Override
+    public BukkitTask runTaskLaterAsynchronously(@NotNull Plugin plugin, @NotNull Runnable task, long delay) throws IllegalArgumentException {
+        return runTaskTimerAsynchronously(plugin, task, delay, TimingWheelTask.NO_REPEATING);
+    }
+
+    @Override
+    public void runTaskLaterAsynchronously(@NotNull Plugin plugin, @NotNull Consumer<BukkitTask> task, long delay) throws IllegalArgumentException {
+        runTaskTimerAsynchronously(plugin, task, delay, TimingWheelTask.NO_REPEATING);
+    }
+
+    @Deprecated
+    @NotNull
+    @Override
+    public BukkitTask runTaskLaterAsynchronously(@NotNull Plugin plugin, @NotNull BukkitRunnable task, long delay) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("Use BukkitRunnable#runTaskLaterAsynchronously(Plugin, long)");
+    }
+
+    @NotNull
+    @Override
+    public BukkitTask runTaskTimer(@NotNull Plugin plugin, @NotNull Runnable task, long delay, long period) throws IllegalArgumentException {
+        return schedule(plugin, wrap(task), true, delay, period);
+    }
+
+    @Override
+    public void runTaskTimer(@NotNull Plugin plugin, @NotNull Consumer<BukkitTask> task, long delay, long period) throws IllegalArgumentException {
+        schedule(plugin, task, true, delay, period);
+    }
+
+    @Deprecated
+    @NotNull
+    @Override
+    public BukkitTask runTaskTimer(@NotNull Plugin plugin, @NotNull BukkitRunnable task, long delay, long period) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("Use BukkitRunnable#runTaskTimer(Plugin, long, long)");
+    }
+
+    @NotNull
+    @Override
+    public BukkitTask runTaskTimerAsynchronously(@NotNull Plugin plugin, @NotNull Runnable task, long delay, long period) throws IllegalArgumentException {
+        return schedule(plugin, wrap(task), false, delay, period);
+    }
+
+    @Override
+    public void runTaskTimerAsynchronously(@NotNull Plugin plugin, @NotNull Consumer<BukkitTask> task, long delay, long period) throws IllegalArgumentException {
+        schedule(plugin, task, false, delay, period);
+    }
+
+    @Deprecated
+    @NotNull
+    @Override
+    public BukkitTask runTaskTimerAsynchronously(@NotNull Plugin plugin, @NotNull BukkitRunnable task, long delay, long period) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("Use BukkitRunnable#runTaskTimerAsynchronously(Plugin, long, long)");
+    }
+
+    private final class MainThreadExecutor implements Executor {
+        private final Plugin plugin;
+
+        private MainThreadExecutor(@NotNull Plugin plugin) {
+            this.plugin = plugin;
+        }
+
+        @Override
+        public void execute(@NotNull Runnable command) {
+            Validate.notNull(command, "Command cannot be null");
+            enqueue(plugin, command, null);
+        }
+    }
+
+    private void enqueue(@NotNull Plugin plugin, @NotNull Runnable command, @Nullable CompletableFuture<?> future) {
+        if (!plugin.isEnabled()) {
+            throw new IllegalPluginAccessException("Plugin attempted to register task while disabled");
+        }
+        continuations.add(new Continuation(plugin, command, future));
+        queuedContinuations.incrementAndGet();
+    }
+
+    private static final class Continuation {
+        private final Plugin plugin;
+        private final Runnable command;
+        private final CompletableFuture<?> future;
+
+        private Continuation(@NotNull Plugin plugin, @NotNull Runnable command, @Nullable CompletableFuture<?> future) {
+            this.plugin = plugin;
+            this.command = command;
+            this.future = future;
+        }
+
+        private void discard() {
+            // Fail whatever is waiting on this continuation instead of leaving it pending forever
+            if (future != null) {
+                future.completeExceptionally(new IllegalPluginAccessException("Plugin " + plugin.getDescription().getFullName() + " was disabled before the continuation ran"));
+            } else if (command instanceof Future) {
+                ((Future<?>) command).cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 一个插件的异步任务队列, 保证同时交给执行器的任务不超过{@link #asyncLimit}个.
+     */
+    private final class AsyncLimiter {
+        private final Plugin owner;
+        private final Queue<Runnable> backlog = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicInteger running = new AtomicInteger();
+
+        private AsyncLimiter(@NotNull Plugin owner) {
+            this.owner = owner;
+        }
+
+        private boolean isIdle() {
+            return running.get() == 0 && backlog.isEmpty();
+        }
+
+        private void retire() {
+            limiters.computeIfPresent(owner, (plugin, limiter) -> (limiter == this && isIdle()) ? null : limiter);
+        }
+
+        private void drain() {
+            while (!backlog.isEmpty()) {
+                int current = running.get();
+                if (current >= asyncLimit) {
+                    // A finishing task drains again after releasing its permit
+                    return;
+                }
+                if (!running.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+
+                final Runnable next = backlog.poll();
+                if (next == null) {
+                    running.decrementAndGet();
+                    continue;
+                }
+
+                try {
+                    asyncExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                next.run();
+                            } finally {
+                                running.decrementAndGet();
+                                drain();
+                                if (!owner.isEnabled()) {
+                                    retire();
+                                }
+                            }
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    running.decrementAndGet();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private static final class Worker implements BukkitWorker {
+        private final BukkitTask task;
+        private final Thread thread;
+
+        private Worker(@NotNull BukkitTask task, @NotNull Thread thread) {
+            this.task = task;
+            this.thread = thread;
+        }
+
+        @Override
+        public int getTaskId() {
+            return task.getTaskId();
+        }
+
+        @NotNull
+        @Override
+        public Plugin getOwner() {
+            return task.getOwner();
+        }
+
+        @NotNull
+        @Override
+        public Thread getThread() {
+            return thread;
+        }
+    }
+}
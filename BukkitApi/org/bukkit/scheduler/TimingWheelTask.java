@@ -0,0 +1,81 @@
+package org.bukkit.scheduler;
+
+import java.util.function.Consumer;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link TimingWheelScheduler}中的任务, 同时是时间轮槽位中的双向链表节点.
+ */
+class TimingWheelTask implements BukkitTask {
+    static final long NO_REPEATING = -1L;
+
+    private final TimingWheelScheduler scheduler;
+    private final int id;
+    private final Plugin owner;
+    private final Consumer<BukkitTask> task;
+    private final boolean sync;
+    private final long period;
+    private volatile boolean cancelled;
+
+    // Wheel linkage, guarded by the scheduler lock
+    long deadline;
+    int level = -1;
+    int slot;
+    TimingWheelTask prev;
+    TimingWheelTask next;
+
+    TimingWheelTask(@NotNull TimingWheelScheduler scheduler, int id, @NotNull Plugin owner, @NotNull Consumer<BukkitTask> task, boolean sync, long period) {
+        this.scheduler = scheduler;
+        this.id = id;
+        this.owner = owner;
+        this.task = task;
+        this.sync = sync;
+        this.period = period;
+    }
+
+    @Override
+    public int getTaskId() {
+        return id;
+    }
+
+    @NotNull
+    @Override
+    public Plugin getOwner() {
+        return owner;
+    }
+
+    @Override
+    public boolean isSync() {
+        return sync;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void cancel() {
+        scheduler.cancelTask(id);
+    }
+
+    /**
+     * @return 重复执行的间隔tick, 一次性任务则为{@link #NO_REPEATING}
+     */
+    long getPeriod() {
+        return period;
+    }
+
+    boolean isRepeating() {
+        return period != NO_REPEATING;
+    }
+
+    void setCancelled() {
+        cancelled = true;
+    }
+
+    void run() {
+        task.accept(this);
+    }
+}
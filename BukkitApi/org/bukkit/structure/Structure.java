@@ -7,6 +7,7 @@ import org.bukkit.RegionAccessor;
 import org.bukkit.block.structure.Mirror;
 import org.bukkit.block.structure.StructureRotation;
 import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
 import org.bukkit.util.BlockVector;
 import org.jetbrains.annotations.NotNull;
 
@@ -143,4 +144,62 @@ public interface Structure {
      * @throws IllegalArgumentException Thrown if size is smaller than 1x1x1
      */
     void fill(@NotNull Location origin, @NotNull BlockVector size, boolean includeEntities);
+
+    /**
+     * Fills the Structure from an area in a world without blocking the main
+     * thread.
+     * <p>
+     * The chunks covering the area are captured as snapshots on the main
+     * thread, one chunk per batch, and their blocks are converted into the
+     * structure's palette on another thread. Entities, if included, are
+     * captured together with their chunk. The structure's data is replaced
+     * only when the task completes, so it can still be used until then.
+     * <p>
+     * Changes made to the area while the capture is running may or may not
+     * be included.
+     *
+     * @param plugin The plugin the capture runs for.
+     * @param origin The origin of the structure.
+     * @param size The size of the structure, must be at least 1x1x1.
+     * @param includeEntities true if entities should be included in the saved
+     * structure.
+     * @return The running capture.
+     * @throws IllegalArgumentException Thrown if size is smaller than 1x1x1
+     */
+    @NotNull
+    StructureTask fillAsync(@NotNull Plugin plugin, @NotNull Location origin, @NotNull BlockVector size, boolean includeEntities);
+
+    /**
+     * Place a structure in the world, spreading the work over several ticks.
+     * <p>
+     * The blocks to place are computed from the palette, rotation, mirror and
+     * integrity up front, then sorted into batches by chunk so each chunk is
+     * touched once. Every tick, batches are applied on the main thread until
+     * the budget is used up. As with {@link org.bukkit.scheduler.SlicedTask}
+     * the budget shrinks when the server is already running behind, so a
+     * large structure never freezes the server. Entities, if included, are
+     * spawned with the last batch of their chunk.
+     *
+     * @param plugin The plugin the placement runs for.
+     * @param location The location to place the structure at.
+     * @param includeEntities If the entities present in the structure should be
+     * spawned.
+     * @param structureRotation The rotation of the structure.
+     * @param mirror The mirror settings of the structure.
+     * @param palette The palette index of the structure to use, starting at
+     * {@code 0}, or {@code -1} to pick a random palette.
+     * @param integrity Determines how damaged the building should look by
+     * randomly skipping blocks to place. This value can range from 0 to 1. With
+     * 0 removing all blocks and 1 spawning the structure in pristine condition.
+     * @param random The randomizer used for setting the structure's
+     * {@link org.bukkit.loot.LootTable}s and integrity.
+     * @param applyPhysics false to place blocks without block updates or
+     * physics, which is faster and keeps unsupported blocks such as sand or
+     * torches in place.
+     * @param budgetNanos The time to spend placing blocks per tick, in
+     * nanoseconds.
+     * @return The running placement.
+     */
+    @NotNull
+    StructureTask placeAsync(@NotNull Plugin plugin, @NotNull Location location, boolean includeEntities, @NotNull StructureRotation structureRotation, @NotNull Mirror mirror, int palette, float integrity, @NotNull Random random, boolean applyPhysics, long budgetNanos);
 }
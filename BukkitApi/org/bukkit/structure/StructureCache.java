@@ -0,0 +1,485 @@
+package org.bukkit.structure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang.Validate;
+import org.bukkit.NamespacedKey;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A cache of structure templates stored as {@code .nbt} files in a
+ * directory, for plugins that keep far more templates than they place at
+ * once.
+ * <p>
+ * {@link #index()} only records which files exist. A file is memory-mapped
+ * the first time its structure is requested, and decoded through
+ * {@link StructureManager#loadStructure(InputStream)} from the mapping. The
+ * mapping is kept after the decoded structure is evicted, so decoding it
+ * again does not touch the disk unless the operating system dropped the
+ * pages. Decoded structures are kept in least recently used order and
+ * evicted once their estimated size exceeds the memory cap.
+ * <p>
+ * The file {@code <directory>/rooms/hall.nbt} is available under the key
+ * {@code <namespace>:rooms/hall}. Files whose names are not valid keys are
+ * ignored.
+ * <p>
+ * Returned structures are shared by every caller; use
+ * {@link StructureManager#copy(Structure)} before modifying one. This class
+ * is thread safe, and different structures may be decoded concurrently.
+ */
+public final class StructureCache {
+    private static final String EXTENSION = ".nbt";
+    // Rough heap cost of a decoded block (block state, position and palette slot) and entity
+    private static final long BYTES_PER_BLOCK = 96L;
+    private static final long BYTES_PER_ENTITY = 1024L;
+
+    private final StructureManager manager;
+    private final String namespace;
+    private final File directory;
+    private final long maxBytes;
+    private final Map<NamespacedKey, Entry> entries = new ConcurrentHashMap<NamespacedKey, Entry>();
+    // Decoded entries, least recently used first; guarded by itself
+    private final LinkedHashMap<NamespacedKey, Entry> decoded = new LinkedHashMap<NamespacedKey, Entry>(16, 0.75f, true);
+    private long usedBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+
+    /**
+     * Creates a cache for the structure files in a directory. Call
+     * {@link #index()} before use.
+     *
+     * @param manager the manager used to decode structures
+     * @param namespace the namespace of the keys of the structures
+     * @param directory the directory to read structures from
+     * @param maxBytes the estimated memory the decoded structures may use
+     */
+    public StructureCache(@NotNull StructureManager manager, @NotNull String namespace, @NotNull File directory, long maxBytes) {
+        Validate.notNull(manager, "Manager cannot be null");
+        Validate.notNull(namespace, "Namespace cannot be null");
+        Validate.notNull(directory, "Directory cannot be null");
+        Validate.isTrue(maxBytes > 0, "Max bytes must be positive");
+        Validate.isTrue(namespace.matches("[a-z0-9._-]+"), "Invalid namespace. Must be [a-z0-9._-]: " + namespace);
+        this.manager = manager;
+        this.namespace = namespace;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Scans the directory for structure files. Files that were removed or
+     * changed since the last scan are dropped from the cache.
+     *
+     * @return the number of indexed structures
+     * @throws IOException if the directory can not be read
+     */
+    public int index() throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        Map<NamespacedKey, File> found = new HashMap<NamespacedKey, File>();
+        Deque<File> pending = new ArrayDeque<File>();
+        pending.add(directory);
+        String root = directory.getPath();
+        while (!pending.isEmpty()) {
+            File[] files = pending.poll().listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    pending.add(file);
+                    continue;
+                }
+                String name = file.getPath();
+                if (!name.endsWith(EXTENSION)) {
+                    continue;
+                }
+                String key = name.substring(root.length() + 1, name.length() - EXTENSION.length()).replace(File.separatorChar, '/');
+                NamespacedKey namespacedKey = NamespacedKey.fromString(namespace + ':' + key);
+                // Not a valid key, so the file can not be requested anyway
+                if (namespacedKey != null) {
+                    found.put(namespacedKey, file);
+                }
+            }
+        }
+
+        for (Iterator<Map.Entry<NamespacedKey, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<NamespacedKey, Entry> entry = it.next();
+            File file = found.get(entry.getKey());
+            if (file == null || !entry.getValue().isCurrent(file)) {
+                it.remove();
+                release(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<NamespacedKey, File> entry : found.entrySet()) {
+            if (!entries.containsKey(entry.getKey())) {
+                File file = entry.getValue();
+                entries.put(entry.getKey(), new Entry(file, file.length(), file.lastModified()));
+            }
+        }
+        return entries.size();
+    }
+
+    /**
+     * Gets the keys of all indexed structures.
+     *
+     * @return an unmodifiable view of the keys
+     */
+    @NotNull
+    public Set<NamespacedKey> getKeys() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Checks whether a structure is indexed.
+     *
+     * @param key the key of the structure
+     * @return true if a file exists for the key
+     */
+    public boolean contains(@NotNull NamespacedKey key) {
+        Validate.notNull(key, "Key cannot be null");
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Checks whether a structure is currently decoded.
+     *
+     * @param key the key of the structure
+     * @return true if {@link #get(NamespacedKey)} would not decode it
+     */
+    public boolean isDecoded(@NotNull NamespacedKey key) {
+        Validate.notNull(key, "Key cannot be null");
+        Entry entry = entries.get(key);
+        return entry != null && entry.structure != null;
+    }
+
+    /**
+     * Gets a structure, decoding it from its file if it is not cached.
+     *
+     * @param key the key of the structure
+     * @return the structure, or null if no file is indexed for the key
+     * @throws IOException if the file can not be read or decoded
+     */
+    @Nullable
+    public Structure get(@NotNull NamespacedKey key) throws IOException {
+        Validate.notNull(key, "Key cannot be null");
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Structure structure = entry.structure;
+        if (structure != null) {
+            hits.increment();
+            synchronized (decoded) {
+                decoded.get(key);
+            }
+            return structure;
+        }
+
+        synchronized (entry) {
+            structure = entry.structure;
+            if (structure != null) {
+                hits.increment();
+                return structure;
+            }
+            misses.increment();
+            long start = System.nanoTime();
+            structure = manager.loadStructure(new BufferInputStream(entry.map()));
+            decodeNanos.add(System.nanoTime() - start);
+            entry.bytes = estimateSize(structure);
+            entry.structure = structure;
+        }
+
+        synchronized (decoded) {
+            // Skip if the entry was invalidated or replaced while decoding
+            if (entries.get(key) == entry && entry.structure == structure && decoded.put(key, entry) == null) {
+                usedBytes += entry.bytes;
+            }
+            evict(key);
+        }
+        return structure;
+    }
+
+    /**
+     * Drops the decoded structure and the mapping of a file, for example
+     * after the file was changed.
+     *
+     * @param key the key of the structure
+     */
+    public void invalidate(@NotNull NamespacedKey key) {
+        Validate.notNull(key, "Key cannot be null");
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            release(key, entry);
+            entry.unmap();
+        }
+    }
+
+    /**
+     * Drops all decoded structures and mappings. The index is kept.
+     */
+    public void invalidateAll() {
+        for (Map.Entry<NamespacedKey, Entry> entry : entries.entrySet()) {
+            release(entry.getKey(), entry.getValue());
+            entry.getValue().unmap();
+        }
+    }
+
+    /**
+     * Gets the estimated memory the decoded structures may use.
+     *
+     * @return the memory cap in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Gets the estimated memory used by decoded structures.
+     *
+     * @return the used memory in bytes
+     */
+    public long getUsedBytes() {
+        synchronized (decoded) {
+            return usedBytes;
+        }
+    }
+
+    /**
+     * Gets the number of decoded structures.
+     *
+     * @return the number of decoded structures
+     */
+    public int getDecodedCount() {
+        synchronized (decoded) {
+            return decoded.size();
+        }
+    }
+
+    /**
+     * Gets the total size of the currently mapped files. Mapped files live
+     * outside the Java heap.
+     *
+     * @return the mapped size in bytes
+     */
+    public long getMappedBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.mapping != null) {
+                total += entry.length;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of requests served from decoded structures.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of requests that had to decode a structure.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the fraction of requests served from decoded structures.
+     *
+     * @return the hit rate, or 0 if nothing was requested yet
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Gets the number of decoded structures evicted to stay under the cap.
+     *
+     * @return the eviction count
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the total time spent decoding structures.
+     *
+     * @return the decode time in nanoseconds
+     */
+    public long getDecodeNanos() {
+        return decodeNanos.sum();
+    }
+
+    /**
+     * Gets the average time spent decoding one structure.
+     *
+     * @return the average decode time in milliseconds, or 0 if nothing was
+     * decoded yet
+     */
+    public double getAverageDecodeMillis() {
+        long count = misses.sum();
+        return count == 0 ? 0 : decodeNanos.sum() / 1.0E6D / count;
+    }
+
+    /**
+     * Resets the hit, miss, eviction and decode time counters.
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        decodeNanos.reset();
+    }
+
+    /**
+     * Estimates the heap memory used by a decoded structure from its block
+     * and entity counts.
+     *
+     * @param structure the structure
+     * @return the estimated size in bytes
+     */
+    public static long estimateSize(@NotNull Structure structure) {
+        Validate.notNull(structure, "Structure cannot be null");
+        long blocks = 0;
+        for (Palette palette : structure.getPalettes()) {
+            blocks += palette.getBlockCount();
+        }
+        return blocks * BYTES_PER_BLOCK + structure.getEntityCount() * BYTES_PER_ENTITY;
+    }
+
+    private void release(@NotNull NamespacedKey key, @NotNull Entry entry) {
+        synchronized (decoded) {
+            if (decoded.get(key) == entry) {
+                decoded.remove(key);
+                usedBytes -= entry.bytes;
+            }
+            entry.structure = null;
+        }
+    }
+
+    private void evict(@NotNull NamespacedKey keep) {
+        // Called with decoded locked; the newest structure stays even if it alone exceeds the cap
+        Iterator<Map.Entry<NamespacedKey, Entry>> it = decoded.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<NamespacedKey, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            it.remove();
+            usedBytes -= eldest.getValue().bytes;
+            eldest.getValue().structure = null;
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StructureCache{directory=" + directory + ",indexed=" + entries.size() + ",decoded=" + getDecodedCount()
+                + ",usedBytes=" + getUsedBytes() + '/' + maxBytes + ",hitRate=" + getHitRate() + '}';
+    }
+
+    private static final class Entry {
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private volatile MappedByteBuffer mapping;
+        private volatile Structure structure;
+        private long bytes;
+
+        private Entry(@NotNull File file, long length, long lastModified) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        private boolean isCurrent(@NotNull File file) {
+            return this.file.equals(file) && file.length() == length && file.lastModified() == lastModified;
+        }
+
+        @NotNull
+        private ByteBuffer map() throws IOException {
+            MappedByteBuffer buffer = mapping;
+            if (buffer == null) {
+                RandomAccessFile access = new RandomAccessFile(file, "r");
+                try {
+                    // The mapping stays valid after the channel is closed
+                    buffer = access.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, access.length());
+                } finally {
+                    access.close();
+                }
+                mapping = buffer;
+            }
+            return buffer.duplicate();
+        }
+
+        private void unmap() {
+            // The mapping is released once the buffer is garbage collected
+            mapping = null;
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(@NotNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NotNull byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.bukkit.NamespacedKey;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -186,6 +187,64 @@ public interface StructureManager {
      */
     void saveStructure(@NotNull OutputStream outputStream, @NotNull Structure structure) throws IOException;
 
+    /**
+     * Loads a structure for the specified key without blocking the main
+     * thread.
+     * <p>
+     * Reading the file and decoding its NBT happen on another thread, the
+     * structure is registered on the main thread, and the future completes
+     * there. The lookup order is the same as
+     * {@link #loadStructure(NamespacedKey, boolean)}.
+     *
+     * @param structureKey The key for which to load the structure
+     * @param register {@code true} to register the loaded structure.
+     * @return A future that completes with the structure, or with
+     * {@code null} if no structure is found for the key. It completes
+     * exceptionally if the structure cannot be read.
+     */
+    @NotNull
+    CompletableFuture<Structure> loadStructureAsync(@NotNull NamespacedKey structureKey, boolean register);
+
+    /**
+     * Reads a Structure from disk without blocking the main thread. The file
+     * is read and decoded on another thread.
+     *
+     * @param file The file of the structure
+     * @return A future that completes with the read structure, or
+     * exceptionally with an {@link IOException} if the file can not be read
+     */
+    @NotNull
+    CompletableFuture<Structure> loadStructureAsync(@NotNull File file);
+
+    /**
+     * Saves a structure with the given key to the primary world folder
+     * without blocking the main thread.
+     * <p>
+     * The structure is encoded into NBT on the calling thread, so later
+     * changes to it do not affect the saved file. Compressing and writing the
+     * file happen on another thread.
+     *
+     * @param structureKey The key to save the structure for
+     * @param structure The structure to save
+     * @return A future that completes once the file is written, or
+     * exceptionally with an {@link IOException} if it can not be written
+     */
+    @NotNull
+    CompletableFuture<Void> saveStructureAsync(@NotNull NamespacedKey structureKey, @NotNull Structure structure);
+
+    /**
+     * Saves a structure to a file without blocking the main thread. This will
+     * overwrite a file if it already exists. The structure is encoded as for
+     * {@link #saveStructureAsync(NamespacedKey, Structure)}.
+     *
+     * @param file the target to save to.
+     * @param structure the Structure to save.
+     * @return A future that completes once the file is written, or
+     * exceptionally with an {@link IOException} if it can not be written
+     */
+    @NotNull
+    CompletableFuture<Void> saveStructureAsync(@NotNull File file, @NotNull Structure structure);
+
     /**
      * Creates a new empty structure.
      *
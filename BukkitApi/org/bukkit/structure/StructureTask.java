@@ -0,0 +1,82 @@
+package org.bukkit.structure;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents an asynchronous structure operation started with
+ * {@link Structure#fillAsync(org.bukkit.plugin.Plugin, org.bukkit.Location, org.bukkit.util.BlockVector, boolean)}
+ * or
+ * {@link Structure#placeAsync(org.bukkit.plugin.Plugin, org.bukkit.Location, boolean, org.bukkit.block.structure.StructureRotation, org.bukkit.block.structure.Mirror, int, float, java.util.Random, boolean, long)}.
+ * <p>
+ * Work is counted in blocks. Progress listeners are called on the main
+ * thread after each batch, and once more when the task finishes.
+ */
+public interface StructureTask {
+
+    /**
+     * Gets the future that completes with the structure once every block has
+     * been captured or placed.
+     * <p>
+     * The future completes exceptionally if the operation fails, and is
+     * cancelled if the task is {@link #cancel() cancelled}.
+     *
+     * @return the completion of this task
+     */
+    @NotNull
+    CompletableFuture<Structure> getCompletion();
+
+    /**
+     * Gets the number of blocks processed so far.
+     *
+     * @return the processed block count
+     */
+    long getProcessed();
+
+    /**
+     * Gets the total number of blocks this task will process.
+     *
+     * @return the total block count, or -1 if it is not known yet
+     */
+    long getTotal();
+
+    /**
+     * Gets the progress of this task.
+     *
+     * @return the progress from 0 to 1, or -1 if the total is not known yet
+     */
+    double getProgress();
+
+    /**
+     * Registers a listener that is called on the main thread whenever
+     * progress has been made.
+     *
+     * @param listener the listener to call
+     */
+    void addProgressListener(@NotNull Consumer<? super StructureTask> listener);
+
+    /**
+     * Cancels this task. Blocks that have already been placed stay in the
+     * world, and a capture leaves the structure unchanged.
+     *
+     * @return true if the task was cancelled by this call, false if it had
+     * already finished or been cancelled
+     */
+    boolean cancel();
+
+    /**
+     * Checks whether this task has been cancelled.
+     *
+     * @return true if cancelled
+     */
+    boolean isCancelled();
+
+    /**
+     * Checks whether this task has finished, either normally, exceptionally
+     * or by cancellation.
+     *
+     * @return true if finished
+     */
+    boolean isDone();
+}
@@ -0,0 +1,766 @@
+package org.bukkit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.lang.Validate;
+import org.bukkit.block.BlockFace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 不可变的{@link VoxelShape}实现, 以体素位图存储形状.
+ * <p>
+ * 形状在每个轴上被其所有包围盒的边界划分为若干格, 每一格是否属于形状由一个位表示,
+ * 因此任意坐标的包围盒都能被精确表示. 构造时会去掉多余的划分, 所以几何上相同的形状总是相等的.
+ * 合并后的包围盒只计算一次并被缓存, {@link #overlaps(BoundingBox)}等检测不会创建任何对象.
+ * <p>
+ * 本类的实例可以在线程间安全地共享.
+ */
+public final class BitSetVoxelShape implements VoxelShape {
+    private static final double[] NO_POINTS = {0.0D};
+    private static final BitSetVoxelShape EMPTY = new BitSetVoxelShape(NO_POINTS, NO_POINTS, NO_POINTS, new long[0]);
+    private static final BitSetVoxelShape FULL_BLOCK = of(new BoundingBox(0.0D, 0.0D, 0.0D, 1.0D, 1.0D, 1.0D));
+
+    // Cell boundaries on each axis; cell (x, y, z) spans [xs[x], xs[x + 1]) and so on
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final long[] voxels;
+    // Greedily merged boxes, six values per box, computed on first use
+    private volatile double[] boxes;
+    private int hash;
+
+    private BitSetVoxelShape(@NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs, @NotNull long[] voxels) {
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.voxels = voxels;
+    }
+
+    /**
+     * 获取空形状.
+     *
+     * @return 空形状
+     */
+    @NotNull
+    public static BitSetVoxelShape empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 获取占满一整个方块(0, 0, 0)到(1, 1, 1)的形状.
+     *
+     * @return 完整方块的形状
+     */
+    @NotNull
+    public static BitSetVoxelShape fullBlock() {
+        return FULL_BLOCK;
+    }
+
+    /**
+     * 创建由给定包围盒组成的形状. 体积为0的包围盒会被忽略.
+     *
+     * @param boxes 包围盒
+     * @return 形状
+     */
+    @NotNull
+    public static BitSetVoxelShape of(@NotNull BoundingBox... boxes) {
+        Validate.notNull(boxes, "Boxes cannot be null");
+        return of(Arrays.asList(boxes));
+    }
+
+    /**
+     * 创建由给定包围盒组成的形状. 体积为0的包围盒会被忽略.
+     *
+     * @param boxes 包围盒
+     * @return 形状
+     */
+    @NotNull
+    public static BitSetVoxelShape of(@NotNull Collection<BoundingBox> boxes) {
+        Validate.notNull(boxes, "Boxes cannot be null");
+        List<BoundingBox> solid = new ArrayList<BoundingBox>(boxes.size());
+        for (BoundingBox box : boxes) {
+            Validate.notNull(box, "Box cannot be null");
+            if (box.getVolume() > 0.0D) {
+                solid.add(box);
+            }
+        }
+        if (solid.isEmpty()) {
+            return EMPTY;
+        }
+
+        double[] xs = new double[solid.size() * 2];
+        double[] ys = new double[solid.size() * 2];
+        double[] zs = new double[solid.size() * 2];
+        int n = 0;
+        for (BoundingBox box : solid) {
+            xs[n] = box.getMinX();
+            ys[n] = box.getMinY();
+            zs[n++] = box.getMinZ();
+            xs[n] = box.getMaxX();
+            ys[n] = box.getMaxY();
+            zs[n++] = box.getMaxZ();
+        }
+        xs = distinct(xs, xs.length);
+        ys = distinct(ys, ys.length);
+        zs = distinct(zs, zs.length);
+
+        int ny = ys.length - 1;
+        int nz = zs.length - 1;
+        long[] voxels = new long[words((xs.length - 1) * ny * nz)];
+        for (BoundingBox box : solid) {
+            int x1 = Arrays.binarySearch(xs, box.getMinX() + 0.0D);
+            int x2 = Arrays.binarySearch(xs, box.getMaxX() + 0.0D);
+            int y1 = Arrays.binarySearch(ys, box.getMinY() + 0.0D);
+            int y2 = Arrays.binarySearch(ys, box.getMaxY() + 0.0D);
+            int z1 = Arrays.binarySearch(zs, box.getMinZ() + 0.0D);
+            int z2 = Arrays.binarySearch(zs, box.getMaxZ() + 0.0D);
+            for (int x = x1; x < x2; x++) {
+                for (int y = y1; y < y2; y++) {
+                    for (int z = z1; z < z2; z++) {
+                        set(voxels, (x * ny + y) * nz + z);
+                    }
+                }
+            }
+        }
+        return compact(xs, ys, zs, voxels);
+    }
+
+    /**
+     * 将任意{@link VoxelShape}转换为本类的实例.
+     *
+     * @param shape 形状
+     * @return 等价的形状, 若shape已是本类的实例则直接返回
+     */
+    @NotNull
+    public static BitSetVoxelShape of(@NotNull VoxelShape shape) {
+        Validate.notNull(shape, "Shape cannot be null");
+        if (shape instanceof BitSetVoxelShape) {
+            return (BitSetVoxelShape) shape;
+        }
+        return of(shape.getBoundingBoxes());
+    }
+
+    /**
+     * 检查形状是否为空.
+     *
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    /**
+     * 获取恰好包含整个形状的包围盒.
+     *
+     * @return 新的包围盒, 空形状则为原点处体积为0的包围盒
+     */
+    @NotNull
+    public BoundingBox getBounds() {
+        return new BoundingBox(xs[0], ys[0], zs[0], xs[xs.length - 1], ys[ys.length - 1], zs[zs.length - 1]);
+    }
+
+    /**
+     * 检查形状是否包含给定的点, 与{@link BoundingBox#contains(double, double, double)}一样,
+     * 最小边界上的点被包含而最大边界上的点不被包含.
+     *
+     * @param x 点的x坐标
+     * @param y 点的y坐标
+     * @param z 点的z坐标
+     * @return 是否包含
+     */
+    public boolean contains(double x, double y, double z) {
+        int cx = cell(xs, x);
+        int cy = cell(ys, y);
+        int cz = cell(zs, z);
+        if (cx < 0 || cy < 0 || cz < 0) {
+            return false;
+        }
+        return get(voxels, (cx * (ys.length - 1) + cy) * (zs.length - 1) + cz);
+    }
+
+    @NotNull
+    @Override
+    public Collection<BoundingBox> getBoundingBoxes() {
+        double[] boxes = getBoxes();
+        List<BoundingBox> result = new ArrayList<BoundingBox>(boxes.length / 6);
+        for (int i = 0; i < boxes.length; i += 6) {
+            result.add(new BoundingBox(boxes[i], boxes[i + 1], boxes[i + 2], boxes[i + 3], boxes[i + 4], boxes[i + 5]));
+        }
+        return result;
+    }
+
+    /**
+     * 获取合并后的包围盒数量, 即{@link #getBoundingBoxes()}返回的包围盒数量.
+     *
+     * @return 包围盒数量
+     */
+    public int getBoxCount() {
+        return getBoxes().length / 6;
+    }
+
+    /**
+     * 将合并后的第index个包围盒写入给定的包围盒, 不创建新的对象.
+     *
+     * @param index 下标
+     * @param result 用于存放结果的包围盒
+     * @return 结果包围盒
+     * @throws IndexOutOfBoundsException 如果下标超出范围
+     */
+    @NotNull
+    public BoundingBox getBox(int index, @NotNull BoundingBox result) {
+        double[] boxes = getBoxes();
+        if (index < 0 || index * 6 >= boxes.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + boxes.length / 6);
+        }
+        int i = index * 6;
+        return result.resize(boxes[i], boxes[i + 1], boxes[i + 2], boxes[i + 3], boxes[i + 4], boxes[i + 5]);
+    }
+
+    @Override
+    public boolean overlaps(@NotNull BoundingBox other) {
+        Validate.notNull(other, "Other bounding box cannot be null");
+        return overlaps(other.getMinX(), other.getMinY(), other.getMinZ(), other.getMaxX(), other.getMaxY(), other.getMaxZ());
+    }
+
+    /**
+     * 检查给定范围的包围盒是否与形状重叠, 与{@link BoundingBox#overlaps(Vector, Vector)}的判断方式相同,
+     * 即只有与形状内部相交才算重叠, 仅接触表面不算.
+     * <p>
+     * 形状被视为一个整体: 厚度为0的包围盒落在两个相邻包围盒之间的接缝上时位于形状内部, 因此视为重叠.
+     * 这包括构造时仅相互接触的原始包围盒之间的接缝, 此时结果与对各个原始包围盒分别检测不同.
+     *
+     * @param minX 最小x坐标
+     * @param minY 最小y坐标
+     * @param minZ 最小z坐标
+     * @param maxX 最大x坐标
+     * @param maxY 最大y坐标
+     * @param maxZ 最大z坐标
+     * @return 是否重叠
+     */
+    public boolean overlaps(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (isEmpty()
+                || xs[0] >= maxX || xs[xs.length - 1] <= minX
+                || ys[0] >= maxY || ys[ys.length - 1] <= minY
+                || zs[0] >= maxZ || zs[zs.length - 1] <= minZ) {
+            return false;
+        }
+        if (minX == maxX || minY == maxY || minZ == maxZ) {
+            return overlapsFlat(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        double[] boxes = getBoxes();
+        for (int i = 0; i < boxes.length; i += 6) {
+            if (boxes[i] < maxX && boxes[i + 3] > minX
+                    && boxes[i + 1] < maxY && boxes[i + 4] > minY
+                    && boxes[i + 2] < maxZ && boxes[i + 5] > minZ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按格子检查厚度为0的包围盒. 落在格子边界上的轴需要边界两侧的格子都属于形状, 其余轴只需任意一个格子.
+     */
+    private boolean overlapsFlat(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        boolean seamX = minX == maxX && Arrays.binarySearch(xs, minX + 0.0D) >= 0;
+        boolean seamY = minY == maxY && Arrays.binarySearch(ys, minY + 0.0D) >= 0;
+        boolean seamZ = minZ == maxZ && Arrays.binarySearch(zs, minZ + 0.0D) >= 0;
+        int x1 = firstCell(xs, minX, seamX);
+        int x2 = lastCell(xs, maxX, seamX);
+        int y1 = firstCell(ys, minY, seamY);
+        int y2 = lastCell(ys, maxY, seamY);
+        int z1 = firstCell(zs, minZ, seamZ);
+        int z2 = lastCell(zs, maxZ, seamZ);
+        for (int x = x1; x <= (seamX ? x1 : x2); x++) {
+            for (int y = y1; y <= (seamY ? y1 : y2); y++) {
+                for (int z = z1; z <= (seamZ ? z1 : z2); z++) {
+                    if (isFilled(voxels, x, seamX ? x2 + 1 : x + 1, y, seamY ? y2 + 1 : y + 1, z, seamZ ? z2 + 1 : z + 1)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 检查另一个形状是否与本形状重叠.
+     *
+     * @param other 另一个形状
+     * @return 是否重叠
+     */
+    public boolean overlaps(@NotNull BitSetVoxelShape other) {
+        Validate.notNull(other, "Other shape cannot be null");
+        double[] boxes = other.getBoxes();
+        for (int i = 0; i < boxes.length; i += 6) {
+            if (overlaps(boxes[i], boxes[i + 1], boxes[i + 2], boxes[i + 3], boxes[i + 4], boxes[i + 5])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取本形状与另一个形状的并集.
+     *
+     * @param other 另一个形状
+     * @return 并集
+     */
+    @NotNull
+    public BitSetVoxelShape union(@NotNull VoxelShape other) {
+        BitSetVoxelShape shape = of(other);
+        if (shape.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return shape;
+        }
+        return combine(this, shape, true);
+    }
+
+    /**
+     * 获取本形状与另一个形状的交集.
+     *
+     * @param other 另一个形状
+     * @return 交集
+     */
+    @NotNull
+    public BitSetVoxelShape intersection(@NotNull VoxelShape other) {
+        BitSetVoxelShape shape = of(other);
+        if (isEmpty() || shape.isEmpty()) {
+            return EMPTY;
+        }
+        return combine(this, shape, false);
+    }
+
+    /**
+     * 获取将本形状平移后的形状.
+     *
+     * @param x x方向的平移量
+     * @param y y方向的平移量
+     * @param z z方向的平移量
+     * @return 平移后的形状
+     */
+    @NotNull
+    public BitSetVoxelShape offset(double x, double y, double z) {
+        NumberConversions.checkFinite(x, "x not finite");
+        NumberConversions.checkFinite(y, "y not finite");
+        NumberConversions.checkFinite(z, "z not finite");
+        if (isEmpty() || (x == 0.0D && y == 0.0D && z == 0.0D)) {
+            return this;
+        }
+        return new BitSetVoxelShape(shift(xs, x), shift(ys, y), shift(zs, z), voxels);
+    }
+
+    /**
+     * 计算射线与形状的交点, 与{@link BoundingBox#rayTrace(Vector, Vector, double)}的判断方式相同.
+     * 起点在形状内部时返回射线离开形状的位置, 相邻包围盒之间的接缝不算作形状的边界.
+     *
+     * @param start 射线起点
+     * @param direction 射线方向
+     * @param maxDistance 最大距离
+     * @return 最近的交点, 若不相交则为null
+     */
+    @Nullable
+    public RayTraceResult rayTrace(@NotNull Vector start, @NotNull Vector direction, double maxDistance) {
+        Validate.notNull(start, "Start is null!");
+        start.checkFinite();
+        Validate.notNull(direction, "Direction is null!");
+        direction.checkFinite();
+        double length = direction.length();
+        Validate.isTrue(length > 0, "Direction's magnitude is 0!");
+        if (maxDistance < 0.0D || isEmpty()) {
+            return null;
+        }
+
+        double[] origin = {start.getX(), start.getY(), start.getZ()};
+        double[] div = {length / direction.getX(), length / direction.getY(), length / direction.getZ()};
+        double[] range = new double[2];
+        double[] boxes = getBoxes();
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        boolean inside = false;
+        for (int i = 0; i < boxes.length; i += 6) {
+            if (!intersect(boxes, i, origin, div, range) || range[1] < 0.0D || range[0] > maxDistance) {
+                continue;
+            }
+            // Like BoundingBox, a ray starting inside a box hits where it leaves the box.
+            // A start on a seam is inside the shape, so the box it leaves through wins the tie
+            double distance = range[0] < 0.0D ? range[1] : range[0];
+            if (distance < bestDistance || (distance == bestDistance && range[0] < 0.0D)) {
+                best = i;
+                bestDistance = distance;
+                inside = range[0] < 0.0D;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        if (!inside) {
+            return getBox(best / 6, new BoundingBox()).rayTrace(start, direction, maxDistance);
+        }
+
+        // Follow the ray through every box it enters right where the previous one ends, up to the shape's real boundary
+        boolean extended = true;
+        while (extended) {
+            extended = false;
+            for (int i = 0; i < boxes.length; i += 6) {
+                if (intersect(boxes, i, origin, div, range) && range[0] <= bestDistance && range[1] > bestDistance) {
+                    best = i;
+                    bestDistance = range[1];
+                    extended = true;
+                }
+            }
+        }
+        Vector hitPosition = direction.clone().normalize().multiply(bestDistance).add(start);
+        return new RayTraceResult(hitPosition, exitFace(boxes, best, origin, div));
+    }
+
+    /**
+     * 计算射线进入和离开第i个包围盒时经过的距离, 写入range.
+     *
+     * @return 射线所在的直线是否与包围盒相交
+     */
+    private static boolean intersect(@NotNull double[] boxes, int i, @NotNull double[] origin, @NotNull double[] div, @NotNull double[] range) {
+        double tMin = Double.NEGATIVE_INFINITY;
+        double tMax = Double.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; axis++) {
+            double min = boxes[i + axis];
+            double max = boxes[i + axis + 3];
+            if (Double.isInfinite(div[axis])) {
+                // Parallel to this axis' planes: either always inside the slab or never
+                if (origin[axis] < min || origin[axis] > max) {
+                    return false;
+                }
+                continue;
+            }
+            double t1 = (min - origin[axis]) * div[axis];
+            double t2 = (max - origin[axis]) * div[axis];
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        range[0] = tMin;
+        range[1] = tMax;
+        return tMin <= tMax;
+    }
+
+    /**
+     * 获取射线离开第i个包围盒时经过的面, 与{@link BoundingBox#rayTrace(Vector, Vector, double)}一样按x, y, z的顺序处理并列的情况.
+     */
+    @NotNull
+    private static BlockFace exitFace(@NotNull double[] boxes, int i, @NotNull double[] origin, @NotNull double[] div) {
+        BlockFace face = null;
+        double exit = Double.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; axis++) {
+            if (Double.isInfinite(div[axis])) {
+                continue;
+            }
+            double t = Math.max((boxes[i + axis] - origin[axis]) * div[axis], (boxes[i + axis + 3] - origin[axis]) * div[axis]);
+            if (face == null || t < exit) {
+                exit = t;
+                boolean positive = div[axis] >= 0.0D;
+                face = axis == 0 ? (positive ? BlockFace.EAST : BlockFace.WEST)
+                        : (axis == 1 ? (positive ? BlockFace.UP : BlockFace.DOWN) : (positive ? BlockFace.SOUTH : BlockFace.NORTH));
+            }
+        }
+        return face;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof BitSetVoxelShape)) {
+            return false;
+        }
+        BitSetVoxelShape other = (BitSetVoxelShape) obj;
+        return Arrays.equals(xs, other.xs) && Arrays.equals(ys, other.ys) && Arrays.equals(zs, other.zs)
+                && Arrays.equals(voxels, other.voxels);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0) {
+            result = Arrays.hashCode(xs);
+            result = 31 * result + Arrays.hashCode(ys);
+            result = 31 * result + Arrays.hashCode(zs);
+            result = 31 * result + Arrays.hashCode(voxels);
+            hash = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "BitSetVoxelShape{boxes=" + getBoundingBoxes() + '}';
+    }
+
+    @NotNull
+    private double[] getBoxes() {
+        double[] result = boxes;
+        if (result == null) {
+            result = merge();
+            boxes = result;
+        }
+        return result;
+    }
+
+    /**
+     * 贪心地将相邻的格子合并为尽量少的包围盒: 先沿z轴延伸, 再沿y轴, 最后沿x轴.
+     */
+    @NotNull
+    private double[] merge() {
+        int nx = xs.length - 1;
+        int ny = ys.length - 1;
+        int nz = zs.length - 1;
+        long[] remaining = voxels.clone();
+        double[] result = new double[24];
+        int size = 0;
+        for (int x = 0; x < nx; x++) {
+            for (int y = 0; y < ny; y++) {
+                for (int z = 0; z < nz; z++) {
+                    if (!get(remaining, (x * ny + y) * nz + z)) {
+                        continue;
+                    }
+                    int z2 = z + 1;
+                    while (z2 < nz && get(remaining, (x * ny + y) * nz + z2)) {
+                        z2++;
+                    }
+                    int y2 = y + 1;
+                    while (y2 < ny && isFilled(remaining, x, x + 1, y2, y2 + 1, z, z2)) {
+                        y2++;
+                    }
+                    int x2 = x + 1;
+                    while (x2 < nx && isFilled(remaining, x2, x2 + 1, y, y2, z, z2)) {
+                        x2++;
+                    }
+                    for (int cx = x; cx < x2; cx++) {
+                        for (int cy = y; cy < y2; cy++) {
+                            for (int cz = z; cz < z2; cz++) {
+                                clear(remaining, (cx * ny + cy) * nz + cz);
+                            }
+                        }
+                    }
+
+                    if (size == result.length) {
+                        result = Arrays.copyOf(result, size * 2);
+                    }
+                    result[size++] = xs[x];
+                    result[size++] = ys[y];
+                    result[size++] = zs[z];
+                    result[size++] = xs[x2];
+                    result[size++] = ys[y2];
+                    result[size++] = zs[z2];
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private boolean isFilled(@NotNull long[] bits, int x1, int x2, int y1, int y2, int z1, int z2) {
+        int ny = ys.length - 1;
+        int nz = zs.length - 1;
+        for (int x = x1; x < x2; x++) {
+            for (int y = y1; y < y2; y++) {
+                for (int z = z1; z < z2; z++) {
+                    if (!get(bits, (x * ny + y) * nz + z)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private static BitSetVoxelShape combine(@NotNull BitSetVoxelShape a, @NotNull BitSetVoxelShape b, boolean union) {
+        double[] xs = mergePoints(a.xs, b.xs);
+        double[] ys = mergePoints(a.ys, b.ys);
+        double[] zs = mergePoints(a.zs, b.zs);
+        int nx = xs.length - 1;
+        int ny = ys.length - 1;
+        int nz = zs.length - 1;
+        long[] voxels = new long[words(nx * ny * nz)];
+        for (int x = 0; x < nx; x++) {
+            double cx = (xs[x] + xs[x + 1]) * 0.5D;
+            for (int y = 0; y < ny; y++) {
+                double cy = (ys[y] + ys[y + 1]) * 0.5D;
+                for (int z = 0; z < nz; z++) {
+                    double cz = (zs[z] + zs[z + 1]) * 0.5D;
+                    boolean inA = a.contains(cx, cy, cz);
+                    boolean inB = b.contains(cx, cy, cz);
+                    if (union ? (inA || inB) : (inA && inB)) {
+                        set(voxels, (x * ny + y) * nz + z);
+                    }
+                }
+            }
+        }
+        return compact(xs, ys, zs, voxels);
+    }
+
+    /**
+     * 去掉两侧格子完全相同的划分, 以及只包含空格子的边缘, 使几何上相同的形状具有相同的表示.
+     */
+    @NotNull
+    private static BitSetVoxelShape compact(@NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs, @NotNull long[] voxels) {
+        int nx = xs.length - 1;
+        int ny = ys.length - 1;
+        int nz = zs.length - 1;
+        int[] keptX = keep(voxels, nx, ny, nz, 0);
+        int[] keptY = keep(voxels, nx, ny, nz, 1);
+        int[] keptZ = keep(voxels, nx, ny, nz, 2);
+        if (keptX.length < 2 || keptY.length < 2 || keptZ.length < 2) {
+            return EMPTY;
+        }
+
+        int mx = keptX.length - 1;
+        int my = keptY.length - 1;
+        int mz = keptZ.length - 1;
+        long[] compacted = new long[words(mx * my * mz)];
+        for (int x = 0; x < mx; x++) {
+            for (int y = 0; y < my; y++) {
+                for (int z = 0; z < mz; z++) {
+                    // Every old cell between two kept boundaries is identical, so sample the first one
+                    if (get(voxels, (keptX[x] * ny + keptY[y]) * nz + keptZ[z])) {
+                        set(compacted, (x * my + y) * mz + z);
+                    }
+                }
+            }
+        }
+        return new BitSetVoxelShape(pick(xs, keptX), pick(ys, keptY), pick(zs, keptZ), compacted);
+    }
+
+    /**
+     * @return 在给定轴上需要保留的划分的下标
+     */
+    @NotNull
+    private static int[] keep(@NotNull long[] voxels, int nx, int ny, int nz, int axis) {
+        int n = axis == 0 ? nx : (axis == 1 ? ny : nz);
+        int u = axis == 0 ? ny : nx;
+        int v = axis == 2 ? ny : nz;
+        int[] kept = new int[n + 1];
+        int size = 0;
+        for (int k = 0; k <= n; k++) {
+            boolean differs = false;
+            for (int i = 0; i < u && !differs; i++) {
+                for (int j = 0; j < v && !differs; j++) {
+                    boolean before = k > 0 && get(voxels, index(axis, k - 1, i, j, ny, nz));
+                    boolean after = k < n && get(voxels, index(axis, k, i, j, ny, nz));
+                    differs = before != after;
+                }
+            }
+            if (differs) {
+                kept[size++] = k;
+            }
+        }
+        return Arrays.copyOf(kept, size);
+    }
+
+    private static int index(int axis, int k, int i, int j, int ny, int nz) {
+        switch (axis) {
+            case 0:
+                return (k * ny + i) * nz + j;
+            case 1:
+                return (i * ny + k) * nz + j;
+            default:
+                return (i * ny + j) * nz + k;
+        }
+    }
+
+    @NotNull
+    private static double[] pick(@NotNull double[] points, @NotNull int[] indices) {
+        double[] result = new double[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            result[i] = points[indices[i]];
+        }
+        return result;
+    }
+
+    @NotNull
+    private static double[] mergePoints(@NotNull double[] a, @NotNull double[] b) {
+        double[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        return distinct(all, all.length);
+    }
+
+    /**
+     * @return 排序并去重后的坐标, -0.0会被视为0.0
+     */
+    @NotNull
+    private static double[] distinct(@NotNull double[] points, int length) {
+        for (int i = 0; i < length; i++) {
+            points[i] += 0.0D;
+        }
+        Arrays.sort(points, 0, length);
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (size == 0 || points[i] != points[size - 1]) {
+                points[size++] = points[i];
+            }
+        }
+        return Arrays.copyOf(points, size);
+    }
+
+    @NotNull
+    private static double[] shift(@NotNull double[] points, double amount) {
+        double[] result = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            result[i] = points[i] + amount + 0.0D;
+        }
+        return result;
+    }
+
+    /**
+     * @return 包含给定坐标的格子的下标, 不在任何格子内则为-1
+     */
+    private static int cell(@NotNull double[] points, double value) {
+        int index = Arrays.binarySearch(points, value + 0.0D);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < points.length - 1 ? index : -1;
+    }
+
+    /**
+     * @return 与从min开始的范围相交的第一个格子; 落在接缝上时为接缝前的格子
+     */
+    private static int firstCell(@NotNull double[] points, double min, boolean seam) {
+        int index = Arrays.binarySearch(points, min + 0.0D);
+        if (seam) {
+            return index - 1;
+        }
+        return Math.max(index < 0 ? -index - 2 : index, 0);
+    }
+
+    /**
+     * @return 与到max为止的范围相交的最后一个格子; 落在接缝上时为接缝后的格子
+     */
+    private static int lastCell(@NotNull double[] points, double max, boolean seam) {
+        int index = Arrays.binarySearch(points, max + 0.0D);
+        if (seam) {
+            return index;
+        }
+        return Math.min(index < 0 ? -index - 2 : index - 1, points.length - 2);
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static boolean get(@NotNull long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(@NotNull long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clear(@NotNull long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+}
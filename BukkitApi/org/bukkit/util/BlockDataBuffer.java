@@ -0,0 +1,229 @@
+package org.bukkit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.Validate;
+import org.bukkit.RegionAccessor;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 一个长方体范围内方块的缓冲区, 以调色板下标保存每个方块, 用于{@link RegionAccessor}的批量读写.
+ * <p>
+ * 每种{@link BlockData}只在调色板中出现一次, 所以服务器写入时每种方块只需解析一次.
+ * 值为{@link #SKIP}的位置在写入世界时保持不变, 可用于放置不规则的形状(例如树或矿脉).
+ * 下标的顺序为{@code (y * depth + z) * width + x}, 即与区块段相同的先x后z再y.
+ * <pre>
+ * BlockDataBuffer buffer = new BlockDataBuffer(5, 6, 5);
+ * int log = buffer.getOrCreateIndex(Material.OAK_LOG.createBlockData());
+ * for (int y = 0; y &lt; 4; y++) {
+ *     buffer.setIndex(2, y, 2, log);
+ * }
+ * region.setBlocks(x - 2, y, z - 2, buffer);
+ * </pre>
+ * 本类不是线程安全的.
+ */
+public final class BlockDataBuffer {
+    /**
+     * 表示写入时保持原方块不变的下标.
+     */
+    public static final int SKIP = -1;
+
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final int[] indices;
+    private final List<BlockData> palette = new ArrayList<BlockData>();
+    private final Map<BlockData, Integer> lookup = new HashMap<BlockData, Integer>();
+
+    /**
+     * 创建一个所有位置都为{@link #SKIP}的缓冲区.
+     *
+     * @param width X方向的大小
+     * @param height Y方向的大小
+     * @param depth Z方向的大小
+     */
+    public BlockDataBuffer(int width, int height, int depth) {
+        Validate.isTrue(width > 0 && height > 0 && depth > 0, "Size must be positive");
+        Validate.isTrue((long) width * height * depth <= Integer.MAX_VALUE, "Buffer is too large");
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.indices = new int[width * height * depth];
+        Arrays.fill(indices, SKIP);
+    }
+
+    /**
+     * 获取X方向的大小.
+     *
+     * @return 宽度
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * 获取Y方向的大小.
+     *
+     * @return 高度
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 获取Z方向的大小.
+     *
+     * @return 深度
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * 获取缓冲区中的方块数.
+     *
+     * @return width * height * depth
+     */
+    public int getVolume() {
+        return indices.length;
+    }
+
+    /**
+     * 获取调色板.
+     *
+     * @return 不可修改的调色板, 元素的下标即方块的调色板下标
+     */
+    @NotNull
+    public List<BlockData> getPalette() {
+        return Collections.unmodifiableList(palette);
+    }
+
+    /**
+     * 获取方块在调色板中的下标, 若不存在则加入调色板. 加入的是方块的副本.
+     *
+     * @param blockData 方块
+     * @return 调色板下标
+     */
+    public int getOrCreateIndex(@NotNull BlockData blockData) {
+        Validate.notNull(blockData, "Block data cannot be null");
+        Integer index = lookup.get(blockData);
+        if (index == null) {
+            BlockData copy = blockData.clone();
+            index = palette.size();
+            palette.add(copy);
+            lookup.put(copy, index);
+        }
+        return index;
+    }
+
+    /**
+     * 获取一个位置的调色板下标.
+     *
+     * @param x 缓冲区内的X坐标
+     * @param y 缓冲区内的Y坐标
+     * @param z 缓冲区内的Z坐标
+     * @return 调色板下标, 或{@link #SKIP}
+     */
+    public int getIndex(int x, int y, int z) {
+        return indices[index(x, y, z)];
+    }
+
+    /**
+     * 设置一个位置的调色板下标.
+     *
+     * @param x 缓冲区内的X坐标
+     * @param y 缓冲区内的Y坐标
+     * @param z 缓冲区内的Z坐标
+     * @param index 调色板下标, 或{@link #SKIP}
+     */
+    public void setIndex(int x, int y, int z, int index) {
+        Validate.isTrue(index >= SKIP && index < palette.size(), "Palette index out of range");
+        indices[index(x, y, z)] = index;
+    }
+
+    /**
+     * 获取一个位置的方块.
+     *
+     * @param x 缓冲区内的X坐标
+     * @param y 缓冲区内的Y坐标
+     * @param z 缓冲区内的Z坐标
+     * @return 方块, 若为{@link #SKIP}则为null
+     */
+    @Nullable
+    public BlockData get(int x, int y, int z) {
+        int index = indices[index(x, y, z)];
+        return index == SKIP ? null : palette.get(index);
+    }
+
+    /**
+     * 设置一个位置的方块.
+     *
+     * @param x 缓冲区内的X坐标
+     * @param y 缓冲区内的Y坐标
+     * @param z 缓冲区内的Z坐标
+     * @param blockData 方块, 为null时设为{@link #SKIP}
+     */
+    public void set(int x, int y, int z, @Nullable BlockData blockData) {
+        indices[index(x, y, z)] = blockData == null ? SKIP : getOrCreateIndex(blockData);
+    }
+
+    /**
+     * 把缓冲区内的一个长方体范围设为同一个调色板下标.
+     *
+     * @param xMin 最小X坐标(包含)
+     * @param yMin 最小Y坐标(包含)
+     * @param zMin 最小Z坐标(包含)
+     * @param xMax 最大X坐标(不包含)
+     * @param yMax 最大Y坐标(不包含)
+     * @param zMax 最大Z坐标(不包含)
+     * @param index 调色板下标, 或{@link #SKIP}
+     */
+    public void fill(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, int index) {
+        Validate.isTrue(index >= SKIP && index < palette.size(), "Palette index out of range");
+        Validate.isTrue(0 <= xMin && xMin <= xMax && xMax <= width
+                && 0 <= yMin && yMin <= yMax && yMax <= height
+                && 0 <= zMin && zMin <= zMax && zMax <= depth, "Box out of bounds");
+        for (int y = yMin; y < yMax; y++) {
+            for (int z = zMin; z < zMax; z++) {
+                int row = (y * depth + z) * width;
+                Arrays.fill(indices, row + xMin, row + xMax, index);
+            }
+        }
+    }
+
+    /**
+     * 把所有位置设为{@link #SKIP}并清空调色板.
+     */
+    public void clear() {
+        Arrays.fill(indices, SKIP);
+        palette.clear();
+        lookup.clear();
+    }
+
+    /**
+     * 获取保存下标的数组本身, 供批量读写使用. 修改数组会直接修改缓冲区,
+     * 写入的值必须是{@link #SKIP}或有效的调色板下标.
+     *
+     * @return 下标数组, 顺序为{@code (y * depth + z) * width + x}
+     */
+    @NotNull
+    public int[] getIndices() {
+        return indices;
+    }
+
+    private int index(int x, int y, int z) {
+        Validate.isTrue(x >= 0 && x < width && y >= 0 && y < height && z >= 0 && z < depth, "Position out of bounds");
+        return (y * depth + z) * width + x;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockDataBuffer{width=" + width + ",height=" + height + ",depth=" + depth + ",palette=" + palette.size() + '}';
+    }
+}
@@ -0,0 +1,237 @@
+package org.bukkit.util;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.block.BlockFace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 沿一条射线逐个遍历方块坐标, 不创建任何{@link org.bukkit.block.Block}对象.
+ * <p>
+ * 这是{@link BlockIterator}的无分配版本, 使用Amanatides &amp; Woo的体素遍历算法.
+ * 同一个实例可以通过{@link #reset(double, double, double, double, double, double, double)}
+ * 反复用于不同的射线, 适合每tick进行大量视线检测的场景:
+ * <pre>
+ * BlockTraversal traversal = new BlockTraversal();
+ * traversal.reset(eye, direction, 100);
+ * while (traversal.next()) {
+ *     if (world.getBlockAt(traversal.getX(), traversal.getY(), traversal.getZ()).getType().isOccluding()) {
+ *         break;
+ *     }
+ * }
+ * </pre>
+ * 本类不是线程安全的.
+ */
+public final class BlockTraversal {
+
+    /**
+     * 遍历方块时的回调.
+     */
+    public interface Visitor {
+
+        /**
+         * 访问射线经过的一个方块.
+         *
+         * @param x 方块的x坐标
+         * @param y 方块的y坐标
+         * @param z 方块的z坐标
+         * @param face 射线进入该方块时穿过的面, 起点方块为null
+         * @return 是否继续遍历
+         */
+        boolean visit(int x, int y, int z, @Nullable BlockFace face);
+    }
+
+    private int x;
+    private int y;
+    private int z;
+    private int stepX;
+    private int stepY;
+    private int stepZ;
+    private double tMaxX;
+    private double tMaxY;
+    private double tMaxZ;
+    private double tDeltaX;
+    private double tDeltaY;
+    private double tDeltaZ;
+    private double maxDistance;
+    private double distance;
+    private BlockFace face;
+    private boolean started;
+    private boolean finished = true;
+
+    /**
+     * 沿射线遍历方块, 直到超出最大距离或回调返回false.
+     *
+     * @param start 射线起点
+     * @param direction 射线方向
+     * @param maxDistance 最大距离
+     * @param visitor 回调
+     * @return 若遍历到最大距离则为true, 若被回调提前终止则为false
+     */
+    public static boolean traverse(@NotNull Vector start, @NotNull Vector direction, double maxDistance, @NotNull Visitor visitor) {
+        Validate.notNull(visitor, "Visitor cannot be null");
+        BlockTraversal traversal = new BlockTraversal().reset(start, direction, maxDistance);
+        while (traversal.next()) {
+            if (!visitor.visit(traversal.x, traversal.y, traversal.z, traversal.face)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 以新的射线重置遍历.
+     *
+     * @param start 射线起点
+     * @param direction 射线方向, 不需要是单位向量
+     * @param maxDistance 最大距离, 可以为{@link Double#POSITIVE_INFINITY}
+     * @return 本对象
+     */
+    @NotNull
+    public BlockTraversal reset(@NotNull Vector start, @NotNull Vector direction, double maxDistance) {
+        Validate.notNull(start, "Start cannot be null");
+        Validate.notNull(direction, "Direction cannot be null");
+        start.checkFinite();
+        direction.checkFinite();
+        return reset(start.getX(), start.getY(), start.getZ(), direction.getX(), direction.getY(), direction.getZ(), maxDistance);
+    }
+
+    /**
+     * 以新的射线重置遍历.
+     *
+     * @param startX 射线起点的x坐标
+     * @param startY 射线起点的y坐标
+     * @param startZ 射线起点的z坐标
+     * @param dirX 射线方向的x分量
+     * @param dirY 射线方向的y分量
+     * @param dirZ 射线方向的z分量
+     * @param maxDistance 最大距离, 可以为{@link Double#POSITIVE_INFINITY}
+     * @return 本对象
+     */
+    @NotNull
+    public BlockTraversal reset(double startX, double startY, double startZ, double dirX, double dirY, double dirZ, double maxDistance) {
+        double length = Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+        Validate.isTrue(length > 0, "Direction's magnitude is 0!");
+        Validate.isTrue(maxDistance >= 0, "Max distance cannot be negative");
+        dirX /= length;
+        dirY /= length;
+        dirZ /= length;
+
+        x = NumberConversions.floor(startX);
+        y = NumberConversions.floor(startY);
+        z = NumberConversions.floor(startZ);
+        stepX = (int) Math.signum(dirX);
+        stepY = (int) Math.signum(dirY);
+        stepZ = (int) Math.signum(dirZ);
+        // Distance along the ray to cross one whole block on each axis, infinite when parallel to it
+        tDeltaX = (stepX == 0) ? Double.POSITIVE_INFINITY : Math.abs(1.0D / dirX);
+        tDeltaY = (stepY == 0) ? Double.POSITIVE_INFINITY : Math.abs(1.0D / dirY);
+        tDeltaZ = (stepZ == 0) ? Double.POSITIVE_INFINITY : Math.abs(1.0D / dirZ);
+        // Distance along the ray to the first boundary on each axis
+        tMaxX = (stepX == 0) ? Double.POSITIVE_INFINITY : ((stepX > 0) ? (x + 1 - startX) : (startX - x)) * tDeltaX;
+        tMaxY = (stepY == 0) ? Double.POSITIVE_INFINITY : ((stepY > 0) ? (y + 1 - startY) : (startY - y)) * tDeltaY;
+        tMaxZ = (stepZ == 0) ? Double.POSITIVE_INFINITY : ((stepZ > 0) ? (z + 1 - startZ) : (startZ - z)) * tDeltaZ;
+
+        this.maxDistance = maxDistance;
+        distance = 0;
+        face = null;
+        started = false;
+        finished = false;
+        return this;
+    }
+
+    /**
+     * 前进到射线经过的下一个方块.
+     * <p>
+     * 第一次调用会停在起点所在的方块.
+     *
+     * @return 若存在下一个方块则为true, 若已超出最大距离则为false
+     */
+    public boolean next() {
+        if (finished) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            return true;
+        }
+
+        if (tMaxX <= tMaxY && tMaxX <= tMaxZ) {
+            if (tMaxX > maxDistance) {
+                return finish();
+            }
+            distance = tMaxX;
+            x += stepX;
+            tMaxX += tDeltaX;
+            face = (stepX > 0) ? BlockFace.WEST : BlockFace.EAST;
+        } else if (tMaxY <= tMaxZ) {
+            if (tMaxY > maxDistance) {
+                return finish();
+            }
+            distance = tMaxY;
+            y += stepY;
+            tMaxY += tDeltaY;
+            face = (stepY > 0) ? BlockFace.DOWN : BlockFace.UP;
+        } else {
+            if (tMaxZ > maxDistance) {
+                return finish();
+            }
+            distance = tMaxZ;
+            z += stepZ;
+            tMaxZ += tDeltaZ;
+            face = (stepZ > 0) ? BlockFace.NORTH : BlockFace.SOUTH;
+        }
+        return true;
+    }
+
+    private boolean finish() {
+        finished = true;
+        return false;
+    }
+
+    /**
+     * 获取当前方块的x坐标.
+     *
+     * @return x坐标
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * 获取当前方块的y坐标.
+     *
+     * @return y坐标
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * 获取当前方块的z坐标.
+     *
+     * @return z坐标
+     */
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * 获取射线进入当前方块时穿过的面, 与{@link RayTraceResult#getHitBlockFace()}的含义相同.
+     *
+     * @return 穿过的面, 起点方块为null
+     */
+    @Nullable
+    public BlockFace getFace() {
+        return face;
+    }
+
+    /**
+     * 获取射线从起点到进入当前方块处的距离.
+     *
+     * @return 距离, 起点方块为0
+     */
+    public double getDistance() {
+        return distance;
+    }
+}
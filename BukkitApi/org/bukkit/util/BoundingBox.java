@@ -230,6 +230,17 @@ public class BoundingBox implements Cloneable, ConfigurationSerializable {
         return new Vector(minX, minY, minZ);
     }
 
+    /**
+     * Writes the minimum corner into the given vector without allocating.
+     *
+     * @param result the vector to store the result in
+     * @return the result vector
+     */
+    @NotNull
+    public Vector getMin(@NotNull Vector result) {
+        return result.setComponents(minX, minY, minZ);
+    }
+
     /**
      * Gets the maximum x value.
      *
@@ -267,6 +278,17 @@ public class BoundingBox implements Cloneable, ConfigurationSerializable {
         return new Vector(maxX, maxY, maxZ);
     }
 
+    /**
+     * Writes the maximum corner into the given vector without allocating.
+     *
+     * @param result the vector to store the result in
+     * @return the result vector
+     */
+    @NotNull
+    public Vector getMax(@NotNull Vector result) {
+        return result.setComponents(maxX, maxY, maxZ);
+    }
+
     /**
      * Gets the width of the bounding box in the x direction.
      *
@@ -340,6 +362,18 @@ public class BoundingBox implements Cloneable, ConfigurationSerializable {
         return new Vector(this.getCenterX(), this.getCenterY(), this.getCenterZ());
     }
 
+    /**
+     * Writes the center of the bounding box into the given vector without
+     * allocating.
+     *
+     * @param result the vector to store the result in
+     * @return the result vector
+     */
+    @NotNull
+    public Vector getCenter(@NotNull Vector result) {
+        return result.setComponents(this.getCenterX(), this.getCenterY(), this.getCenterZ());
+    }
+
     /**
      * Copies another bounding box.
      *
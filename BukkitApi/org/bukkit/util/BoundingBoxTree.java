@@ -0,0 +1,749 @@
+package org.bukkit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.apache.commons.lang.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 以{@link BoundingBox}为键的空间索引, 用于快速查询包含某点或与某区域重叠的所有值.
+ * <p>
+ * 内部是一棵自平衡的层次包围盒树(BVH): 插入时选择使表面积增量最小的位置,
+ * 并通过旋转保持树的高度为O(log n). 大量的初始数据可以通过{@link #bulkLoad(Map)}一次性构建,
+ * 得到的树比逐个插入更紧凑.
+ * <p>
+ * 每个值在树中最多出现一次, 其语义类似{@link Map}. 查询的包含和重叠判断与
+ * {@link BoundingBox#contains(double, double, double)}和{@link BoundingBox#overlaps(BoundingBox)}一致.
+ * 例如按玩家位置查找领地:
+ * <pre>
+ * BoundingBoxTree&lt;Claim&gt; claims = new BoundingBoxTree&lt;&gt;();
+ * claims.insert(claim, claim.getBoundingBox());
+ * List&lt;Claim&gt; here = claims.getContaining(player.getLocation().toVector());
+ * </pre>
+ * 本类不是线程安全的.
+ *
+ * @param <T> 值的类型
+ */
+public final class BoundingBoxTree<T> {
+    private static final int NULL = -1;
+
+    private final Map<T, Integer> leaves = new HashMap<T, Integer>();
+    // Node storage: six bounds per node (min xyz, max xyz), then links
+    private double[] bounds;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private int[] height;
+    private Object[] values;
+    private int capacity;
+    private int count;
+    private int freeList = NULL;
+    private int root = NULL;
+
+    /**
+     * 创建一个空的索引.
+     */
+    public BoundingBoxTree() {
+        allocateStorage(16);
+    }
+
+    /**
+     * 获取索引中值的数量.
+     *
+     * @return 值的数量
+     */
+    public int size() {
+        return leaves.size();
+    }
+
+    /**
+     * 检查索引是否为空.
+     *
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        return leaves.isEmpty();
+    }
+
+    /**
+     * 检查索引是否包含给定的值.
+     *
+     * @param value 值
+     * @return 是否包含
+     */
+    public boolean contains(@NotNull T value) {
+        return leaves.containsKey(value);
+    }
+
+    /**
+     * 获取给定的值在索引中的包围盒.
+     *
+     * @param value 值
+     * @return 包围盒的副本, 若值不在索引中则为null
+     */
+    @Nullable
+    public BoundingBox getBoundingBox(@NotNull T value) {
+        Integer leaf = leaves.get(value);
+        if (leaf == null) {
+            return null;
+        }
+        int b = leaf * 6;
+        return new BoundingBox(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5]);
+    }
+
+    /**
+     * 将一个值以给定的包围盒加入索引. 若该值已在索引中, 则更新其包围盒.
+     * <p>
+     * 包围盒的坐标会被复制, 之后修改该包围盒不会影响索引.
+     *
+     * @param value 值
+     * @param box 包围盒
+     * @return 若该值原本不在索引中则为true
+     */
+    public boolean insert(@NotNull T value, @NotNull BoundingBox box) {
+        Validate.notNull(value, "Value cannot be null");
+        Validate.notNull(box, "Box cannot be null");
+        Integer existing = leaves.get(value);
+        if (existing != null) {
+            removeLeaf(existing);
+            setBounds(existing, box);
+            insertLeaf(existing);
+            return false;
+        }
+
+        int leaf = allocateNode();
+        setBounds(leaf, box);
+        values[leaf] = value;
+        leaves.put(value, leaf);
+        insertLeaf(leaf);
+        return true;
+    }
+
+    /**
+     * 从索引中移除一个值.
+     *
+     * @param value 值
+     * @return 若该值原本在索引中则为true
+     */
+    public boolean remove(@NotNull T value) {
+        Integer leaf = leaves.remove(value);
+        if (leaf == null) {
+            return false;
+        }
+        removeLeaf(leaf);
+        freeNode(leaf);
+        return true;
+    }
+
+    /**
+     * 清空索引.
+     */
+    public void clear() {
+        leaves.clear();
+        Arrays.fill(values, 0, capacity, null);
+        count = 0;
+        freeList = NULL;
+        root = NULL;
+    }
+
+    /**
+     * 将一批值加入索引, 并自顶向下重新构建整棵树.
+     * <p>
+     * 已在索引中的值会保留; 若给定的值已在索引中, 则更新其包围盒.
+     * 对于一次性加载大量数据, 这比逐个{@link #insert(Object, BoundingBox)}快, 查询效率也更高.
+     *
+     * @param entries 值及其包围盒
+     */
+    public void bulkLoad(@NotNull Map<? extends T, ? extends BoundingBox> entries) {
+        Validate.notNull(entries, "Entries cannot be null");
+        Map<T, BoundingBox> all = new LinkedHashMap<T, BoundingBox>();
+        for (Map.Entry<T, Integer> entry : leaves.entrySet()) {
+            all.put(entry.getKey(), getBoundingBox(entry.getKey()));
+        }
+        for (Map.Entry<? extends T, ? extends BoundingBox> entry : entries.entrySet()) {
+            Validate.notNull(entry.getKey(), "Value cannot be null");
+            Validate.notNull(entry.getValue(), "Box cannot be null");
+            all.put(entry.getKey(), entry.getValue());
+        }
+
+        clear();
+        if (all.isEmpty()) {
+            return;
+        }
+        if (capacity < all.size() * 2) {
+            allocateStorage(all.size() * 2);
+        }
+
+        int[] items = new int[all.size()];
+        int i = 0;
+        for (Map.Entry<T, BoundingBox> entry : all.entrySet()) {
+            int leaf = allocateNode();
+            setBounds(leaf, entry.getValue());
+            values[leaf] = entry.getKey();
+            leaves.put(entry.getKey(), leaf);
+            items[i++] = leaf;
+        }
+        root = build(items, 0, items.length);
+        parent[root] = NULL;
+    }
+
+    /**
+     * 以当前的值重新构建整棵树.
+     * <p>
+     * 在大量插入和删除之后调用可以恢复最佳的查询效率.
+     */
+    public void rebuild() {
+        bulkLoad(new HashMap<T, BoundingBox>());
+    }
+
+    /**
+     * 对所有包含给定点的值执行操作.
+     *
+     * @param x 点的x坐标
+     * @param y 点的y坐标
+     * @param z 点的z坐标
+     * @param action 操作
+     */
+    @SuppressWarnings("unchecked")
+    public void queryPoint(double x, double y, double z, @NotNull Consumer<? super T> action) {
+        Validate.notNull(action, "Action cannot be null");
+        if (root == NULL) {
+            return;
+        }
+        int[] stack = new int[height[root] + 1];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 6;
+            if (x >= bounds[b] && x < bounds[b + 3]
+                    && y >= bounds[b + 1] && y < bounds[b + 4]
+                    && z >= bounds[b + 2] && z < bounds[b + 5]) {
+                if (child1[node] == NULL) {
+                    action.accept((T) values[node]);
+                } else {
+                    stack[top++] = child1[node];
+                    stack[top++] = child2[node];
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取所有包含给定点的值.
+     *
+     * @param point 点
+     * @return 包含该点的值
+     */
+    @NotNull
+    public List<T> getContaining(@NotNull Vector point) {
+        Validate.notNull(point, "Point cannot be null");
+        List<T> result = new ArrayList<T>();
+        queryPoint(point.getX(), point.getY(), point.getZ(), result::add);
+        return result;
+    }
+
+    /**
+     * 对所有包围盒与给定包围盒重叠的值执行操作.
+     *
+     * @param box 包围盒
+     * @param action 操作
+     */
+    @SuppressWarnings("unchecked")
+    public void queryOverlapping(@NotNull BoundingBox box, @NotNull Consumer<? super T> action) {
+        Validate.notNull(box, "Box cannot be null");
+        Validate.notNull(action, "Action cannot be null");
+        if (root == NULL) {
+            return;
+        }
+        double minX = box.getMinX(), minY = box.getMinY(), minZ = box.getMinZ();
+        double maxX = box.getMaxX(), maxY = box.getMaxY(), maxZ = box.getMaxZ();
+        int[] stack = new int[height[root] + 1];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 6;
+            if (bounds[b] < maxX && bounds[b + 3] > minX
+                    && bounds[b + 1] < maxY && bounds[b + 4] > minY
+                    && bounds[b + 2] < maxZ && bounds[b + 5] > minZ) {
+                if (child1[node] == NULL) {
+                    action.accept((T) values[node]);
+                } else {
+                    stack[top++] = child1[node];
+                    stack[top++] = child2[node];
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取所有包围盒与给定包围盒重叠的值.
+     *
+     * @param box 包围盒
+     * @return 重叠的值
+     */
+    @NotNull
+    public List<T> getOverlapping(@NotNull BoundingBox box) {
+        List<T> result = new ArrayList<T>();
+        queryOverlapping(box, result::add);
+        return result;
+    }
+
+    /**
+     * 对所有包围盒与给定射线相交的值执行操作, 顺序不确定.
+     *
+     * @param start 射线起点
+     * @param direction 射线方向
+     * @param maxDistance 最大距离
+     * @param action 操作
+     */
+    @SuppressWarnings("unchecked")
+    public void queryRay(@NotNull Vector start, @NotNull Vector direction, double maxDistance, @NotNull Consumer<? super T> action) {
+        Validate.notNull(action, "Action cannot be null");
+        double[] ray = prepareRay(start, direction);
+        if (root == NULL || maxDistance < 0.0D) {
+            return;
+        }
+        int[] stack = new int[height[root] + 1];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (rayEntry(node, ray, maxDistance) < 0.0D) {
+                continue;
+            }
+            if (child1[node] == NULL) {
+                action.accept((T) values[node]);
+            } else {
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+    }
+
+    /**
+     * 获取包围盒与给定射线相交且最靠近起点的值.
+     * 若起点位于某个包围盒内, 则该包围盒的距离为0.
+     *
+     * @param start 射线起点
+     * @param direction 射线方向
+     * @param maxDistance 最大距离
+     * @return 最近的值, 若没有相交的值则为null
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public T rayTrace(@NotNull Vector start, @NotNull Vector direction, double maxDistance) {
+        double[] ray = prepareRay(start, direction);
+        if (root == NULL || maxDistance < 0.0D) {
+            return null;
+        }
+        int[] stack = new int[height[root] + 1];
+        int top = 0;
+        stack[top++] = root;
+        int best = NULL;
+        double bestDistance = maxDistance;
+        while (top > 0) {
+            int node = stack[--top];
+            double entry = rayEntry(node, ray, bestDistance);
+            if (entry < 0.0D || (best != NULL && entry >= bestDistance)) {
+                continue;
+            }
+            if (child1[node] == NULL) {
+                best = node;
+                bestDistance = entry;
+                continue;
+            }
+            // Visit the nearer child first so the farther one is more likely to be pruned
+            int near = child1[node];
+            int far = child2[node];
+            double nearEntry = rayEntry(near, ray, bestDistance);
+            double farEntry = rayEntry(far, ray, bestDistance);
+            if (farEntry >= 0.0D && (nearEntry < 0.0D || farEntry < nearEntry)) {
+                int swap = near;
+                near = far;
+                far = swap;
+                double swapEntry = nearEntry;
+                nearEntry = farEntry;
+                farEntry = swapEntry;
+            }
+            if (farEntry >= 0.0D) {
+                stack[top++] = far;
+            }
+            if (nearEntry >= 0.0D) {
+                stack[top++] = near;
+            }
+        }
+        return best == NULL ? null : (T) values[best];
+    }
+
+    @NotNull
+    private static double[] prepareRay(@NotNull Vector start, @NotNull Vector direction) {
+        Validate.notNull(start, "Start is null!");
+        start.checkFinite();
+        Validate.notNull(direction, "Direction is null!");
+        direction.checkFinite();
+        double length = direction.length();
+        Validate.isTrue(length > 0, "Direction's magnitude is 0!");
+        return new double[] {
+            start.getX(), start.getY(), start.getZ(),
+            length / direction.getX(), length / direction.getY(), length / direction.getZ()
+        };
+    }
+
+    /**
+     * @return 射线进入节点包围盒时的距离, 不相交则为-1
+     */
+    private double rayEntry(int node, @NotNull double[] ray, double maxDistance) {
+        int b = node * 6;
+        double tMin = 0.0D;
+        double tMax = maxDistance;
+        for (int axis = 0; axis < 3; axis++) {
+            double origin = ray[axis];
+            double inverse = ray[axis + 3];
+            double min = bounds[b + axis];
+            double max = bounds[b + axis + 3];
+            if (Double.isInfinite(inverse)) {
+                // Parallel to this axis' planes: either always inside the slab or never
+                if (origin < min || origin > max) {
+                    return -1.0D;
+                }
+                continue;
+            }
+            double t1 = (min - origin) * inverse;
+            double t2 = (max - origin) * inverse;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax) {
+                return -1.0D;
+            }
+        }
+        return tMin;
+    }
+
+    private int build(@NotNull int[] items, int from, int to) {
+        if (to - from == 1) {
+            return items[from];
+        }
+
+        // Split at the median centroid along the axis with the largest centroid spread
+        double[] spread = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = from; i < to; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double center = centroid(items[i], axis);
+                spread[axis] = Math.min(spread[axis], center);
+                spread[axis + 3] = Math.max(spread[axis + 3], center);
+            }
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (spread[a + 3] - spread[a] > spread[axis + 3] - spread[axis]) {
+                axis = a;
+            }
+        }
+        int mid = (from + to) >>> 1;
+        select(items, from, to - 1, mid, axis);
+
+        int node = allocateNode();
+        int left = build(items, from, mid);
+        int right = build(items, mid, to);
+        child1[node] = left;
+        child2[node] = right;
+        parent[left] = node;
+        parent[right] = node;
+        union(left, right, node);
+        height[node] = 1 + Math.max(height[left], height[right]);
+        return node;
+    }
+
+    /**
+     * 部分排序items[from, to], 使第k个元素处于按质心排序后的位置.
+     */
+    private void select(@NotNull int[] items, int from, int to, int k, int axis) {
+        while (to > from) {
+            double pivot = centroid(items[(from + to) >>> 1], axis);
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (centroid(items[i], axis) < pivot) {
+                    i++;
+                }
+                while (centroid(items[j], axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = items[i];
+                    items[i] = items[j];
+                    items[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                to = j;
+            } else if (k >= i) {
+                from = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double centroid(int node, int axis) {
+        return bounds[node * 6 + axis] + bounds[node * 6 + axis + 3];
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+
+        // Descend towards the sibling that minimizes the increase in surface area
+        int b = leaf * 6;
+        int index = root;
+        while (child1[index] != NULL) {
+            double area = area(index);
+            double combinedArea = combinedArea(index, b);
+            double cost = 2.0D * combinedArea;
+            double inheritance = 2.0D * (combinedArea - area);
+
+            int left = child1[index];
+            int right = child2[index];
+            double costLeft = combinedArea(left, b) + inheritance;
+            if (child1[left] != NULL) {
+                costLeft -= area(left);
+            }
+            double costRight = combinedArea(right, b) + inheritance;
+            if (child1[right] != NULL) {
+                costRight -= area(right);
+            }
+
+            if (cost < costLeft && cost < costRight) {
+                break;
+            }
+            index = costLeft < costRight ? left : right;
+        }
+
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        union(leaf, sibling, newParent);
+        height[newParent] = height[sibling] + 1;
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        if (oldParent == NULL) {
+            root = newParent;
+        } else if (child1[oldParent] == sibling) {
+            child1[oldParent] = newParent;
+        } else {
+            child2[oldParent] = newParent;
+        }
+
+        refit(parent[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+
+        int oldParent = parent[leaf];
+        int grandParent = parent[oldParent];
+        int sibling = child1[oldParent] == leaf ? child2[oldParent] : child1[oldParent];
+        freeNode(oldParent);
+        if (grandParent == NULL) {
+            root = sibling;
+            parent[sibling] = NULL;
+            return;
+        }
+
+        if (child1[grandParent] == oldParent) {
+            child1[grandParent] = sibling;
+        } else {
+            child2[grandParent] = sibling;
+        }
+        parent[sibling] = grandParent;
+        refit(grandParent);
+    }
+
+    private void refit(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int left = child1[index];
+            int right = child2[index];
+            height[index] = 1 + Math.max(height[left], height[right]);
+            union(left, right, index);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * 若节点a的两棵子树高度相差超过1, 则进行一次旋转.
+     *
+     * @return 旋转后位于原先a的位置的节点
+     */
+    private int balance(int a) {
+        if (child1[a] == NULL || height[a] < 2) {
+            return a;
+        }
+
+        int b = child1[a];
+        int c = child2[a];
+        int difference = height[c] - height[b];
+
+        if (difference > 1) {
+            // Rotate c up
+            int f = child1[c];
+            int g = child2[c];
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+                union(b, g, a);
+                union(a, f, c);
+                height[a] = 1 + Math.max(height[b], height[g]);
+                height[c] = 1 + Math.max(height[a], height[f]);
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+                union(b, f, a);
+                union(a, g, c);
+                height[a] = 1 + Math.max(height[b], height[f]);
+                height[c] = 1 + Math.max(height[a], height[g]);
+            }
+            return c;
+        }
+
+        if (difference < -1) {
+            // Rotate b up
+            int d = child1[b];
+            int e = child2[b];
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+                union(c, e, a);
+                union(a, d, b);
+                height[a] = 1 + Math.max(height[c], height[e]);
+                height[b] = 1 + Math.max(height[a], height[d]);
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+                union(c, d, a);
+                union(a, e, b);
+                height[a] = 1 + Math.max(height[c], height[d]);
+                height[b] = 1 + Math.max(height[a], height[e]);
+            }
+            return b;
+        }
+
+        return a;
+    }
+
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == NULL) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    private double area(int node) {
+        int b = node * 6;
+        double dx = bounds[b + 3] - bounds[b];
+        double dy = bounds[b + 4] - bounds[b + 1];
+        double dz = bounds[b + 5] - bounds[b + 2];
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private double combinedArea(int node, int other) {
+        // other is an offset into the bounds array rather than a node index
+        int b = node * 6;
+        double dx = Math.max(bounds[b + 3], bounds[other + 3]) - Math.min(bounds[b], bounds[other]);
+        double dy = Math.max(bounds[b + 4], bounds[other + 4]) - Math.min(bounds[b + 1], bounds[other + 1]);
+        double dz = Math.max(bounds[b + 5], bounds[other + 5]) - Math.min(bounds[b + 2], bounds[other + 2]);
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private void union(int first, int second, int target) {
+        int f = first * 6;
+        int s = second * 6;
+        int t = target * 6;
+        for (int i = 0; i < 3; i++) {
+            bounds[t + i] = Math.min(bounds[f + i], bounds[s + i]);
+            bounds[t + i + 3] = Math.max(bounds[f + i + 3], bounds[s + i + 3]);
+        }
+    }
+
+    private void setBounds(int node, @NotNull BoundingBox box) {
+        int b = node * 6;
+        bounds[b] = box.getMinX();
+        bounds[b + 1] = box.getMinY();
+        bounds[b + 2] = box.getMinZ();
+        bounds[b + 3] = box.getMaxX();
+        bounds[b + 4] = box.getMaxY();
+        bounds[b + 5] = box.getMaxZ();
+    }
+
+    private int allocateNode() {
+        int node;
+        if (freeList != NULL) {
+            node = freeList;
+            freeList = parent[node];
+        } else {
+            if (count == capacity) {
+                allocateStorage(capacity * 2);
+            }
+            node = count++;
+        }
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        values[node] = null;
+        child1[node] = NULL;
+        height[node] = -1;
+        // Free nodes are chained through the parent array
+        parent[node] = freeList;
+        freeList = node;
+    }
+
+    private void allocateStorage(int newCapacity) {
+        bounds = bounds == null ? new double[newCapacity * 6] : Arrays.copyOf(bounds, newCapacity * 6);
+        parent = parent == null ? new int[newCapacity] : Arrays.copyOf(parent, newCapacity);
+        child1 = child1 == null ? new int[newCapacity] : Arrays.copyOf(child1, newCapacity);
+        child2 = child2 == null ? new int[newCapacity] : Arrays.copyOf(child2, newCapacity);
+        height = height == null ? new int[newCapacity] : Arrays.copyOf(height, newCapacity);
+        values = values == null ? new Object[newCapacity] : Arrays.copyOf(values, newCapacity);
+        capacity = newCapacity;
+    }
+}
@@ -0,0 +1,358 @@
+package org.bukkit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 按名称查找枚举常量的预计算表, 例如{@link org.bukkit.Material}, {@link org.bukkit.Sound},
+ * {@link org.bukkit.entity.EntityType}, {@link org.bukkit.Particle}和{@link org.bukkit.block.Biome}.
+ * <p>
+ * {@link #match(CharSequence)}与{@link org.bukkit.Material#matchMaterial(String)}的规则相同:
+ * 去掉"minecraft:"前缀, 转换为大写, 把连续的空白替换为一个下划线, 再去掉其他非单词字符.
+ * 不同的是本类直接从{@link CharSequence}逐个字符规范化并计算哈希, 不创建任何字符串或正则表达式;
+ * 名称通过一个完美哈希表(hash and displace)定位, 只需比较一个候选常量. 只含ASCII字符的输入在查找时不分配内存.
+ * <pre>
+ * EnumLookup&lt;Sound&gt; sounds = EnumLookup.of(Sound.class);
+ * Sound sound = sounds.match("minecraft:entity player levelup");
+ * </pre>
+ * 本类是线程安全的.
+ *
+ * @param <E> 枚举类型
+ */
+public final class EnumLookup<E extends Enum<E>> {
+    private static final Map<Class<?>, EnumLookup<?>> LOOKUPS = new ConcurrentHashMap<Class<?>, EnumLookup<?>>();
+    private static final String NAMESPACE_PREFIX = "minecraft:";
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Class<E> type;
+    private final E[] constants;
+    // Normalized names per table slot, and the constant index of each slot; -1 for empty slots
+    private final char[][] names;
+    private final int[] slots;
+    private final int[] displacements;
+    private final int slotMask;
+    private final int bucketMask;
+    private final int maxLength;
+    private final ThreadLocal<char[]> buffers;
+
+    private EnumLookup(@NotNull Class<E> type) {
+        this.type = type;
+        this.constants = type.getEnumConstants();
+
+        List<char[]> keys = new ArrayList<char[]>(constants.length);
+        List<Integer> indices = new ArrayList<Integer>(constants.length);
+        int longest = 0;
+        char[] scratch = new char[64];
+        for (int i = 0; i < constants.length; i++) {
+            String name = constants[i].name();
+            if (scratch.length < name.length() * 3 + 1) {
+                scratch = new char[name.length() * 3 + 1];
+            }
+            int length = normalize(name, scratch, 0);
+            if (length <= 0) {
+                continue;
+            }
+            char[] key = Arrays.copyOf(scratch, length);
+            if (!containsKey(keys, key)) {
+                keys.add(key);
+                indices.add(i);
+                longest = Math.max(longest, length);
+            }
+        }
+        this.maxLength = longest;
+
+        int tableSize = Integer.highestOneBit(Math.max(keys.size(), 1) * 2 - 1) << 1;
+        int bucketCount = Integer.highestOneBit(Math.max(keys.size() / 4, 1));
+        this.slotMask = tableSize - 1;
+        this.bucketMask = bucketCount - 1;
+        this.names = new char[tableSize][];
+        this.slots = new int[tableSize];
+        Arrays.fill(slots, -1);
+        this.displacements = new int[bucketCount];
+
+        long[] hashes = new long[keys.size()];
+        List<List<Integer>> buckets = new ArrayList<List<Integer>>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            char[] key = keys.get(i);
+            hashes[i] = hash(key, key.length);
+            buckets.get(bucket(hashes[i])).add(i);
+        }
+        Integer[] order = new Integer[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            order[i] = i;
+        }
+        final List<List<Integer>> sizes = buckets;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return sizes.get(b).size() - sizes.get(a).size();
+            }
+        });
+
+        // Place the largest buckets first, trying displacements until every key of a bucket lands in a free slot
+        int[] taken = new int[tableSize];
+        int generation = 0;
+        for (int b : order) {
+            List<Integer> members = buckets.get(b);
+            if (members.isEmpty()) {
+                continue;
+            }
+            for (int displacement = 0; ; displacement++) {
+                generation++;
+                boolean placed = true;
+                for (int member : members) {
+                    int slot = slot(hashes[member], displacement);
+                    if (names[slot] != null || taken[slot] == generation) {
+                        placed = false;
+                        break;
+                    }
+                    taken[slot] = generation;
+                }
+                if (placed) {
+                    displacements[b] = displacement;
+                    for (int member : members) {
+                        int slot = slot(hashes[member], displacement);
+                        names[slot] = keys.get(member);
+                        slots[slot] = indices.get(member);
+                    }
+                    break;
+                }
+            }
+        }
+
+        final int bufferSize = maxLength + 1;
+        this.buffers = new ThreadLocal<char[]>() {
+            @Override
+            protected char[] initialValue() {
+                return new char[bufferSize];
+            }
+        };
+    }
+
+    /**
+     * 获取枚举类型的查找表. 每个类型的表只会被创建一次.
+     *
+     * @param type 枚举类型
+     * @param <E> 枚举类型
+     * @return 查找表
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>> EnumLookup<E> of(@NotNull Class<E> type) {
+        Validate.notNull(type, "Type cannot be null");
+        EnumLookup<?> lookup = LOOKUPS.get(type);
+        if (lookup == null) {
+            lookup = new EnumLookup<E>(type);
+            EnumLookup<?> previous = LOOKUPS.putIfAbsent(type, lookup);
+            if (previous != null) {
+                lookup = previous;
+            }
+        }
+        return (EnumLookup<E>) lookup;
+    }
+
+    /**
+     * 获取枚举类型.
+     *
+     * @return 枚举类型
+     */
+    @NotNull
+    public Class<E> getType() {
+        return type;
+    }
+
+    /**
+     * 按规范化后的名称查找常量.
+     *
+     * @param name 名称, 例如"minecraft:oak_log"或"Oak Log"
+     * @return 常量, 若不存在则为null
+     */
+    @Nullable
+    public E match(@NotNull CharSequence name) {
+        return match(name, null);
+    }
+
+    /**
+     * 按规范化后的名称查找常量, 若规范化后的名称不以prefix开头则先加上prefix.
+     * 例如{@code match(name, Material.LEGACY_PREFIX)}查找旧版材料.
+     *
+     * @param name 名称
+     * @param prefix 规范化后的名称必须有的前缀, 应为大写; 为null时等同于{@link #match(CharSequence)}
+     * @return 常量, 若不存在则为null
+     */
+    @Nullable
+    public E match(@NotNull CharSequence name, @Nullable String prefix) {
+        Validate.notNull(name, "Name cannot be null");
+        char[] buffer = buffers.get();
+        int length = normalize(name, buffer, 0);
+        if (length <= 0 || length > maxLength) {
+            return null;
+        }
+        if (prefix != null && !prefix.isEmpty() && !startsWith(buffer, length, prefix)) {
+            // Longer names cannot match, so the prefixed name always fits the buffer
+            if (length + prefix.length() > maxLength) {
+                return null;
+            }
+            System.arraycopy(buffer, 0, buffer, prefix.length(), length);
+            prefix.getChars(0, prefix.length(), buffer, 0);
+            length += prefix.length();
+        }
+        return find(buffer, length);
+    }
+
+    @Nullable
+    private E find(@NotNull char[] buffer, int length) {
+        long hash = hash(buffer, length);
+        int slot = slot(hash, displacements[bucket(hash)]);
+        char[] candidate = names[slot];
+        if (candidate == null || candidate.length != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate[i] != buffer[i]) {
+                return null;
+            }
+        }
+        return constants[slots[slot]];
+    }
+
+    /**
+     * 规范化名称并写入buffer的offset处.
+     *
+     * @return 写入后的总长度, 若超出buffer则为-1
+     */
+    private static int normalize(@NotNull CharSequence name, @NotNull char[] buffer, int offset) {
+        int length = name.length();
+        int i = 0;
+        if (length >= NAMESPACE_PREFIX.length() && regionMatches(name, NAMESPACE_PREFIX)) {
+            i = NAMESPACE_PREFIX.length();
+        }
+        int out = offset;
+        boolean space = false;
+        for (; i < length; i++) {
+            char c = name.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r') {
+                space = true;
+                continue;
+            }
+            if (space) {
+                if (out == buffer.length) {
+                    return -1;
+                }
+                buffer[out++] = '_';
+                space = false;
+            }
+            if (c < 0x80) {
+                if (c >= 'a' && c <= 'z') {
+                    c -= 'a' - 'A';
+                } else if (!(c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_')) {
+                    continue;
+                }
+                if (out == buffer.length) {
+                    return -1;
+                }
+                buffer[out++] = c;
+                continue;
+            }
+            // A few non-ASCII characters upper-case to ASCII letters (for example the dotless i)
+            String upper = String.valueOf(c).toUpperCase(Locale.ENGLISH);
+            for (int j = 0; j < upper.length(); j++) {
+                char u = upper.charAt(j);
+                if (u >= 'A' && u <= 'Z' || u >= '0' && u <= '9' || u == '_') {
+                    if (out == buffer.length) {
+                        return -1;
+                    }
+                    buffer[out++] = u;
+                }
+            }
+        }
+        if (space) {
+            if (out == buffer.length) {
+                return -1;
+            }
+            buffer[out++] = '_';
+        }
+        return out;
+    }
+
+    private static boolean startsWith(@NotNull char[] buffer, int length, @NotNull String prefix) {
+        if (length < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(@NotNull CharSequence name, @NotNull String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (name.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsKey(@NotNull List<char[]> keys, @NotNull char[] key) {
+        for (char[] existing : keys) {
+            if (Arrays.equals(existing, key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long hash(@NotNull char[] chars, int length) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ chars[i]) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private int bucket(long hash) {
+        return (int) (hash >>> 40) & bucketMask;
+    }
+
+    private int slot(long hash, int displacement) {
+        long mixed = (hash + displacement * 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        return (int) (mixed >>> 32) & slotMask;
+    }
+
+    /**
+     * 获取所有可查找的规范化名称.
+     *
+     * @return 不可修改的名称列表
+     */
+    @NotNull
+    public List<String> getNames() {
+        List<String> result = new ArrayList<String>();
+        for (char[] name : names) {
+            if (name != null) {
+                result.add(new String(name));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public String toString() {
+        return "EnumLookup{type=" + type.getName() + ",names=" + constants.length + ",slots=" + names.length + '}';
+    }
+}
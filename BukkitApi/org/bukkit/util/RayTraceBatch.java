@@ -0,0 +1,408 @@
+package org.bukkit.util;
+
+import java.util.Arrays;
+import org.apache.commons.lang.Validate;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 一组射线及其命中结果的可重用缓冲区, 用于通过
+ * {@link org.bukkit.World#rayTrace(RayTraceBatch, org.bukkit.FluidCollisionMode, boolean, double, java.util.function.Predicate)}
+ * 等方法在一次调用中追踪多条射线.
+ * <p>
+ * 射线的起点、方向和最大距离, 以及命中的位置、方块坐标、面和实体都保存在基本类型数组中,
+ * 调用{@link #clear()}后可以在下一tick重复使用, 不会为每条射线创建对象.
+ * 实现可以在所有射线之间共享对区块和候选实体的查找.
+ * <p>
+ * 本类不是线程安全的. 实现并行追踪时, 每条射线的结果只会由一个线程写入.
+ */
+public final class RayTraceBatch {
+
+    private int size;
+    private double[] origins;
+    private double[] directions;
+    private double[] maxDistances;
+    private boolean parallel;
+
+    private boolean[] hit;
+    private double[] hitPositions;
+    private double[] hitDistances;
+    private int[] hitBlocks;
+    private boolean[] hitBlock;
+    private BlockFace[] hitFaces;
+    private Entity[] hitEntities;
+
+    /**
+     * 创建一个空的射线批次.
+     */
+    public RayTraceBatch() {
+        this(16);
+    }
+
+    /**
+     * 创建一个具有指定初始容量的射线批次.
+     *
+     * @param capacity 初始容量
+     */
+    public RayTraceBatch(int capacity) {
+        Validate.isTrue(capacity >= 0, "Capacity cannot be negative");
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        origins = resize(origins, capacity * 3);
+        directions = resize(directions, capacity * 3);
+        maxDistances = resize(maxDistances, capacity);
+        hit = (hit == null) ? new boolean[capacity] : Arrays.copyOf(hit, capacity);
+        hitPositions = resize(hitPositions, capacity * 3);
+        hitDistances = resize(hitDistances, capacity);
+        hitBlocks = (hitBlocks == null) ? new int[capacity * 3] : Arrays.copyOf(hitBlocks, capacity * 3);
+        hitBlock = (hitBlock == null) ? new boolean[capacity] : Arrays.copyOf(hitBlock, capacity);
+        hitFaces = (hitFaces == null) ? new BlockFace[capacity] : Arrays.copyOf(hitFaces, capacity);
+        hitEntities = (hitEntities == null) ? new Entity[capacity] : Arrays.copyOf(hitEntities, capacity);
+    }
+
+    @NotNull
+    private static double[] resize(@Nullable double[] array, int length) {
+        return (array == null) ? new double[length] : Arrays.copyOf(array, length);
+    }
+
+    /**
+     * 添加一条射线.
+     *
+     * @param originX 起点的x坐标
+     * @param originY 起点的y坐标
+     * @param originZ 起点的z坐标
+     * @param directionX 方向的x分量
+     * @param directionY 方向的y分量
+     * @param directionZ 方向的z分量
+     * @param maxDistance 最大距离
+     * @return 射线在本批次中的索引
+     */
+    public int add(double originX, double originY, double originZ, double directionX, double directionY, double directionZ, double maxDistance) {
+        Validate.isTrue(directionX * directionX + directionY * directionY + directionZ * directionZ > 0, "Direction's magnitude is 0!");
+        Validate.isTrue(maxDistance >= 0, "Max distance cannot be negative");
+
+        if (size == maxDistances.length) {
+            allocate(Math.max(16, size * 2));
+        }
+
+        int index = size++;
+        origins[index * 3] = originX;
+        origins[index * 3 + 1] = originY;
+        origins[index * 3 + 2] = originZ;
+        directions[index * 3] = directionX;
+        directions[index * 3 + 1] = directionY;
+        directions[index * 3 + 2] = directionZ;
+        maxDistances[index] = maxDistance;
+        clearResult(index);
+        return index;
+    }
+
+    /**
+     * 添加一条射线.
+     *
+     * @param origin 起点
+     * @param direction 方向
+     * @param maxDistance 最大距离
+     * @return 射线在本批次中的索引
+     */
+    public int add(@NotNull Vector origin, @NotNull Vector direction, double maxDistance) {
+        Validate.notNull(origin, "Origin cannot be null");
+        Validate.notNull(direction, "Direction cannot be null");
+        origin.checkFinite();
+        direction.checkFinite();
+        return add(origin.getX(), origin.getY(), origin.getZ(), direction.getX(), direction.getY(), direction.getZ(), maxDistance);
+    }
+
+    /**
+     * 移除所有射线和结果, 保留已分配的容量.
+     */
+    public void clear() {
+        Arrays.fill(hitFaces, 0, size, null);
+        Arrays.fill(hitEntities, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * 获取本批次中的射线数.
+     *
+     * @return 射线数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 检查是否允许实现将本批次拆分到多个线程上追踪.
+     *
+     * @return 是否允许并行追踪
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * 设置是否允许实现将本批次拆分到多个线程上, 基于世界快照进行追踪.
+     * <p>
+     * 启用后传入的实体过滤器可能会被并发调用, 因此必须是线程安全的.
+     *
+     * @param parallel 是否允许并行追踪
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    private void checkIndex(int index, int axis) {
+        checkIndex(index);
+        Validate.isTrue(axis >= 0 && axis < 3, "Axis must be 0, 1 or 2");
+    }
+
+    /**
+     * 获取射线起点的坐标.
+     *
+     * @param index 射线索引
+     * @param axis 坐标轴, 0为x, 1为y, 2为z
+     * @return 坐标
+     */
+    public double getOrigin(int index, int axis) {
+        checkIndex(index, axis);
+        return origins[index * 3 + axis];
+    }
+
+    /**
+     * 获取射线方向的分量.
+     *
+     * @param index 射线索引
+     * @param axis 坐标轴, 0为x, 1为y, 2为z
+     * @return 方向分量, 不一定是单位向量
+     */
+    public double getDirection(int index, int axis) {
+        checkIndex(index, axis);
+        return directions[index * 3 + axis];
+    }
+
+    /**
+     * 获取射线的最大距离.
+     *
+     * @param index 射线索引
+     * @return 最大距离
+     */
+    public double getMaxDistance(int index) {
+        checkIndex(index);
+        return maxDistances[index];
+    }
+
+    /**
+     * 计算包含本批次所有射线的边界框, 供实现一次性收集所有射线的候选实体.
+     *
+     * @param raySize 实体边界框的放大量
+     * @return 包含所有射线的边界框, 若批次为空则为null
+     */
+    @Nullable
+    public BoundingBox getBounds(double raySize) {
+        if (size == 0) {
+            return null;
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            double dx = directions[i * 3];
+            double dy = directions[i * 3 + 1];
+            double dz = directions[i * 3 + 2];
+            double scale = maxDistances[i] / Math.sqrt(dx * dx + dy * dy + dz * dz);
+            double ox = origins[i * 3];
+            double oy = origins[i * 3 + 1];
+            double oz = origins[i * 3 + 2];
+            double ex = ox + dx * scale;
+            double ey = oy + dy * scale;
+            double ez = oz + dz * scale;
+
+            minX = Math.min(minX, Math.min(ox, ex));
+            minY = Math.min(minY, Math.min(oy, ey));
+            minZ = Math.min(minZ, Math.min(oz, ez));
+            maxX = Math.max(maxX, Math.max(ox, ex));
+            maxY = Math.max(maxY, Math.max(oy, ey));
+            maxZ = Math.max(maxZ, Math.max(oz, ez));
+        }
+        return new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ).expand(raySize);
+    }
+
+    /**
+     * 检查射线是否命中.
+     *
+     * @param index 射线索引
+     * @return 是否命中
+     */
+    public boolean isHit(int index) {
+        checkIndex(index);
+        return hit[index];
+    }
+
+    /**
+     * 获取命中位置的坐标.
+     *
+     * @param index 射线索引
+     * @param axis 坐标轴, 0为x, 1为y, 2为z
+     * @return 坐标, 未命中时无意义
+     */
+    public double getHitPosition(int index, int axis) {
+        checkIndex(index, axis);
+        return hitPositions[index * 3 + axis];
+    }
+
+    /**
+     * 获取从起点到命中位置的距离.
+     *
+     * @param index 射线索引
+     * @return 距离, 未命中时为{@link Double#NaN}
+     */
+    public double getHitDistance(int index) {
+        checkIndex(index);
+        return hitDistances[index];
+    }
+
+    /**
+     * 检查射线是否命中了方块.
+     *
+     * @param index 射线索引
+     * @return 是否命中方块
+     */
+    public boolean isBlockHit(int index) {
+        checkIndex(index);
+        return hitBlock[index];
+    }
+
+    /**
+     * 获取命中方块的坐标.
+     *
+     * @param index 射线索引
+     * @param axis 坐标轴, 0为x, 1为y, 2为z
+     * @return 方块坐标, 未命中方块时无意义
+     */
+    public int getHitBlock(int index, int axis) {
+        checkIndex(index, axis);
+        return hitBlocks[index * 3 + axis];
+    }
+
+    /**
+     * 获取命中的方块面.
+     *
+     * @param index 射线索引
+     * @return 命中的面, 或null
+     */
+    @Nullable
+    public BlockFace getHitBlockFace(int index) {
+        checkIndex(index);
+        return hitFaces[index];
+    }
+
+    /**
+     * 获取命中的实体.
+     *
+     * @param index 射线索引
+     * @return 命中的实体, 或null
+     */
+    @Nullable
+    public Entity getHitEntity(int index) {
+        checkIndex(index);
+        return hitEntities[index];
+    }
+
+    /**
+     * 将射线的结果转换为{@link RayTraceResult}. 这会创建新对象.
+     *
+     * @param index 射线索引
+     * @param block 命中的方块, 由调用者根据{@link #getHitBlock(int, int)}获取
+     * @return 命中结果, 未命中时为null
+     */
+    @Nullable
+    public RayTraceResult toResult(int index, @Nullable Block block) {
+        if (!isHit(index)) {
+            return null;
+        }
+        Vector position = new Vector(hitPositions[index * 3], hitPositions[index * 3 + 1], hitPositions[index * 3 + 2]);
+        if (hitEntities[index] != null) {
+            return new RayTraceResult(position, hitEntities[index], hitFaces[index]);
+        }
+        return new RayTraceResult(position, block, hitFaces[index]);
+    }
+
+    /**
+     * 清除射线的结果. 供实现使用.
+     *
+     * @param index 射线索引
+     */
+    public void clearResult(int index) {
+        checkIndex(index);
+        hit[index] = false;
+        hitBlock[index] = false;
+        hitDistances[index] = Double.NaN;
+        hitFaces[index] = null;
+        hitEntities[index] = null;
+    }
+
+    /**
+     * 记录射线命中了一个方块. 供实现使用.
+     *
+     * @param index 射线索引
+     * @param x 命中位置的x坐标
+     * @param y 命中位置的y坐标
+     * @param z 命中位置的z坐标
+     * @param distance 从起点到命中位置的距离
+     * @param blockX 方块的x坐标
+     * @param blockY 方块的y坐标
+     * @param blockZ 方块的z坐标
+     * @param face 命中的面
+     */
+    public void setBlockHit(int index, double x, double y, double z, double distance, int blockX, int blockY, int blockZ, @Nullable BlockFace face) {
+        setHit(index, x, y, z, distance, face);
+        hitBlock[index] = true;
+        hitBlocks[index * 3] = blockX;
+        hitBlocks[index * 3 + 1] = blockY;
+        hitBlocks[index * 3 + 2] = blockZ;
+        hitEntities[index] = null;
+    }
+
+    /**
+     * 记录射线命中了一个实体. 供实现使用.
+     *
+     * @param index 射线索引
+     * @param x 命中位置的x坐标
+     * @param y 命中位置的y坐标
+     * @param z 命中位置的z坐标
+     * @param distance 从起点到命中位置的距离
+     * @param entity 命中的实体
+     * @param face 命中的实体边界框的面
+     */
+    public void setEntityHit(int index, double x, double y, double z, double distance, @NotNull Entity entity, @Nullable BlockFace face) {
+        Validate.notNull(entity, "Entity cannot be null");
+        setHit(index, x, y, z, distance, face);
+        hitBlock[index] = false;
+        hitEntities[index] = entity;
+    }
+
+    private void setHit(int index, double x, double y, double z, double distance, @Nullable BlockFace face) {
+        checkIndex(index);
+        hit[index] = true;
+        hitPositions[index * 3] = x;
+        hitPositions[index * 3 + 1] = y;
+        hitPositions[index * 3 + 2] = z;
+        hitDistances[index] = distance;
+        hitFaces[index] = face;
+    }
+}
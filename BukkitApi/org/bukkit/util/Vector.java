@@ -282,6 +282,22 @@ public class Vector implements Cloneable, ConfigurationSerializable {
         return new Vector(x, y, z);
     }
 
+    /**
+     * 将本向量和另一个向量间的连线的中点写入给定的结果向量, 不创建新的对象.
+     * 本向量和另一个向量都不会被修改(除非结果向量就是其中之一).
+     *
+     * @param other 给定向量
+     * @param result 用于存放结果的向量
+     * @return 结果向量
+     */
+    @NotNull
+    public Vector getMidpoint(@NotNull Vector other, @NotNull Vector result) {
+        double x = (this.x + other.x) / 2;
+        double y = (this.y + other.y) / 2;
+        double z = (this.z + other.z) / 2;
+        return result.setComponents(x, y, z);
+    }
+
     /**
      * 向量的数乘,将向量在所有轴上扩展某个倍数.
      * <p>
@@ -406,6 +422,22 @@ public class Vector implements Cloneable, ConfigurationSerializable {
         return new Vector(x, y, z);
     }
 
+    /**
+     * 将本向量与另一个向量的叉积写入给定的结果向量, 不创建新的对象.
+     * 结果向量可以是本向量或另一个向量.
+     *
+     * @param o 另一个向量
+     * @param result 用于存放结果的向量
+     * @return 结果向量
+     */
+    @NotNull
+    public Vector getCrossProduct(@NotNull Vector o, @NotNull Vector result) {
+        double x = this.y * o.z - o.y * this.z;
+        double y = this.z * o.x - o.z * this.x;
+        double z = this.x * o.y - o.x * this.y;
+        return result.setComponents(x, y, z);
+    }
+
     /**
      * 将本向量转化为单位向量(模为1的向量).
      * <p>
@@ -585,7 +617,15 @@ public class Vector implements Cloneable, ConfigurationSerializable {
     public Vector rotateAroundAxis(@NotNull Vector axis, double angle) throws IllegalArgumentException {
         Preconditions.checkArgument(axis != null, "The provided axis vector was null");
 
-        return rotateAroundNonUnitAxis(axis.isNormalized() ? axis : axis.clone().normalize(), angle);
+        double x2 = axis.getX(), y2 = axis.getY(), z2 = axis.getZ();
+        if (!axis.isNormalized()) {
+            // Normalize the components in place instead of cloning the axis
+            double length = Math.sqrt(x2 * x2 + y2 * y2 + z2 * z2);
+            x2 /= length;
+            y2 /= length;
+            z2 /= length;
+        }
+        return rotateAroundNonUnitAxis(x2, y2, z2, angle);
     }
 
     /**
@@ -612,12 +652,16 @@ public class Vector implements Cloneable, ConfigurationSerializable {
     public Vector rotateAroundNonUnitAxis(@NotNull Vector axis, double angle) throws IllegalArgumentException {
         Preconditions.checkArgument(axis != null, "The provided axis vector was null");
 
+        return rotateAroundNonUnitAxis(axis.getX(), axis.getY(), axis.getZ(), angle);
+    }
+
+    @NotNull
+    private Vector rotateAroundNonUnitAxis(double x2, double y2, double z2, double angle) {
         double x = getX(), y = getY(), z = getZ();
-        double x2 = axis.getX(), y2 = axis.getY(), z2 = axis.getZ();
 
         double cosTheta = Math.cos(angle);
         double sinTheta = Math.sin(angle);
-        double dotProduct = this.dot(axis);
+        double dotProduct = x * x2 + y * y2 + z * z2;
 
         double xPrime = x2 * dotProduct * (1d - cosTheta)
                 + x * cosTheta
@@ -632,6 +676,22 @@ public class Vector implements Cloneable, ConfigurationSerializable {
         return setX(xPrime).setY(yPrime).setZ(zPrime);
     }
 
+    /**
+     * 同时设置本向量的三个坐标.
+     *
+     * @param x 新的X坐标
+     * @param y 新的Y坐标
+     * @param z 新的Z坐标
+     * @return 返回自身作为结果向量
+     */
+    @NotNull
+    public Vector setComponents(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
     /**
      * 获取X坐标.
      * <p>
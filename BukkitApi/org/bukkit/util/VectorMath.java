@@ -0,0 +1,277 @@
+package org.bukkit.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 基于double数组的向量运算, 不创建任何对象.
+ * <p>
+ * 每个向量占用数组中从给定偏移量开始的三个连续元素(x, y, z),
+ * 因此大量向量可以紧凑地存放在同一个数组中, 例如粒子系统的位置和速度:
+ * <pre>
+ * double[] positions = new double[particles * 3];
+ * double[] velocities = new double[particles * 3];
+ * for (int i = 0; i &lt; positions.length; i += 3) {
+ *     VectorMath.addScaled(positions, i, velocities, i, deltaTime, positions, i);
+ * }
+ * </pre>
+ * 结果数组可以与任意一个输入数组相同, 且偏移量可以重叠.
+ * 本类的方法不检查数组下标, 越界时会抛出{@link ArrayIndexOutOfBoundsException}.
+ */
+public final class VectorMath {
+
+    private VectorMath() {}
+
+    /**
+     * 设置向量的三个坐标.
+     *
+     * @param out 结果数组
+     * @param o 结果偏移量
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     */
+    public static void set(@NotNull double[] out, int o, double x, double y, double z) {
+        out[o] = x;
+        out[o + 1] = y;
+        out[o + 2] = z;
+    }
+
+    /**
+     * 将{@link Vector}的坐标写入数组.
+     *
+     * @param vector 向量
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void load(@NotNull Vector vector, @NotNull double[] out, int o) {
+        out[o] = vector.getX();
+        out[o + 1] = vector.getY();
+        out[o + 2] = vector.getZ();
+    }
+
+    /**
+     * 将数组中的向量写入{@link Vector}.
+     *
+     * @param a 数组
+     * @param i 偏移量
+     * @param result 用于存放结果的向量
+     * @return 结果向量
+     */
+    @NotNull
+    public static Vector store(@NotNull double[] a, int i, @NotNull Vector result) {
+        return result.setComponents(a[i], a[i + 1], a[i + 2]);
+    }
+
+    /**
+     * 计算a + b.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param b 数组b
+     * @param j b的偏移量
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void add(@NotNull double[] a, int i, @NotNull double[] b, int j, @NotNull double[] out, int o) {
+        double x = a[i] + b[j];
+        double y = a[i + 1] + b[j + 1];
+        double z = a[i + 2] + b[j + 2];
+        set(out, o, x, y, z);
+    }
+
+    /**
+     * 计算a - b.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param b 数组b
+     * @param j b的偏移量
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void subtract(@NotNull double[] a, int i, @NotNull double[] b, int j, @NotNull double[] out, int o) {
+        double x = a[i] - b[j];
+        double y = a[i + 1] - b[j + 1];
+        double z = a[i + 2] - b[j + 2];
+        set(out, o, x, y, z);
+    }
+
+    /**
+     * 计算a * m.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param m 因数
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void multiply(@NotNull double[] a, int i, double m, @NotNull double[] out, int o) {
+        set(out, o, a[i] * m, a[i + 1] * m, a[i + 2] * m);
+    }
+
+    /**
+     * 计算a + b * m, 常用于按速度更新位置.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param b 数组b
+     * @param j b的偏移量
+     * @param m b的因数
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void addScaled(@NotNull double[] a, int i, @NotNull double[] b, int j, double m, @NotNull double[] out, int o) {
+        double x = a[i] + b[j] * m;
+        double y = a[i + 1] + b[j + 1] * m;
+        double z = a[i + 2] + b[j + 2] * m;
+        set(out, o, x, y, z);
+    }
+
+    /**
+     * 计算a和b连线的中点.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param b 数组b
+     * @param j b的偏移量
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void midpoint(@NotNull double[] a, int i, @NotNull double[] b, int j, @NotNull double[] out, int o) {
+        double x = (a[i] + b[j]) / 2;
+        double y = (a[i + 1] + b[j + 1]) / 2;
+        double z = (a[i + 2] + b[j + 2]) / 2;
+        set(out, o, x, y, z);
+    }
+
+    /**
+     * 计算a和b的点积.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param b 数组b
+     * @param j b的偏移量
+     * @return 点积
+     */
+    public static double dot(@NotNull double[] a, int i, @NotNull double[] b, int j) {
+        return a[i] * b[j] + a[i + 1] * b[j + 1] + a[i + 2] * b[j + 2];
+    }
+
+    /**
+     * 计算a和b的叉积.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param b 数组b
+     * @param j b的偏移量
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void cross(@NotNull double[] a, int i, @NotNull double[] b, int j, @NotNull double[] out, int o) {
+        double x = a[i + 1] * b[j + 2] - b[j + 1] * a[i + 2];
+        double y = a[i + 2] * b[j] - b[j + 2] * a[i];
+        double z = a[i] * b[j + 1] - b[j] * a[i + 1];
+        set(out, o, x, y, z);
+    }
+
+    /**
+     * 计算向量的模的平方.
+     *
+     * @param a 数组
+     * @param i 偏移量
+     * @return 模的平方
+     */
+    public static double lengthSquared(@NotNull double[] a, int i) {
+        return dot(a, i, a, i);
+    }
+
+    /**
+     * 计算向量的模.
+     *
+     * @param a 数组
+     * @param i 偏移量
+     * @return 模
+     */
+    public static double length(@NotNull double[] a, int i) {
+        return Math.sqrt(lengthSquared(a, i));
+    }
+
+    /**
+     * 计算a和b之间距离的平方.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param b 数组b
+     * @param j b的偏移量
+     * @return 距离的平方
+     */
+    public static double distanceSquared(@NotNull double[] a, int i, @NotNull double[] b, int j) {
+        double dx = a[i] - b[j];
+        double dy = a[i + 1] - b[j + 1];
+        double dz = a[i + 2] - b[j + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * 计算a的单位向量. 零向量的结果为NaN, 与{@link Vector#normalize()}一致.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void normalize(@NotNull double[] a, int i, @NotNull double[] out, int o) {
+        multiply(a, i, 1.0D / length(a, i), out, o);
+    }
+
+    /**
+     * 将a绕经过原点的给定轴旋转, 遵循右手定则.
+     * 与{@link Vector#rotateAroundAxis(Vector, double)}相同, 轴不需要是单位向量.
+     *
+     * @param a 数组a
+     * @param i a的偏移量
+     * @param axis 轴所在的数组
+     * @param j 轴的偏移量
+     * @param angle 旋转角/弧度
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void rotateAroundAxis(@NotNull double[] a, int i, @NotNull double[] axis, int j, double angle, @NotNull double[] out, int o) {
+        double x = a[i], y = a[i + 1], z = a[i + 2];
+        double x2 = axis[j], y2 = axis[j + 1], z2 = axis[j + 2];
+        double length = Math.sqrt(x2 * x2 + y2 * y2 + z2 * z2);
+        x2 /= length;
+        y2 /= length;
+        z2 /= length;
+
+        double cosTheta = Math.cos(angle);
+        double sinTheta = Math.sin(angle);
+        double dotProduct = x * x2 + y * y2 + z * z2;
+
+        double xPrime = x2 * dotProduct * (1d - cosTheta)
+                + x * cosTheta
+                + (-z2 * y + y2 * z) * sinTheta;
+        double yPrime = y2 * dotProduct * (1d - cosTheta)
+                + y * cosTheta
+                + (z2 * x - x2 * z) * sinTheta;
+        double zPrime = z2 * dotProduct * (1d - cosTheta)
+                + z * cosTheta
+                + (-y2 * x + x2 * y) * sinTheta;
+        set(out, o, xPrime, yPrime, zPrime);
+    }
+
+    /**
+     * 计算给定偏航角和俯仰角所指方向的单位向量, 与{@link org.bukkit.Location#getDirection()}一致.
+     *
+     * @param yaw 偏航角/角度
+     * @param pitch 俯仰角/角度
+     * @param out 结果数组
+     * @param o 结果偏移量
+     */
+    public static void direction(float yaw, float pitch, @NotNull double[] out, int o) {
+        double rotX = Math.toRadians(yaw);
+        double rotY = Math.toRadians(pitch);
+        double xz = Math.cos(rotY);
+        set(out, o, -xz * Math.sin(rotX), -Math.sin(rotY), xz * Math.cos(rotX));
+    }
+}
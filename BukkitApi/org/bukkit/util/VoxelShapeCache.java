@@ -0,0 +1,116 @@
+package org.bukkit.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.apache.commons.lang.Validate;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 按{@link BlockData}缓存方块形状的{@link BitSetVoxelShape}.
+ * <p>
+ * 同一种方块状态(例如朝东的下半楼梯)的碰撞箱总是相同的, 所以只需要转换一次,
+ * 之后的{@link #getCollisionShape(Block)}调用会直接返回缓存的不可变形状.
+ * 形状使用方块内的相对坐标, 与{@link Block#getCollisionShape()}一致.
+ * <p>
+ * 注意少数方块(例如竹子)的形状会随位置偏移, 这类方块不应使用本缓存.
+ * 本类是线程安全的.
+ */
+public final class VoxelShapeCache {
+    private final Map<BlockData, BitSetVoxelShape> shapes = new ConcurrentHashMap<BlockData, BitSetVoxelShape>();
+
+    /**
+     * 获取方块的碰撞箱, 若其方块状态尚未缓存, 则从{@link Block#getCollisionShape()}转换并缓存.
+     *
+     * @param block 方块
+     * @return 碰撞箱
+     */
+    @NotNull
+    public BitSetVoxelShape getCollisionShape(@NotNull Block block) {
+        Validate.notNull(block, "Block cannot be null");
+        BlockData data = block.getBlockData();
+        BitSetVoxelShape shape = shapes.get(data);
+        if (shape == null) {
+            shape = BitSetVoxelShape.of(block.getCollisionShape());
+            BitSetVoxelShape previous = shapes.putIfAbsent(data.clone(), shape);
+            if (previous != null) {
+                shape = previous;
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * 获取方块状态的形状, 若尚未缓存则使用给定的函数计算并缓存.
+     *
+     * @param data 方块状态
+     * @param loader 计算形状的函数
+     * @return 形状
+     */
+    @NotNull
+    public BitSetVoxelShape get(@NotNull BlockData data, @NotNull Function<? super BlockData, ? extends VoxelShape> loader) {
+        Validate.notNull(data, "Data cannot be null");
+        Validate.notNull(loader, "Loader cannot be null");
+        BitSetVoxelShape shape = shapes.get(data);
+        if (shape == null) {
+            shape = BitSetVoxelShape.of(loader.apply(data));
+            BitSetVoxelShape previous = shapes.putIfAbsent(data.clone(), shape);
+            if (previous != null) {
+                shape = previous;
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * 获取已缓存的方块状态的形状.
+     *
+     * @param data 方块状态
+     * @return 形状, 若尚未缓存则为null
+     */
+    @Nullable
+    public BitSetVoxelShape getIfCached(@NotNull BlockData data) {
+        Validate.notNull(data, "Data cannot be null");
+        return shapes.get(data);
+    }
+
+    /**
+     * 缓存方块状态的形状, 覆盖已缓存的形状.
+     *
+     * @param data 方块状态
+     * @param shape 形状
+     */
+    public void put(@NotNull BlockData data, @NotNull VoxelShape shape) {
+        Validate.notNull(data, "Data cannot be null");
+        shapes.put(data.clone(), BitSetVoxelShape.of(shape));
+    }
+
+    /**
+     * 移除方块状态的缓存.
+     *
+     * @param data 方块状态
+     */
+    public void invalidate(@NotNull BlockData data) {
+        Validate.notNull(data, "Data cannot be null");
+        shapes.remove(data);
+    }
+
+    /**
+     * 清空缓存.
+     */
+    public void clear() {
+        shapes.clear();
+    }
+
+    /**
+     * 获取已缓存的方块状态数量.
+     *
+     * @return 已缓存的数量
+     */
+    public int size() {
+        return shapes.size();
+    }
+}
@@ -1,4 +1,8 @@
 package org.bukkit.util.noise;
+
+import java.util.Arrays;
+import org.apache.commons.lang.Validate;
+import org.jetbrains.annotations.NotNull;
 /**
  * 所有噪音产生器的基类。
  * <p>
@@ -178,4 +182,157 @@ public abstract class NoiseGenerator {
         }
         return result;
     }
+    /**
+     * 在规则的三维网格上批量计算噪音, 结果写入给定的数组.
+     * <p>
+     * 第(i, j, k)个采样点的坐标为(x + i * stepX, y + j * stepY, z + k * stepZ),
+     * 其结果存放在buffer[(i * sizeY + j) * sizeZ + k], 与逐点调用{@link #noise(double, double, double)}的结果完全相同.
+     *
+     * @param buffer 用于存放结果的数组, 长度至少为sizeX * sizeY * sizeZ
+     * @param x 网格起点的X坐标
+     * @param y 网格起点的Y坐标
+     * @param z 网格起点的Z坐标
+     * @param stepX X方向的采样间隔
+     * @param stepY Y方向的采样间隔
+     * @param stepZ Z方向的采样间隔
+     * @param sizeX X方向的采样数
+     * @param sizeY Y方向的采样数
+     * @param sizeZ Z方向的采样数
+     */
+    public void noise(@NotNull double[] buffer, double x, double y, double z, double stepX, double stepY, double stepZ, int sizeX, int sizeY, int sizeZ) {
+        noise(buffer, axis(x, stepX, sizeX), axis(y, stepY, sizeY), axis(z, stepZ, sizeZ));
+    }
+    /**
+     * 在由三个坐标数组张成的网格上批量计算噪音, 结果写入给定的数组.
+     * <p>
+     * 第(i, j, k)个采样点的坐标为(xs[i], ys[j], zs[k]), 其结果存放在
+     * buffer[(i * ys.length + j) * zs.length + k].
+     *
+     * @param buffer 用于存放结果的数组, 长度至少为xs.length * ys.length * zs.length
+     * @param xs 各采样点的X坐标
+     * @param ys 各采样点的Y坐标
+     * @param zs 各采样点的Z坐标
+     */
+    public void noise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs) {
+        checkBuffer(buffer, xs, ys, zs);
+        Arrays.fill(buffer, 0, xs.length * ys.length * zs.length, 0.0D);
+        addNoise(buffer, xs, ys, zs, 1.0D);
+    }
+    /**
+     * 在由三个坐标数组张成的网格上批量计算噪音, 并将噪音乘以amplitude后累加到给定的数组上.
+     * 多个倍频可以依次累加到同一个数组.
+     *
+     * @param buffer 用于累加结果的数组, 长度至少为xs.length * ys.length * zs.length
+     * @param xs 各采样点的X坐标
+     * @param ys 各采样点的Y坐标
+     * @param zs 各采样点的Z坐标
+     * @param amplitude 噪音的倍数
+     * @see #noise(double[], double[], double[], double[])
+     */
+    public void addNoise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs, double amplitude) {
+        checkBuffer(buffer, xs, ys, zs);
+        addNoisePointwise(buffer, xs, ys, zs, amplitude);
+    }
+    /**
+     * 在规则的二维网格上批量计算噪音, 结果写入给定的数组.
+     * <p>
+     * 第(i, j)个采样点的坐标为(x + i * stepX, y + j * stepY),
+     * 其结果存放在buffer[i * sizeY + j], 与逐点调用{@link #noise(double, double)}的结果完全相同.
+     *
+     * @param buffer 用于存放结果的数组, 长度至少为sizeX * sizeY
+     * @param x 网格起点的X坐标
+     * @param y 网格起点的Y坐标
+     * @param stepX X方向的采样间隔
+     * @param stepY Y方向的采样间隔
+     * @param sizeX X方向的采样数
+     * @param sizeY Y方向的采样数
+     */
+    public void noise(@NotNull double[] buffer, double x, double y, double stepX, double stepY, int sizeX, int sizeY) {
+        noise(buffer, axis(x, stepX, sizeX), axis(y, stepY, sizeY));
+    }
+    /**
+     * 在由两个坐标数组张成的网格上批量计算噪音, 结果写入给定的数组.
+     * <p>
+     * 第(i, j)个采样点的坐标为(xs[i], ys[j]), 其结果存放在buffer[i * ys.length + j].
+     *
+     * @param buffer 用于存放结果的数组, 长度至少为xs.length * ys.length
+     * @param xs 各采样点的X坐标
+     * @param ys 各采样点的Y坐标
+     */
+    public void noise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys) {
+        checkBuffer(buffer, xs, ys, ZERO);
+        Arrays.fill(buffer, 0, xs.length * ys.length, 0.0D);
+        addNoise(buffer, xs, ys, 1.0D);
+    }
+    /**
+     * 在由两个坐标数组张成的网格上批量计算噪音, 并将噪音乘以amplitude后累加到给定的数组上.
+     *
+     * @param buffer 用于累加结果的数组, 长度至少为xs.length * ys.length
+     * @param xs 各采样点的X坐标
+     * @param ys 各采样点的Y坐标
+     * @param amplitude 噪音的倍数
+     * @see #noise(double[], double[], double[])
+     */
+    public void addNoise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, double amplitude) {
+        checkBuffer(buffer, xs, ys, ZERO);
+        addNoisePointwise(buffer, xs, ys, amplitude);
+    }
+    /**
+     * 逐点调用{@link #noise(double, double, double)}实现的批量计算, 供没有专门批量实现的子类使用.
+     *
+     * @param buffer 用于累加结果的数组
+     * @param xs 各采样点的X坐标
+     * @param ys 各采样点的Y坐标
+     * @param zs 各采样点的Z坐标
+     * @param amplitude 噪音的倍数
+     */
+    protected final void addNoisePointwise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs, double amplitude) {
+        int index = 0;
+        for (double x : xs) {
+            for (double y : ys) {
+                for (double z : zs) {
+                    buffer[index++] += noise(x, y, z) * amplitude;
+                }
+            }
+        }
+    }
+    /**
+     * 逐点调用{@link #noise(double, double)}实现的批量计算, 供没有专门批量实现的子类使用.
+     *
+     * @param buffer 用于累加结果的数组
+     * @param xs 各采样点的X坐标
+     * @param ys 各采样点的Y坐标
+     * @param amplitude 噪音的倍数
+     */
+    protected final void addNoisePointwise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, double amplitude) {
+        int index = 0;
+        for (double x : xs) {
+            for (double y : ys) {
+                buffer[index++] += noise(x, y) * amplitude;
+            }
+        }
+    }
+
+    static final double[] ZERO = {0.0D};
+
+    /**
+     * @return 从origin开始, 以step为间隔的size个坐标
+     */
+    @NotNull
+    static double[] axis(double origin, double step, int size) {
+        Validate.isTrue(size >= 0, "Size cannot be negative");
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = origin + i * step;
+        }
+        return result;
+    }
+
+    static void checkBuffer(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs) {
+        Validate.notNull(buffer, "Buffer cannot be null");
+        Validate.notNull(xs, "X coordinates cannot be null");
+        Validate.notNull(ys, "Y coordinates cannot be null");
+        Validate.notNull(zs, "Z coordinates cannot be null");
+        Validate.isTrue(buffer.length >= (long) xs.length * ys.length * zs.length, "Buffer is too small for the grid");
+    }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package org.bukkit.util.noise;
 
+import java.util.Arrays;
+import org.apache.commons.lang.Validate;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -13,6 +15,8 @@ public abstract class OctaveGenerator {
     protected double xScale = 1;
     protected double yScale = 1;
     protected double zScale = 1;
+    // Profile of the most recent bulk call, reused while the parameters stay the same
+    private OctaveProfile lastProfile;
 
     protected OctaveGenerator(@NotNull NoiseGenerator[] octaves) {
         this.octaves = octaves;
@@ -214,4 +218,182 @@ public abstract class OctaveGenerator {
         }
         return result;
     }
+    /**
+     * 在规则的二维网格上批量产生噪音, 结果写入给定的数组.
+     * <p>
+     * 第(i, j)个采样点的坐标为(x + i * stepX, y + j * stepY), 其结果存放在buffer[i * sizeY + j],
+     * 与逐点调用{@link #noise(double, double, double, double, boolean)}的结果完全相同.
+     *
+     * @param buffer 用于存放结果的数组, 长度至少为sizeX * sizeY
+     * @param x 网格起点的X坐标
+     * @param y 网格起点的Y坐标
+     * @param stepX X方向的采样间隔
+     * @param stepY Y方向的采样间隔
+     * @param sizeX X方向的采样数
+     * @param sizeY Y方向的采样数
+     * @param frequency 每一个倍频改变多少频率
+     * @param amplitude 每一个倍频改变多少振幅
+     * @param normalized 如果为true,规范这个值为[-1, 1]
+     */
+    public void noise(@NotNull double[] buffer, double x, double y, double stepX, double stepY, int sizeX, int sizeY, double frequency, double amplitude, boolean normalized) {
+        noise(buffer, NoiseGenerator.axis(x, stepX, sizeX), NoiseGenerator.axis(y, stepY, sizeY), NoiseGenerator.ZERO, frequency, amplitude, normalized);
+    }
+    /**
+     * 在规则的三维网格上批量产生噪音, 结果写入给定的数组.
+     * <p>
+     * 第(i, j, k)个采样点的坐标为(x + i * stepX, y + j * stepY, z + k * stepZ),
+     * 其结果存放在buffer[(i * sizeY + j) * sizeZ + k],
+     * 与逐点调用{@link #noise(double, double, double, double, double, boolean)}的结果完全相同.
+     *
+     * @param buffer 用于存放结果的数组, 长度至少为sizeX * sizeY * sizeZ
+     * @param x 网格起点的X坐标
+     * @param y 网格起点的Y坐标
+     * @param z 网格起点的Z坐标
+     * @param stepX X方向的采样间隔
+     * @param stepY Y方向的采样间隔
+     * @param stepZ Z方向的采样间隔
+     * @param sizeX X方向的采样数
+     * @param sizeY Y方向的采样数
+     * @param sizeZ Z方向的采样数
+     * @param frequency 每一个倍频改变多少频率
+     * @param amplitude 每一个倍频改变多少振幅
+     * @param normalized 如果为true,规范这个值为[-1, 1]
+     */
+    public void noise(@NotNull double[] buffer, double x, double y, double z, double stepX, double stepY, double stepZ, int sizeX, int sizeY, int sizeZ, double frequency, double amplitude, boolean normalized) {
+        noise(buffer, NoiseGenerator.axis(x, stepX, sizeX), NoiseGenerator.axis(y, stepY, sizeY), NoiseGenerator.axis(z, stepZ, sizeZ), frequency, amplitude, normalized);
+    }
+    /**
+     * 在由三个坐标数组张成的网格上批量产生噪音, 结果写入给定的数组.
+     * <p>
+     * 第(i, j, k)个采样点的坐标为(xs[i], ys[j], zs[k]), 其结果存放在
+     * buffer[(i * ys.length + j) * zs.length + k].
+     *
+     * @param buffer 用于存放结果的数组, 长度至少为xs.length * ys.length * zs.length
+     * @param xs 各采样点的X坐标
+     * @param ys 各采样点的Y坐标
+     * @param zs 各采样点的Z坐标
+     * @param frequency 每一个倍频改变多少频率
+     * @param amplitude 每一个倍频改变多少振幅
+     * @param normalized 如果为true,规范这个值为[-1, 1]
+     */
+    public void noise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs, double frequency, double amplitude, boolean normalized) {
+        OctaveProfile profile = lastProfile;
+        if (profile == null || !profile.matches(octaves.length, frequency, amplitude, normalized)) {
+            profile = createProfile(frequency, amplitude, normalized);
+            lastProfile = profile;
+        }
+        noise(buffer, xs, ys, zs, profile);
+    }
+    /**
+     * 创建与这个生成器的倍频数相符的倍频参数表.
+     *
+     * @param frequency 每一个倍频改变多少频率
+     * @param amplitude 每一个倍频改变多少振幅
+     * @param normalized 如果为true,规范噪音结果为[-1, 1]
+     * @return 倍频参数表
+     */
+    @NotNull
+    public OctaveProfile createProfile(double frequency, double amplitude, boolean normalized) {
+        return new OctaveProfile(octaves.length, frequency, amplitude, normalized);
+    }
+    /**
+     * 使用倍频参数表产生一个一维坐标的噪音.
+     *
+     * @param x X坐标
+     * @param profile 倍频参数表
+     * @return 噪音结果
+     * @see #noise(double, double, double, boolean)
+     */
+    public double noise(double x, @NotNull OctaveProfile profile) {
+        return noise(x, 0, 0, profile);
+    }
+    /**
+     * 使用倍频参数表产生一个二维坐标的噪音.
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @param profile 倍频参数表
+     * @return 噪音结果
+     * @see #noise(double, double, double, double, boolean)
+     */
+    public double noise(double x, double y, @NotNull OctaveProfile profile) {
+        return noise(x, y, 0, profile);
+    }
+    /**
+     * 使用倍频参数表产生一个三维坐标的噪音.
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @param profile 倍频参数表
+     * @return 噪音结果
+     * @see #noise(double, double, double, double, double, boolean)
+     */
+    public double noise(double x, double y, double z, @NotNull OctaveProfile profile) {
+        checkProfile(profile);
+        double[] scales = profile.getScales();
+        double[] amplitudes = profile.getAmplitudes();
+        double result = 0;
+        x *= xScale;
+        y *= yScale;
+        z *= zScale;
+        for (int i = 0; i < octaves.length; i++) {
+            double freq = scales[i];
+            result += octaves[i].noise(x * freq, y * freq, z * freq) * amplitudes[i];
+        }
+        return profile.normalize(result);
+    }
+    /**
+     * 使用倍频参数表在由三个坐标数组张成的网格上批量产生噪音, 结果写入给定的数组.
+     *
+     * @param buffer 用于存放结果的数组, 长度至少为xs.length * ys.length * zs.length
+     * @param xs 各采样点的X坐标
+     * @param ys 各采样点的Y坐标
+     * @param zs 各采样点的Z坐标
+     * @param profile 倍频参数表
+     * @see #noise(double[], double[], double[], double[], double, double, boolean)
+     */
+    public void noise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs, @NotNull OctaveProfile profile) {
+        checkProfile(profile);
+        NoiseGenerator.checkBuffer(buffer, xs, ys, zs);
+        int size = xs.length * ys.length * zs.length;
+        Arrays.fill(buffer, 0, size, 0.0D);
+        double[] scaledX = scale(xs, xScale, new double[xs.length]);
+        double[] scaledY = scale(ys, yScale, new double[ys.length]);
+        double[] scaledZ = scale(zs, zScale, new double[zs.length]);
+        double[] octaveX = new double[xs.length];
+        double[] octaveY = new double[ys.length];
+        double[] octaveZ = new double[zs.length];
+
+        double[] scales = profile.getScales();
+        double[] amplitudes = profile.getAmplitudes();
+        for (int i = 0; i < octaves.length; i++) {
+            double freq = scales[i];
+            octaves[i].addNoise(buffer, scale(scaledX, freq, octaveX), scale(scaledY, freq, octaveY), scale(scaledZ, freq, octaveZ), amplitudes[i]);
+        }
+        if (profile.isNormalized()) {
+            double max = profile.getAmplitudeSum();
+            for (int i = 0; i < size; i++) {
+                buffer[i] /= max;
+            }
+        }
+    }
+
+    /**
+     * 检查倍频参数表的倍频数是否与这个生成器相符.
+     *
+     * @param profile 倍频参数表
+     */
+    protected void checkProfile(@NotNull OctaveProfile profile) {
+        Validate.notNull(profile, "Profile cannot be null");
+        Validate.isTrue(profile.getOctaves() == octaves.length, "Profile has " + profile.getOctaves() + " octaves, generator has " + octaves.length);
+    }
+
+    @NotNull
+    static double[] scale(@NotNull double[] values, double factor, @NotNull double[] result) {
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] * factor;
+        }
+        return result;
+    }
 }
@@ -0,0 +1,183 @@
+package org.bukkit.util.noise;
+
+import java.util.Arrays;
+import org.apache.commons.lang.Validate;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 不可变的倍频参数表, 预先计算了{@link OctaveGenerator}每个倍频的频率和振幅.
+ * <p>
+ * 地形生成器通常以相同的(倍频数, 频率, 振幅)组合调用噪音数百万次,
+ * 创建一次参数表并传给{@link OctaveGenerator#noise(double, double, double, OctaveProfile)}等方法,
+ * 就不必在每次调用时重新计算每个倍频的系数. 使用参数表得到的结果与对应的普通方法完全相同.
+ * <pre>
+ * OctaveProfile profile = generator.createProfile(2.0, 0.5, true);
+ * double height = generator.noise(x, z, profile);
+ * </pre>
+ */
+public final class OctaveProfile {
+    private final double frequency;
+    private final double amplitude;
+    private final boolean normalized;
+    private final double[] scales;
+    private final double[] amplitudes;
+    private final double amplitudeSum;
+
+    /**
+     * 创建一个倍频参数表.
+     *
+     * @param octaves 倍频数
+     * @param frequency 每一个倍频改变多少频率
+     * @param amplitude 每一个倍频改变多少振幅
+     * @param normalized 如果为true,规范噪音结果为[-1, 1]
+     */
+    public OctaveProfile(int octaves, double frequency, double amplitude, boolean normalized) {
+        Validate.isTrue(octaves >= 0, "Octaves cannot be negative");
+        this.frequency = frequency;
+        this.amplitude = amplitude;
+        this.normalized = normalized;
+        this.scales = new double[octaves];
+        this.amplitudes = new double[octaves];
+
+        // Accumulate exactly like the per-call loops so results stay bit-for-bit identical
+        double amp = 1;
+        double freq = 1;
+        double max = 0;
+        for (int i = 0; i < octaves; i++) {
+            scales[i] = freq;
+            amplitudes[i] = amp;
+            max += amp;
+            freq *= frequency;
+            amp *= amplitude;
+        }
+        this.amplitudeSum = max;
+    }
+
+    /**
+     * 获取倍频数.
+     *
+     * @return 倍频数
+     */
+    public int getOctaves() {
+        return scales.length;
+    }
+
+    /**
+     * 获取每一个倍频改变多少频率.
+     *
+     * @return 频率的倍数
+     */
+    public double getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * 获取每一个倍频改变多少振幅.
+     *
+     * @return 振幅的倍数
+     */
+    public double getAmplitude() {
+        return amplitude;
+    }
+
+    /**
+     * 获取噪音结果是否被规范为[-1, 1].
+     *
+     * @return 是否规范
+     */
+    public boolean isNormalized() {
+        return normalized;
+    }
+
+    /**
+     * 获取第octave个倍频的坐标倍数.
+     *
+     * @param octave 倍频的下标
+     * @return 坐标倍数
+     */
+    public double getScale(int octave) {
+        return scales[octave];
+    }
+
+    /**
+     * 获取第octave个倍频的振幅.
+     *
+     * @param octave 倍频的下标
+     * @return 振幅
+     */
+    public double getAmplitude(int octave) {
+        return amplitudes[octave];
+    }
+
+    /**
+     * 获取所有倍频的振幅之和, 规范时噪音结果会除以这个值.
+     *
+     * @return 振幅之和
+     */
+    public double getAmplitudeSum() {
+        return amplitudeSum;
+    }
+
+    /**
+     * 检查这个参数表是否由给定的参数创建.
+     *
+     * @param octaves 倍频数
+     * @param frequency 每一个倍频改变多少频率
+     * @param amplitude 每一个倍频改变多少振幅
+     * @param normalized 是否规范
+     * @return 是否匹配
+     */
+    public boolean matches(int octaves, double frequency, double amplitude, boolean normalized) {
+        return scales.length == octaves
+                && Double.compare(this.frequency, frequency) == 0
+                && Double.compare(this.amplitude, amplitude) == 0
+                && this.normalized == normalized;
+    }
+
+    /**
+     * 规范噪音结果, 若这个参数表不要求规范则原样返回.
+     *
+     * @param result 所有倍频的噪音之和
+     * @return 规范后的结果
+     */
+    double normalize(double result) {
+        return normalized ? result / amplitudeSum : result;
+    }
+
+    @NotNull
+    double[] getScales() {
+        return scales;
+    }
+
+    @NotNull
+    double[] getAmplitudes() {
+        return amplitudes;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof OctaveProfile)) {
+            return false;
+        }
+        OctaveProfile other = (OctaveProfile) obj;
+        return other.matches(scales.length, frequency, amplitude, normalized);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = scales.length;
+        result = 31 * result + Double.hashCode(frequency);
+        result = 31 * result + Double.hashCode(amplitude);
+        result = 31 * result + (normalized ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "OctaveProfile{octaves=" + scales.length + ",frequency=" + frequency + ",amplitude=" + amplitude
+                + ",normalized=" + normalized + ",scales=" + Arrays.toString(scales) + '}';
+    }
+}
@@ -171,6 +171,69 @@ public class PerlinNoiseGenerator extends NoiseGenerator {
                     lerp(fX, grad(perm[AB + 1], x, y - 1, z - 1),
                         grad(perm[BB + 1], x - 1, y - 1, z - 1))));
     }
+    @Override
+    public void addNoise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs, double amplitude) {
+        checkBuffer(buffer, xs, ys, zs);
+        int sizeY = ys.length;
+        int sizeZ = zs.length;
+        // The z axis is shared by every column, so its cell, offset and fade are computed once
+        int[] cellZ = new int[sizeZ];
+        double[] relZ = new double[sizeZ];
+        double[] fadeZ = new double[sizeZ];
+        for (int k = 0; k < sizeZ; k++) {
+            double z = zs[k] + offsetZ;
+            int floorZ = floor(z);
+            cellZ[k] = floorZ & 255;
+            relZ[k] = z - floorZ;
+        }
+        for (int k = 0; k < sizeZ; k++) {
+            fadeZ[k] = fade(relZ[k]);
+        }
+
+        for (int i = 0; i < xs.length; i++) {
+            double x = xs[i] + offsetX;
+            int floorX = floor(x);
+            int X = floorX & 255;
+            x -= floorX;
+            double fX = fade(x);
+            for (int j = 0; j < sizeY; j++) {
+                double y = ys[j] + offsetY;
+                int floorY = floor(y);
+                int Y = floorY & 255;
+                y -= floorY;
+                double fY = fade(y);
+                int A = perm[X] + Y;
+                int B = perm[X + 1] + Y;
+                int permA = perm[A];
+                int permA1 = perm[A + 1];
+                int permB = perm[B];
+                int permB1 = perm[B + 1];
+                int base = (i * sizeY + j) * sizeZ;
+                for (int k = 0; k < sizeZ; k++) {
+                    int Z = cellZ[k];
+                    double z = relZ[k];
+                    int AA = permA + Z;
+                    int AB = permA1 + Z;
+                    int BA = permB + Z;
+                    int BB = permB1 + Z;
+                    double noise = lerp(fadeZ[k], lerp(fY, lerp(fX, grad(perm[AA], x, y, z),
+                                    grad(perm[BA], x - 1, y, z)),
+                                lerp(fX, grad(perm[AB], x, y - 1, z),
+                                    grad(perm[BB], x - 1, y - 1, z))),
+                            lerp(fY, lerp(fX, grad(perm[AA + 1], x, y, z - 1),
+                                    grad(perm[BA + 1], x - 1, y, z - 1)),
+                                lerp(fX, grad(perm[AB + 1], x, y - 1, z - 1),
+                                    grad(perm[BB + 1], x - 1, y - 1, z - 1))));
+                    buffer[base + k] += noise * amplitude;
+                }
+            }
+        }
+    }
+    @Override
+    public void addNoise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, double amplitude) {
+        // 2D perlin noise is the 3D noise at z = 0
+        addNoise(buffer, xs, ys, ZERO, amplitude);
+    }
     /**
      * 使用特殊的数个倍频和参数产生一个一维坐标的噪音.
      * <p>
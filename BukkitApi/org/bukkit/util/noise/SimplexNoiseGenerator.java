@@ -149,6 +149,17 @@ public class SimplexNoiseGenerator extends PerlinNoiseGenerator {
         return instance.noise(x, y, z, w);
     }
     @Override
+    public void addNoise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, @NotNull double[] zs, double amplitude) {
+        checkBuffer(buffer, xs, ys, zs);
+        // The simplex cell depends on all coordinates at once, so there is nothing to share between points
+        addNoisePointwise(buffer, xs, ys, zs, amplitude);
+    }
+    @Override
+    public void addNoise(@NotNull double[] buffer, @NotNull double[] xs, @NotNull double[] ys, double amplitude) {
+        checkBuffer(buffer, xs, ys, ZERO);
+        addNoisePointwise(buffer, xs, ys, amplitude);
+    }
+    @Override
     public double noise(double xin, double yin, double zin) {
         xin += offsetX;
         yin += offsetY;
@@ -135,6 +135,33 @@ public class SimplexOctaveGenerator extends OctaveGenerator {
         return result;
     }
 
+    /**
+     * 使用倍频参数表产生一个四维坐标的噪音.
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @param w W坐标
+     * @param profile 倍频参数表
+     * @return 噪音结果
+     * @see #noise(double, double, double, double, double, double, boolean)
+     */
+    public double noise(double x, double y, double z, double w, @NotNull OctaveProfile profile) {
+        checkProfile(profile);
+        double[] scales = profile.getScales();
+        double[] amplitudes = profile.getAmplitudes();
+        double result = 0;
+        x *= xScale;
+        y *= yScale;
+        z *= zScale;
+        w *= wScale;
+        for (int i = 0; i < octaves.length; i++) {
+            double freq = scales[i];
+            result += ((SimplexNoiseGenerator) octaves[i]).noise(x * freq, y * freq, z * freq, w * freq) * amplitudes[i];
+        }
+        return profile.normalize(result);
+    }
+
     @NotNull
     private static NoiseGenerator[] createOctaves(@NotNull Random rand, int octaves) {
         NoiseGenerator[] result = new NoiseGenerator[octaves];